@@ -0,0 +1,98 @@
+package com.example.demo.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Small thread-safe in-memory cache with a maximum size and a time to live per entry.
+ * The least recently used entry is evicted when the cache is full, expired entries are dropped when read.
+ *
+ * Meant for hot lookups that may be a little stale, not as a shared or distributed cache.
+ */
+public class TtlCache<K, V> {
+
+    private final long ttlNanos;
+    private final Map<K, Entry<V>> entries;
+
+    private long hits;
+    private long misses;
+
+    private record Entry<V>(V value, long expiresAtNanos) {
+    }
+
+    public TtlCache(int maxSize, long ttl, TimeUnit unit) {
+        this.ttlNanos = unit.toNanos(ttl);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * @return the cached value, or null when it is missing or expired
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (System.nanoTime() - entry.expiresAtNanos() >= 0) {
+            entries.remove(key);
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value();
+    }
+
+    public void put(K key, V value) {
+        put(key, value, ttlNanos);
+    }
+
+    /**
+     * Caches the value for at most the given time, never longer than the cache's own time to live.
+     */
+    public synchronized void put(K key, V value, long ttlNanos) {
+        entries.put(key, new Entry<>(value, System.nanoTime() + Math.min(ttlNanos, this.ttlNanos)));
+    }
+
+    /**
+     * Returns the cached value or loads and caches it. A null from the loader is not cached.
+     * The loader runs outside the lock, so two threads may load the same key at once.
+     */
+    public V computeIfAbsent(K key, Function<K, V> loader) {
+        V value = get(key);
+        if (value == null) {
+            value = loader.apply(key);
+            if (value != null) {
+                put(key, value);
+            }
+        }
+        return value;
+    }
+
+    public synchronized void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long hitCount() {
+        return hits;
+    }
+
+    public synchronized long missCount() {
+        return misses;
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.demo.config.replica;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends @Transactional(readOnly = true) work to read replicas, everything else to the primary.
+ * Only active when datasource.replicas.urls is set, without it the single spring.datasource is used.
+ *
+ * The application DataSource is a LazyConnectionDataSourceProxy: the physical connection is taken on
+ * the first statement, after the transaction has been marked read-only, and read-only connections
+ * come from ReplicaRoutingDataSource. Flyway and work outside transactions use the primary.
+ */
+@Configuration
+@ConditionalOnProperty(name = "datasource.replicas.urls")
+public class ReadReplicaConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public ReplicaSet replicaSet(HikariDataSource primaryDataSource,
+                                 DataSourceProperties properties,
+                                 @Value("${datasource.replicas.urls}") List<String> urls,
+                                 @Value("${datasource.replicas.username:}") String username,
+                                 @Value("${datasource.replicas.password:}") String password,
+                                 @Value("${datasource.replicas.pool-size:10}") int poolSize,
+                                 @Value("${datasource.replicas.connection-timeout-ms:1000}") long connectionTimeoutMillis,
+                                 @Value("${datasource.replicas.max-lag-ms:1000}") long maxLagMillis) {
+        List<ReplicaSet.Replica> replicas = new ArrayList<>();
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + i);
+            replica.setJdbcUrl(urls.get(i).trim());
+            replica.setUsername(username.isEmpty() ? properties.determineUsername() : username);
+            replica.setPassword(username.isEmpty() ? properties.determinePassword() : password);
+            replica.setDriverClassName(properties.determineDriverClassName());
+            replica.setMaximumPoolSize(poolSize);
+            // a dead replica must not hold up reads for long, they fall back to the primary
+            replica.setConnectionTimeout(connectionTimeoutMillis);
+            replica.setReadOnly(true);
+            replicas.add(new ReplicaSet.Replica(replica.getPoolName(), replica));
+        }
+        return new ReplicaSet(primaryDataSource, replicas, maxLagMillis);
+    }
+
+    @Bean
+    public ReadYourWrites readYourWrites(@Value("${datasource.replicas.sticky-ms:5000}") long stickyMillis) {
+        return new ReadYourWrites(stickyMillis);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaSet replicaSet, ReadYourWrites readYourWrites, MeterRegistry meterRegistry) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(
+                new WriteTrackingDataSource(replicaSet.getPrimary(), readYourWrites));
+        dataSource.setReadOnlyDataSource(new ReplicaRoutingDataSource(replicaSet, readYourWrites, meterRegistry));
+        return dataSource;
+    }
+
+    // Primary connections of the proxy, tells ReadYourWrites about every write transaction
+    private static final class WriteTrackingDataSource extends DelegatingDataSource {
+        private final ReadYourWrites readYourWrites;
+
+        private WriteTrackingDataSource(DataSource primary, ReadYourWrites readYourWrites) {
+            super(primary);
+            this.readYourWrites = readYourWrites;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            readYourWrites.onPrimaryConnection();
+            return super.getConnection();
+        }
+    }
+}
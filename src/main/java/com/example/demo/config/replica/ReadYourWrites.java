@@ -0,0 +1,122 @@
+package com.example.demo.config.replica;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Read-your-writes for the replica routing: after a client's write transaction commits, that client's
+ * read-only transactions stay on the primary for sticky-ms, so a renter sees the booking they just made
+ * even if the replicas have not caught up yet.
+ *
+ * The window travels with the client, so it holds on every app node behind the load balancer: the
+ * response of a write carries it in the read_primary_until cookie and the X-Read-Primary-Until header
+ * (epoch millis), the client sends either one back. App node clocks only need to agree to well within
+ * sticky-ms. ReadYourWritesFilter binds the window to the request thread.
+ *
+ * The window should be longer than max-lag-ms + heartbeat-ms, after that any replica that is still
+ * used for reads has the write. Work outside a request (schedulers, outbox workers) is never sticky.
+ */
+public class ReadYourWrites {
+
+    public static final String COOKIE = "read_primary_until";
+    public static final String HEADER = "X-Read-Primary-Until";
+
+    private final long stickyMillis;
+    private final ThreadLocal<Window> current = new ThreadLocal<>();
+
+    // The sticky window of the request on this thread, and the response that carries a new one
+    private static final class Window {
+        private final HttpServletResponse response;
+        private long stickyUntil;
+        private boolean sent;
+
+        private Window(HttpServletResponse response, long stickyUntil) {
+            this.response = response;
+            this.stickyUntil = stickyUntil;
+        }
+    }
+
+    public ReadYourWrites(long stickyMillis) {
+        this.stickyMillis = stickyMillis;
+    }
+
+    /**
+     * Binds the window the client sent to the current thread, until end().
+     */
+    public void begin(HttpServletRequest request, HttpServletResponse response) {
+        // a client cannot keep itself on the primary for longer than one window
+        long stickyUntil = Math.min(sentStickyUntil(request), System.currentTimeMillis() + stickyMillis);
+        current.set(new Window(response, stickyUntil));
+    }
+
+    public void end() {
+        current.remove();
+    }
+
+    /**
+     * Called when a transaction takes a primary connection, makes the client sticky once it commits.
+     */
+    public void onPrimaryConnection() {
+        Window window = current.get();
+        if (window == null
+                || !TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                stick(window);
+            }
+        });
+    }
+
+    /**
+     * @return true if the client wrote within the last sticky-ms
+     */
+    public boolean isSticky() {
+        Window window = current.get();
+        return window != null && window.stickyUntil > System.currentTimeMillis();
+    }
+
+    // Private Helper Methods
+
+    private void stick(Window window) {
+        window.stickyUntil = System.currentTimeMillis() + stickyMillis;
+        if (window.sent || window.response.isCommitted()) {
+            // a request with several writes sends the first window, a response that is already
+            // out (async) sends none and the client's later reads may hit a replica
+            return;
+        }
+        window.sent = true;
+        String value = Long.toString(window.stickyUntil);
+        Cookie cookie = new Cookie(COOKIE, value);
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        cookie.setMaxAge((int) Math.max(1, (stickyMillis + 999) / 1000));
+        window.response.addCookie(cookie);
+        window.response.setHeader(HEADER, value);
+    }
+
+    private static long sentStickyUntil(HttpServletRequest request) {
+        String value = request.getHeader(HEADER);
+        if (value == null && request.getCookies() != null) {
+            for (Cookie cookie : request.getCookies()) {
+                if (COOKIE.equals(cookie.getName())) {
+                    value = cookie.getValue();
+                }
+            }
+        }
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.demo.config.replica;
+
+import com.example.demo.service.cluster.LeaderLease;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the replication lag of every replica with a heartbeat row.
+ *
+ * The leader stamps replica_heartbeat on the primary every heartbeat-ms, the stamp reaches the
+ * replicas through replication. The lag of a replica is the primary's stamp minus the replica's,
+ * both written by the same clock, so clock skew between the hosts does not matter. The real lag
+ * can be up to heartbeat-ms more than measured.
+ *
+ * A replica that cannot be reached, or any replica while nobody is stamping, counts as unavailable
+ * and reads go to the primary. Whether somebody is stamping is told by the stamp changing between
+ * checks, not by comparing it with this node's clock. After a start the replicas are used once the
+ * stamp has been seen to change.
+ */
+@Component
+@ConditionalOnProperty(name = "datasource.replicas.urls")
+@RequiredArgsConstructor
+@Slf4j
+public class ReplicaLagMonitor {
+
+    private static final String READ_BEAT = "SELECT beat_at FROM replica_heartbeat WHERE id = 1";
+    private static final String WRITE_BEAT = "UPDATE replica_heartbeat SET beat_at = ? WHERE id = 1";
+    // without a new stamp for this many heartbeats the lag cannot be measured
+    private static final int STALE_HEARTBEATS = 10;
+    private static final long NEVER = Long.MIN_VALUE;
+
+    private final ReplicaSet replicaSet;
+    private final LeaderLease leaderLease;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${datasource.replicas.heartbeat-ms:1000}")
+    private long heartbeatMillis;
+
+    // last stamp read on the primary and when (System.nanoTime) it was seen to change,
+    // only used by check(), which the scheduler never runs concurrently
+    private LocalDateTime lastPrimaryBeat;
+    private long lastAdvanceNanos = NEVER;
+
+    @PostConstruct
+    public void registerMetrics() {
+        for (ReplicaSet.Replica replica : replicaSet.getReplicas()) {
+            Gauge.builder("datasource.replica.lag", replica,
+                            r -> r.isAvailable() ? r.getLagMillis() / 1000.0 : Double.NaN)
+                    .tag("replica", replica.getName())
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+        }
+    }
+
+    @Scheduled(fixedRateString = "${datasource.replicas.heartbeat-ms:1000}")
+    public void beat() {
+        if (!leaderLease.isLeader()) {
+            return;
+        }
+        try (Connection connection = replicaSet.getPrimary().getConnection();
+             PreparedStatement statement = connection.prepareStatement(WRITE_BEAT)) {
+            statement.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            log.warn("Replica heartbeat not written: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${datasource.replicas.lag-check-ms:1000}")
+    public void check() {
+        LocalDateTime primaryBeat;
+        try {
+            primaryBeat = readBeat(replicaSet.getPrimary());
+        } catch (SQLException e) {
+            log.warn("Replica heartbeat not readable on the primary: {}", e.getMessage());
+            return;
+        }
+        boolean stale = isStale(primaryBeat);
+
+        for (ReplicaSet.Replica replica : replicaSet.getReplicas()) {
+            if (stale) {
+                replica.markUnavailable();
+                continue;
+            }
+            try {
+                LocalDateTime replicaBeat = readBeat(replica.getDataSource());
+                if (replicaBeat == null) {
+                    replica.markUnavailable();
+                } else {
+                    replica.setLagMillis(Math.max(0, Duration.between(replicaBeat, primaryBeat).toMillis()));
+                }
+            } catch (SQLException e) {
+                if (replica.isAvailable()) {
+                    log.warn("Replica {} unavailable: {}", replica.getName(), e.getMessage());
+                }
+                replica.markUnavailable();
+            }
+        }
+    }
+
+    // Private Helper Methods
+
+    // The stamp is the leader's clock time, this node's clock cannot tell how old it is. Instead the
+    // stamp must have changed within the last STALE_HEARTBEATS heartbeats of this node's own time.
+    private boolean isStale(LocalDateTime primaryBeat) {
+        long now = System.nanoTime();
+        if (primaryBeat != null && !primaryBeat.equals(lastPrimaryBeat)) {
+            if (lastPrimaryBeat != null) {
+                lastAdvanceNanos = now;
+            }
+            lastPrimaryBeat = primaryBeat;
+        }
+        return lastAdvanceNanos == NEVER
+                || now - lastAdvanceNanos > TimeUnit.MILLISECONDS.toNanos(heartbeatMillis * STALE_HEARTBEATS);
+    }
+
+    private static LocalDateTime readBeat(DataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(READ_BEAT);
+             ResultSet result = statement.executeQuery()) {
+            if (!result.next()) {
+                return null;
+            }
+            Timestamp beat = result.getTimestamp(1);
+            return beat != null ? beat.toLocalDateTime() : null;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.demo.config.replica;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+
+/**
+ * Hands out the connections of read-only transactions. Set as the read-only DataSource of the
+ * LazyConnectionDataSourceProxy, so it is asked once the transaction has been marked read-only.
+ *
+ * Reads go to a replica within the allowed lag (round robin) and fall back to the primary when
+ * - the client wrote something within the sticky window (ReadYourWrites),
+ * - no replica is within the allowed lag,
+ * - the replica refuses the connection, it is then skipped until the next lag check.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource {
+
+    private final ReplicaSet replicaSet;
+    private final ReadYourWrites readYourWrites;
+
+    private final Counter replicaReads;
+    private final Counter stickyReads;
+    private final Counter fallbackReads;
+
+    public ReplicaRoutingDataSource(ReplicaSet replicaSet, ReadYourWrites readYourWrites, MeterRegistry meterRegistry) {
+        this.replicaSet = replicaSet;
+        this.readYourWrites = readYourWrites;
+        this.replicaReads = Counter.builder("datasource.reads").tag("target", "replica").register(meterRegistry);
+        this.stickyReads = Counter.builder("datasource.reads").tag("target", "primary").tag("reason", "read-your-writes").register(meterRegistry);
+        this.fallbackReads = Counter.builder("datasource.reads").tag("target", "primary").tag("reason", "no-replica").register(meterRegistry);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (readYourWrites.isSticky()) {
+            stickyReads.increment();
+            return replicaSet.getPrimary().getConnection();
+        }
+        ReplicaSet.Replica replica = replicaSet.pick();
+        if (replica != null) {
+            try {
+                Connection connection = replica.getDataSource().getConnection();
+                replicaReads.increment();
+                return connection;
+            } catch (SQLException e) {
+                log.warn("Replica {} unavailable, reading from the primary: {}", replica.getName(), e.getMessage());
+                replica.markUnavailable();
+            }
+        }
+        fallbackReads.increment();
+        return replicaSet.getPrimary().getConnection();
+    }
+
+    // the pools behind it are opened with the configured credentials, as HikariDataSource does
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Replica connections use the configured credentials");
+    }
+}
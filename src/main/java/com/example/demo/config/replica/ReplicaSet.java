@@ -0,0 +1,91 @@
+package com.example.demo.config.replica;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The primary and the read replicas, with the replication lag last measured for every replica
+ * by ReplicaLagMonitor. A replica whose lag is unknown or above max-lag-ms is not used for reads.
+ */
+public class ReplicaSet implements AutoCloseable {
+
+    private final HikariDataSource primary;
+    private final List<Replica> replicas;
+    private final long maxLagMillis;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaSet(HikariDataSource primary, List<Replica> replicas, long maxLagMillis) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.maxLagMillis = maxLagMillis;
+    }
+
+    public static final class Replica {
+        private final String name;
+        private final HikariDataSource dataSource;
+        // unknown until the first lag check
+        private volatile long lagMillis = Long.MAX_VALUE;
+
+        public Replica(String name, HikariDataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public HikariDataSource getDataSource() {
+            return dataSource;
+        }
+
+        public long getLagMillis() {
+            return lagMillis;
+        }
+
+        public void setLagMillis(long lagMillis) {
+            this.lagMillis = lagMillis;
+        }
+
+        public void markUnavailable() {
+            this.lagMillis = Long.MAX_VALUE;
+        }
+
+        public boolean isAvailable() {
+            return lagMillis != Long.MAX_VALUE;
+        }
+    }
+
+    public HikariDataSource getPrimary() {
+        return primary;
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * @return the next replica in round robin order that is within the allowed lag, null if there is none
+     */
+    public Replica pick() {
+        int size = replicas.size();
+        if (size == 0) {
+            return null;
+        }
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.lagMillis <= maxLagMillis) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+        replicas.forEach(replica -> replica.getDataSource().close());
+    }
+}
@@ -1,20 +1,25 @@
 package com.example.demo.controller;
 
 import com.example.demo.exeptions.ActionNotAllowedException;
+import com.example.demo.exeptions.ConcurrentUpdateException;
 import com.example.demo.exeptions.ResourceNotFoundException;
 import com.example.demo.model.Booking;
 import com.example.demo.requests.booking.CreateBookingRequest;
 import com.example.demo.response.ApiResponse;
 import com.example.demo.responseDtos.BookingResponseDto;
+import com.example.demo.responseDtos.CursorPageDto;
 import com.example.demo.security.user.AppUserDetails;
 import com.example.demo.service.booking.BookingService;
+import com.example.demo.service.payment.PaymentIntentWaiters;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
-
-import java.util.List;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RequiredArgsConstructor
 @RestController
@@ -22,6 +27,8 @@ import java.util.List;
 public class BookingController {
 
     private final BookingService IBookingService;
+    private final ObjectMapper objectMapper;
+    private final PaymentIntentWaiters paymentIntentWaiters;
 
     /** CREATE a booking
      *
@@ -38,6 +45,30 @@ public class BookingController {
             return ResponseEntity.ok(new ApiResponse("Booking Created", bookingResponseDto));
         } catch (ResourceNotFoundException | ActionNotAllowedException e) {
             return ResponseEntity.badRequest().body(new ApiResponse("Something went wrong when creating a booking", e.getMessage()));
+        } catch (ConcurrentUpdateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(new ApiResponse("Something went wrong when creating a booking", e.getMessage()));
+        }
+    }
+
+    /** GET the PaymentIntent of a booking, created shortly after the booking
+     *
+     * @param bookingId
+     * @param waitMs how long to wait while the PaymentIntent is still being created (max 25000), 0 answers right away
+     * @param userDetails
+     * @return ApiResponse with the status and, once created, the client secret
+     */
+    @GetMapping("/booking/{bookingId}/payment-intent")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    public DeferredResult<ResponseEntity<ApiResponse>> getPaymentIntent(@PathVariable Long bookingId,
+                                                                        @RequestParam(defaultValue = "0") long waitMs,
+                                                                        @AuthenticationPrincipal AppUserDetails userDetails) {
+        try {
+            return paymentIntentWaiters.await(bookingId, userDetails.getId(), waitMs,
+                    status -> ResponseEntity.ok(new ApiResponse("Payment intent " + status.getStatus().toLowerCase(), status)));
+        } catch (ResourceNotFoundException | ActionNotAllowedException e) {
+            DeferredResult<ResponseEntity<ApiResponse>> result = new DeferredResult<>();
+            result.setResult(ResponseEntity.badRequest().body(new ApiResponse("Something went wrong when getting the payment intent of booking: " + bookingId, e.getMessage())));
+            return result;
         }
     }
 
@@ -56,6 +87,8 @@ public class BookingController {
             return ResponseEntity.ok(new ApiResponse("Booking cancelled", bookingResponseDto));
         } catch (ResourceNotFoundException | ActionNotAllowedException e) {
             return ResponseEntity.badRequest().body(new ApiResponse("Something went wrong when cancelling booking: " + bookingId.toString(), e.getMessage()));
+        } catch (ConcurrentUpdateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(new ApiResponse("Something went wrong when cancelling booking: " + bookingId.toString(), e.getMessage()));
         }
     }
 
@@ -76,55 +109,80 @@ public class BookingController {
             return ResponseEntity.ok(new ApiResponse("Booking updated successfully", bookingResponseDto));
         } catch (ResourceNotFoundException | ActionNotAllowedException e) {
             return ResponseEntity.badRequest().body(new ApiResponse("Error updating booking", e.getMessage()));
+        } catch (ConcurrentUpdateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(new ApiResponse("Error updating booking", e.getMessage()));
         }
     }
 
     /**
-     * GET bookings by renter
+     * GET bookings by renter, ordered by start time
      * @param renterId
-     * @return ApiResponse with list of bookings for the renter
+     * @param after cursor from the previous page, leave out for the first page
+     * @param limit page size (max 500)
+     * @param includeHistory also list archived (long finished) bookings
+     * @return ApiResponse with one page of bookings for the renter
      */
     @GetMapping("/renter/{renterId}")
     @PreAuthorize("hasRole('ROLE_USER')")
-    public ResponseEntity<ApiResponse> getBookingsByRenter(@PathVariable Long renterId) {
+    public ResponseEntity<ApiResponse> getBookingsByRenter(@PathVariable Long renterId,
+                                                           @RequestParam(required = false) String after,
+                                                           @RequestParam(defaultValue = "50") int limit,
+                                                           @RequestParam(defaultValue = "false") boolean includeHistory) {
         try {
-            List<BookingResponseDto> bookings = IBookingService.getBookingsByRenter(renterId);
+            CursorPageDto<BookingResponseDto> bookings = IBookingService.getBookingsByRenter(renterId, after, limit, includeHistory);
             return ResponseEntity.ok(new ApiResponse("Bookings fetched successfully", bookings));
-        } catch (ResourceNotFoundException e) {
+        } catch (ResourceNotFoundException | ActionNotAllowedException e) {
             return ResponseEntity.badRequest().body(new ApiResponse("Error fetching bookings by renter", e.getMessage()));
         }
     }
 
     /**
-     * GET bookings by parking spot
+     * GET bookings by parking spot, ordered by start time
      * @param spotId
-     * @return ApiResponse with list of bookings for the parking spot
+     * @param after cursor from the previous page, leave out for the first page
+     * @param limit page size (max 500)
+     * @param includeHistory also list archived (long finished) bookings
+     * @return ApiResponse with one page of bookings for the parking spot
      */
     @GetMapping("/spot/{spotId}")
     @PreAuthorize("hasRole('ROLE_USER')")
-    public ResponseEntity<ApiResponse> getBookingsBySpot(@PathVariable Long spotId) {
+    public ResponseEntity<ApiResponse> getBookingsBySpot(@PathVariable Long spotId,
+                                                         @RequestParam(required = false) String after,
+                                                         @RequestParam(defaultValue = "50") int limit,
+                                                         @RequestParam(defaultValue = "false") boolean includeHistory) {
         try {
-            List<BookingResponseDto> bookings = IBookingService.getBookingsBySpot(spotId);
+            CursorPageDto<BookingResponseDto> bookings = IBookingService.getBookingsBySpot(spotId, after, limit, includeHistory);
             return ResponseEntity.ok(new ApiResponse("Bookings fetched successfully", bookings));
-        } catch (ResourceNotFoundException e) {
+        } catch (ResourceNotFoundException | ActionNotAllowedException e) {
             return ResponseEntity.badRequest().body(new ApiResponse("Error fetching bookings by spot", e.getMessage()));
         }
     }
 
     /**
-     * ADMIN: GET all bookings
-     * @return ApiResponse with list of all bookings
+     * ADMIN: GET all bookings, ordered by id
+     * @param after cursor from the previous page, leave out for the first page
+     * @param limit page size (max 500)
+     * @return ApiResponse with one page of bookings
      */
     @GetMapping
     @PreAuthorize("hasRole('ROLE_ADMIN')")
-    public ResponseEntity<ApiResponse> getAllBookings() {
-        List<BookingResponseDto> bookings = IBookingService.getAllBookings();
-        return ResponseEntity.ok(new ApiResponse("All bookings fetched successfully", bookings));
+    public ResponseEntity<ApiResponse> getAllBookings(@RequestParam(required = false) String after,
+                                                      @RequestParam(defaultValue = "50") int limit) {
+        try {
+            CursorPageDto<BookingResponseDto> bookings = IBookingService.getAllBookings(after, limit);
+            return ResponseEntity.ok(new ApiResponse("All bookings fetched successfully", bookings));
+        } catch (ActionNotAllowedException e) {
+            return ResponseEntity.badRequest().body(new ApiResponse("Error fetching bookings", e.getMessage()));
+        }
     }
 
-
-
-
-
-
+    /**
+     * ADMIN: export all bookings as newline delimited JSON, written while they are read from the database
+     * @return one booking per line
+     */
+    @GetMapping(value = "/stream", produces = "application/x-ndjson")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<StreamingResponseBody> streamAllBookings() {
+        return NdjsonResponses.stream(objectMapper, IBookingService::streamAllBookings);
+    }
 }
@@ -1,20 +1,34 @@
 package com.example.demo.controller;
 
+import com.example.demo.responseDtos.CursorPageDto;
+import com.example.demo.responseDtos.NearbyParkingSpotResponseDto;
+import com.example.demo.responseDtos.ParkingSpotImportResultDto;
+import com.example.demo.responseDtos.ParkingSpotQuoteDto;
 import com.example.demo.responseDtos.ParkingSpotResponseDto;
+import com.example.demo.responseDtos.ParkingSpotSearchPageDto;
 import com.example.demo.exeptions.ActionNotAllowedException;
+import com.example.demo.exeptions.ConcurrentUpdateException;
 import com.example.demo.exeptions.ResourceNotFoundException;
 import com.example.demo.requests.parkingspot.CreateParkingSpotRequest;
+import com.example.demo.requests.parkingspot.QuoteParkingSpotsRequest;
 import com.example.demo.requests.parkingspot.UpdateParkingSpotRequest;
 import com.example.demo.response.ApiResponse;
 import com.example.demo.security.user.AppUserDetails;
 import com.example.demo.service.parkingspot.IParkingSpotService;
+import com.example.demo.service.parkingspot.ParkingSpotImporter;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -23,6 +37,7 @@ import java.util.List;
 @RequestMapping("${api.prefix}/parking-spots")
 public class ParkingSpotController {
     private final IParkingSpotService parkingSpotService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping("/create")
     @PreAuthorize("hasRole('ROLE_USER')")
@@ -43,6 +58,8 @@ public class ParkingSpotController {
             return ResponseEntity.ok(new ApiResponse("Parking spot deleted", null));
         }catch (ResourceNotFoundException | ActionNotAllowedException e){
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new ApiResponse(e.getMessage(), null));
+        }catch (ConcurrentUpdateException e){
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(new ApiResponse(e.getMessage(), null));
         }
     }
 
@@ -54,17 +71,45 @@ public class ParkingSpotController {
             return ResponseEntity.ok(new ApiResponse("Parking spot updated", parkingSpotResponseDto));
         }catch (ResourceNotFoundException | ActionNotAllowedException e){
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new ApiResponse(e.getMessage(), null));
+        }catch (ConcurrentUpdateException e){
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(new ApiResponse(e.getMessage(), null));
         }
     }
 
     @GetMapping("/all/active-spots")
     @PreAuthorize("hasRole('ROLE_USER')")
-    public ResponseEntity<ApiResponse> getAllActiveParkingSpots(){
+    public ResponseEntity<ApiResponse> getAllActiveParkingSpots(@RequestParam(required = false) String after,
+                                                                @RequestParam(defaultValue = "50") int limit){
         try{
-            List<ParkingSpotResponseDto> activeParkingSpots = parkingSpotService.fetchAllActiveParkingSpots();
+            CursorPageDto<ParkingSpotResponseDto> activeParkingSpots = parkingSpotService.fetchAllActiveParkingSpots(after, limit);
             return ResponseEntity.ok(new ApiResponse("All active parking spots found.", activeParkingSpots));
-        }catch (ResourceNotFoundException e){
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new ApiResponse(e.getMessage(), null));
+        }catch (ActionNotAllowedException e){
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new ApiResponse(e.getMessage(), null));
+        }
+    }
+
+    // All active spots as newline delimited JSON, written while they are read from the database
+    @GetMapping(value = "/all/active-spots/stream", produces = "application/x-ndjson")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    public ResponseEntity<StreamingResponseBody> streamAllActiveParkingSpots(){
+        return NdjsonResponses.stream(objectMapper, parkingSpotService::streamAllActiveParkingSpots);
+    }
+
+    // Bulk import of the current users spots, CSV with a header row or newline delimited JSON.
+    // Rows are validated and written in batches while the upload is read, rejected rows are listed with their line.
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    @PreAuthorize("hasRole('ROLE_USER')")
+    public ResponseEntity<ApiResponse> importParkingSpots(InputStream rows,
+                                                          @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                          @AuthenticationPrincipal AppUserDetails userDetails){
+        ParkingSpotImporter.Format format = MediaType.parseMediaType(contentType).isCompatibleWith(MediaType.APPLICATION_NDJSON)
+                ? ParkingSpotImporter.Format.NDJSON
+                : ParkingSpotImporter.Format.CSV;
+        try{
+            ParkingSpotImportResultDto result = parkingSpotService.importParkingSpots(rows, format, userDetails);
+            return ResponseEntity.ok(new ApiResponse(result.getImported() + " parking spots imported, " + result.getRejected() + " rows rejected.", result));
+        }catch (ActionNotAllowedException | ResourceNotFoundException | IOException e){
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new ApiResponse(e.getMessage(), null));
         }
     }
 
@@ -102,6 +147,44 @@ public class ParkingSpotController {
         }
     }
 
+    @GetMapping("/nearby")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    public ResponseEntity<ApiResponse> getNearestParkingSpots(@RequestParam double lat,
+                                                              @RequestParam double lon,
+                                                              @RequestParam(defaultValue = "2") double radiusKm,
+                                                              @RequestParam(defaultValue = "20") int limit){
+        try{
+            List<NearbyParkingSpotResponseDto> spots = parkingSpotService.fetchNearestActiveParkingSpots(lat, lon, radiusKm, limit);
+            return ResponseEntity.ok(new ApiResponse(spots.size() + " parking spots found within " + radiusKm + " km.", spots));
+        }catch (ActionNotAllowedException e){
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new ApiResponse(e.getMessage(), null));
+        }
+    }
+
+    @GetMapping("/search")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    public ResponseEntity<ApiResponse> searchParkingSpots(@RequestParam("q") String query,
+                                                          @RequestParam(defaultValue = "0") int page,
+                                                          @RequestParam(defaultValue = "20") int size){
+        try{
+            ParkingSpotSearchPageDto result = parkingSpotService.searchActiveParkingSpots(query, page, size);
+            return ResponseEntity.ok(new ApiResponse(result.getTotalHits() + " parking spots match: " + query, result));
+        }catch (ActionNotAllowedException e){
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new ApiResponse(e.getMessage(), null));
+        }
+    }
+
+    @PostMapping("/quote")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    public ResponseEntity<ApiResponse> quoteParkingSpots(@RequestBody QuoteParkingSpotsRequest request){
+        try{
+            List<ParkingSpotQuoteDto> quotes = parkingSpotService.quoteParkingSpots(request);
+            return ResponseEntity.ok(new ApiResponse(quotes.size() + " parking spots quoted.", quotes));
+        }catch (ActionNotAllowedException e){
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new ApiResponse(e.getMessage(), null));
+        }
+    }
+
     //TODO: Deactivate and Activate parking spots
     @PutMapping("/parking-spot/{parkingSpotId}/deactivate")
     @PreAuthorize("hasRole('ROLE_USER')")
@@ -111,6 +194,8 @@ public class ParkingSpotController {
             return ResponseEntity.ok(new ApiResponse("Parking spot deactivated", null));
         }catch (ResourceNotFoundException | ActionNotAllowedException e){
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new ApiResponse(e.getMessage(), null));
+        }catch (ConcurrentUpdateException e){
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(new ApiResponse(e.getMessage(), null));
         }
     }
 
@@ -122,6 +207,8 @@ public class ParkingSpotController {
             return ResponseEntity.ok(new ApiResponse("Parking spot activated", null));
         }catch (ResourceNotFoundException | ActionNotAllowedException e){
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new ApiResponse(e.getMessage(), null));
+        }catch (ConcurrentUpdateException e){
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(new ApiResponse(e.getMessage(), null));
         }
     }
 
@@ -9,6 +9,9 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.example.demo.exeptions.ActionNotAllowedException;
+import com.example.demo.exeptions.PaymentGatewayException;
+import com.example.demo.exeptions.ResourceNotFoundException;
 import com.example.demo.requests.booking.CreatePaymentRequest;
 import com.example.demo.service.payment.PaymentService;
 
@@ -33,6 +36,14 @@ public class StripePaymentController {
             );
             response.put("client_secret", clientSecret);
             return ResponseEntity.ok(response);
+        } catch (ResourceNotFoundException | ActionNotAllowedException e) {
+            response.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (PaymentGatewayException e) {
+            // Stripe is slow or down (or the breaker is open), the client may try again later
+            response.put("error", e.getMessage());
+            HttpStatus status = e.isRetryable() ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.BAD_GATEWAY;
+            return ResponseEntity.status(status).body(response);
         } catch (Exception e) {
             response.put("error", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
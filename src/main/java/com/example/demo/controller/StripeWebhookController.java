@@ -1,5 +1,7 @@
 package com.example.demo.controller;
 
+import java.util.concurrent.CompletableFuture;
+
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -9,88 +11,102 @@ import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.example.demo.service.payment.PaymentService;
+import com.example.demo.service.payment.StripeWebhookInbox;
+import com.example.demo.service.payment.StripeWebhookProcessor;
 import com.google.gson.JsonSyntaxException;
 import com.stripe.exception.SignatureVerificationException;
 import com.stripe.model.Event;
-import com.stripe.model.EventDataObjectDeserializer;
 import com.stripe.model.PaymentIntent;
-import com.stripe.model.PaymentMethod;
 import com.stripe.model.StripeObject;
 import com.stripe.net.ApiResource;
 import com.stripe.net.Webhook;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Receives Stripe webhooks. Events are verified, recorded by StripeWebhookInbox and acknowledged
+ * once recorded. StripeWebhookProcessor applies them to the bookings afterwards.
+ * A 5xx answer makes Stripe deliver the event again later.
+ */
 @RestController
 @RequestMapping("/stripe")
 @RequiredArgsConstructor
+@Slf4j
 public class StripeWebhookController {
 
     @Value("${stripe.webhook.secret}")
     private String endpointSecret;
 
-    private final PaymentService paymentService;
+    private final StripeWebhookInbox webhookInbox;
 
     @PostMapping("/webhook")
-    public ResponseEntity<String> handleStripeWebhook(
+    public CompletableFuture<ResponseEntity<String>> handleStripeWebhook(
             @RequestBody String payload,
             @RequestHeader(value = "Stripe-Signature", required = false) String sigHeader
     ) {
         Event event;
-
         try {
-            event = ApiResource.GSON.fromJson(payload, Event.class);
+            event = parseEvent(payload, sigHeader);
+        } catch (SignatureVerificationException e) {
+            log.warn("Webhook error while validating signature: {}", e.getMessage());
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST).body(""));
         } catch (JsonSyntaxException e) {
-            System.out.println("⚠️  Webhook error while parsing basic request.");
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("");
+            log.warn("Webhook error while parsing basic request.");
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST).body(""));
         }
 
-        if (endpointSecret != null && !endpointSecret.isEmpty() && sigHeader != null) {
-            try {
-                event = Webhook.constructEvent(payload, sigHeader, endpointSecret);
-            } catch (SignatureVerificationException e) {
-                System.out.println("⚠️  Webhook error while validating signature.");
-                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("");
-            }
+        String type = event.getType();
+        if (!StripeWebhookProcessor.PAYMENT_SUCCEEDED.equals(type) && !StripeWebhookProcessor.PAYMENT_FAILED.equals(type)) {
+            // payment_intent.processing, payment_method.attached, ... need no action
+            log.debug("Unhandled event type: {}", type);
+            return CompletableFuture.completedFuture(ResponseEntity.ok(""));
         }
 
-        EventDataObjectDeserializer dataObjectDeserializer = event.getDataObjectDeserializer();
-        StripeObject stripeObject = dataObjectDeserializer.getObject().orElse(null);
+        StripeObject stripeObject = event.getDataObjectDeserializer().getObject().orElse(null);
+        if (!(stripeObject instanceof PaymentIntent paymentIntent)) {
+            log.warn("Unable to deserialize Stripe object from event {}", event.getId());
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST).body(""));
+        }
 
-        if (stripeObject == null) {
-            System.out.println("⚠️  Unable to deserialize Stripe object from event.");
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("");
+        String bookingIdStr = paymentIntent.getMetadata() == null ? null : paymentIntent.getMetadata().get("bookingId");
+        if (bookingIdStr == null) {
+            log.warn("No bookingId in metadata of PaymentIntent {}", paymentIntent.getId());
+            return CompletableFuture.completedFuture(ResponseEntity.ok(""));
         }
 
-        switch (event.getType()) {
-            case "payment_intent.succeeded": {
-                PaymentIntent paymentIntent = (PaymentIntent) stripeObject;
-                System.out.println("✅ Payment for " + paymentIntent.getAmount() + " succeeded.");
-                paymentService.handlePaymentSucceeded(paymentIntent);
-                break;
-            }
-            case "payment_intent.processing": {
-                PaymentIntent paymentIntent = (PaymentIntent) stripeObject;
-                System.out.println("ℹ️ Payment for " + paymentIntent.getAmount() + " is processing.");
-                break;
-            }
-            case "payment_intent.payment_failed": {
-                PaymentIntent paymentIntent = (PaymentIntent) stripeObject;
-                System.out.println("❌ Payment for " + paymentIntent.getAmount() + " failed.");
-                paymentService.handlePaymentFailed(paymentIntent);
-                break;
-            }
-            case "payment_method.attached": {
-                PaymentMethod paymentMethod = (PaymentMethod) stripeObject;
-                System.out.println("ℹ️ Payment method attached: " + paymentMethod.getId());
-                break;
-            }
-            default:
-                System.out.println("Unhandled event type: " + event.getType());
-                break;
+        Long bookingId = parseBookingId(bookingIdStr);
+        if (bookingId == null) {
+            // not one of our intents, a 4xx/5xx answer would only make Stripe retry it for days
+            log.warn("Unmappable bookingId '{}' in metadata of PaymentIntent {}, event {} ignored",
+                    bookingIdStr, paymentIntent.getId(), event.getId());
+            return CompletableFuture.completedFuture(ResponseEntity.ok(""));
         }
 
-        return ResponseEntity.ok("");
+        StripeWebhookInbox.ReceivedEvent received = new StripeWebhookInbox.ReceivedEvent(
+                event.getId(), type, bookingId, paymentIntent.getId());
+        return webhookInbox.record(received)
+                .thenApply(recorded -> ResponseEntity.ok(""))
+                .exceptionally(e -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(""));
+    }
+
+    private static Long parseBookingId(String bookingIdStr) {
+        try {
+            long bookingId = Long.parseLong(bookingIdStr.trim());
+            return bookingId > 0 ? bookingId : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // Only the signed payload is trusted once a webhook secret is configured
+    private Event parseEvent(String payload, String sigHeader) throws SignatureVerificationException {
+        if (endpointSecret == null || endpointSecret.isEmpty()) {
+            return ApiResource.GSON.fromJson(payload, Event.class);
+        }
+        if (sigHeader == null) {
+            throw new SignatureVerificationException("Missing Stripe-Signature header", null);
+        }
+        return Webhook.constructEvent(payload, sigHeader, endpointSecret);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,7 @@
+package com.example.demo.enums;
+
+public enum PaymentOutboxStatus {
+    PENDING, // waiting for the PaymentIntent to be created
+    SENT,    // PaymentIntent created, client secret available
+    FAILED   // gave up, see lastError
+}
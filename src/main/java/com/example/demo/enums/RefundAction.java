@@ -0,0 +1,6 @@
+package com.example.demo.enums;
+
+public enum RefundAction {
+    REFUND,        // the booking was paid, give the money back
+    CANCEL_INTENT  // the booking was not paid, make sure it cannot be paid anymore
+}
@@ -0,0 +1,8 @@
+package com.example.demo.enums;
+
+public enum RefundStatus {
+    PENDING,
+    REFUNDED,
+    INTENT_CANCELLED,
+    FAILED
+}
@@ -0,0 +1,11 @@
+package com.example.demo.exeptions;
+
+/**
+ * The data was changed concurrently and the operation still conflicted after being retried.
+ * Repeating the request later usually works.
+ */
+public class ConcurrentUpdateException extends RuntimeException {
+    public ConcurrentUpdateException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.demo.exeptions;
+
+public class LeadershipLostException extends RuntimeException {
+    public LeadershipLostException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.demo.exeptions;
+
+/**
+ * A call to the payment provider failed.
+ * Retryable failures (timeouts, rate limits, provider errors) may succeed when the same call is repeated.
+ */
+public class PaymentGatewayException extends RuntimeException {
+    private final boolean retryable;
+
+    public PaymentGatewayException(String message, boolean retryable, Throwable cause) {
+        super(message, cause);
+        this.retryable = retryable;
+    }
+
+    public boolean isRetryable() {
+        return retryable;
+    }
+}
@@ -6,6 +6,7 @@ import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import com.example.demo.enums.BookingStatus;
+import com.example.demo.enums.RefundStatus;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
@@ -16,6 +17,7 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -40,6 +42,10 @@ public class Booking {
     // total price for booking
     private double totalAmount;
 
+    // the same price in minor units (cents), null for bookings made before it was stored
+    @Column(name = "total_amount_minor")
+    private Long totalAmountMinor;
+
     @Enumerated(EnumType.STRING)
     private BookingStatus status; //'PENDING','CONFIRMED','CANCELLED','COMPLETED'
 
@@ -62,4 +68,14 @@ public class Booking {
     // payment info
     @Column(name = "stripe_payment_intent_id")
     private String stripePaymentIntentId;
+
+    // set when a cancelled booking's payment is refunded or its PaymentIntent cancelled, see RefundQueue
+    @Enumerated(EnumType.STRING)
+    @Column(name = "refund_status")
+    private RefundStatus refundStatus;
+
+    // optimistic locking, a save of a stale copy fails instead of overwriting a concurrent change.
+    // The set-based updates in BookingRepository bump it too
+    @Version
+    private long version;
 }
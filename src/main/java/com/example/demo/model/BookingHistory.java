@@ -0,0 +1,65 @@
+package com.example.demo.model;
+
+import com.example.demo.enums.BookingStatus;
+import com.example.demo.enums.RefundStatus;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * A completed or cancelled booking moved out of the live booking table by BookingArchiveJob.
+ * Same id and columns as the Booking it was, renter and spot are plain ids without foreign keys.
+ * Rows are written once and never changed.
+ */
+@Entity
+@NoArgsConstructor
+@Getter
+@Setter
+@Table(name = "booking_history",
+        indexes = {
+                @Index(name = "idx_booking_history_renter_start", columnList = "renter_id, start_time"),
+                @Index(name = "idx_booking_history_spot_start", columnList = "spot_id, start_time")
+        })
+public class BookingHistory {
+    @Id
+    private Long id;
+
+    @Column(name = "start_time")
+    private LocalDateTime startTime;
+    @Column(name = "end_time")
+    private LocalDateTime endTime;
+
+    private double totalAmount;
+    @Column(name = "total_amount_minor")
+    private Long totalAmountMinor;
+
+    @Enumerated(EnumType.STRING)
+    private BookingStatus status;
+
+    @Column(name = "renter_id", nullable = false)
+    private Long renterId;
+    @Column(name = "spot_id", nullable = false)
+    private Long spotId;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+
+    @Column(name = "stripe_payment_intent_id")
+    private String stripePaymentIntentId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "refund_status")
+    private RefundStatus refundStatus;
+
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+}
@@ -0,0 +1,52 @@
+package com.example.demo.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * What a spot owner earned with one booking, in minor units (cents).
+ * Entries are only ever appended, one per completed booking. payoutId is set once the entry
+ * is included in an OwnerPayout, entries without it are still to be paid out.
+ */
+@Entity
+@NoArgsConstructor
+@Getter
+@Setter
+@Table(name = "owner_ledger_entry",
+        indexes = {
+                @Index(name = "idx_owner_ledger_entry_unsettled", columnList = "payout_id, id"),
+                @Index(name = "idx_owner_ledger_entry_owner", columnList = "owner_id, id")
+        })
+public class OwnerLedgerEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "booking_id", nullable = false, unique = true)
+    private Long bookingId;
+
+    @Column(name = "owner_id", nullable = false)
+    private Long ownerId;
+
+    @Column(name = "amount_minor", nullable = false)
+    private long amountMinor;
+
+    @Column(nullable = false, length = 3)
+    private String currency;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "payout_id")
+    private Long payoutId;
+}
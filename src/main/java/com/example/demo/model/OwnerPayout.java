@@ -0,0 +1,66 @@
+package com.example.demo.model;
+
+import com.example.demo.enums.PayoutStatus;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * One transfer to a spot owner, the sum of their unsettled ledger entries up to upToEntryId.
+ */
+@Entity
+@NoArgsConstructor
+@Getter
+@Setter
+@Table(name = "owner_payout",
+        uniqueConstraints = @UniqueConstraint(name = "uk_owner_payout_run", columnNames = {"owner_id", "currency", "up_to_entry_id"}))
+public class OwnerPayout {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "owner_id", nullable = false)
+    private Long ownerId;
+
+    @Column(nullable = false, length = 3)
+    private String currency;
+
+    @Column(name = "amount_minor", nullable = false)
+    private long amountMinor;
+
+    @Column(name = "entry_count", nullable = false)
+    private int entryCount;
+
+    // highest ledger entry id of the settlement run that created this payout
+    @Column(name = "up_to_entry_id", nullable = false)
+    private Long upToEntryId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private PayoutStatus status;
+
+    private int attempts;
+
+    @Column(name = "provider_reference")
+    private String providerReference;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "paid_at")
+    private LocalDateTime paidAt;
+}
@@ -16,8 +16,12 @@ import java.util.List;
 @Setter
 @AllArgsConstructor
 public class ParkingSpot {
+    // Ids are handed out from id_generator in blocks of 100 (pooled), unlike IDENTITY this lets
+    // Hibernate batch the inserts of bulk imports
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "parking_spot_id")
+    @TableGenerator(name = "parking_spot_id", table = "id_generator", pkColumnName = "name",
+            valueColumnName = "next_val", pkColumnValue = "parking_spot", allocationSize = 100)
     private Long id;
 
     private String title;
@@ -55,6 +59,10 @@ public class ParkingSpot {
     @UpdateTimestamp
     private LocalDateTime updatedAt;
 
+    // optimistic locking, a save of a stale copy fails instead of overwriting a concurrent change
+    @Version
+    private long version;
+
 
     public ParkingSpot(String title, String description, String address, String city, String postalCode, String country, BigDecimal latitude, BigDecimal longitude, LocalDateTime availableFrom, LocalDateTime availableTo, double pricePerHour, double pricePerDay) {
         this.title = title;
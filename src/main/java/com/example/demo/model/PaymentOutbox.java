@@ -0,0 +1,65 @@
+package com.example.demo.model;
+
+import com.example.demo.enums.PaymentOutboxStatus;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * A PaymentIntent that still has to be created (or was created) for a booking.
+ * Written in the booking's transaction, so the Stripe call happens after the booking is committed.
+ */
+@Entity
+@NoArgsConstructor
+@Getter
+@Setter
+@Table(name = "payment_outbox")
+public class PaymentOutbox {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "booking_id", nullable = false, unique = true)
+    private Long bookingId;
+
+    private String currency;
+
+    @Enumerated(EnumType.STRING)
+    private PaymentOutboxStatus status;
+
+    private int attempts;
+
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    // a worker owns the row until then, an expired claim can be taken by another worker
+    @Column(name = "claimed_until")
+    private LocalDateTime claimedUntil;
+
+    @Column(name = "client_secret")
+    private String clientSecret;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+
+    public PaymentOutbox(Long bookingId, String currency, LocalDateTime nextAttemptAt) {
+        this.bookingId = bookingId;
+        this.currency = currency;
+        this.status = PaymentOutboxStatus.PENDING;
+        this.nextAttemptAt = nextAttemptAt;
+    }
+}
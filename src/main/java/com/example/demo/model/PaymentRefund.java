@@ -0,0 +1,65 @@
+package com.example.demo.model;
+
+import com.example.demo.enums.RefundAction;
+import com.example.demo.enums.RefundStatus;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Money to give back (or a PaymentIntent to cancel) for a cancelled booking.
+ * Written in the cancelling transaction and worked off by RefundQueue, at most one per booking.
+ */
+@Entity
+@NoArgsConstructor
+@Getter
+@Setter
+@Table(name = "payment_refund",
+        indexes = @Index(name = "idx_payment_refund_due", columnList = "status, next_attempt_at"))
+public class PaymentRefund {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "booking_id", nullable = false, unique = true)
+    private Long bookingId;
+
+    @Column(name = "payment_intent_id", nullable = false)
+    private String paymentIntentId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private RefundAction action;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private RefundStatus status;
+
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "provider_reference")
+    private String providerReference;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+}
@@ -0,0 +1,36 @@
+package com.example.demo.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * A named lease held by one app node at a time.
+ * The fencing token grows by one every time the lease changes owner.
+ */
+@Entity
+@NoArgsConstructor
+@Getter
+@Setter
+@AllArgsConstructor
+@Table(name = "scheduler_lease")
+public class SchedulerLease {
+    @Id
+    private String name;
+
+    // node currently holding the lease
+    private String owner;
+
+    @Column(name = "fencing_token")
+    private long fencingToken;
+
+    @Column(name = "expires_at")
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,49 @@
+package com.example.demo.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * A verified Stripe webhook event, recorded once per Stripe event id before it is acknowledged.
+ * Events redelivered by Stripe hit the unique event id and are dropped.
+ * processedAt stays null until the event was applied to its booking.
+ */
+@Entity
+@NoArgsConstructor
+@Getter
+@Setter
+@Table(name = "stripe_webhook_event",
+        indexes = @Index(name = "idx_stripe_webhook_event_pending", columnList = "processed_at, id"))
+public class StripeWebhookEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "event_id", nullable = false, unique = true)
+    private String eventId;
+
+    @Column(nullable = false)
+    private String type;
+
+    @Column(name = "booking_id")
+    private Long bookingId;
+
+    @Column(name = "payment_intent_id")
+    private String paymentIntentId;
+
+    @Column(name = "received_at", nullable = false)
+    private LocalDateTime receivedAt;
+
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+}
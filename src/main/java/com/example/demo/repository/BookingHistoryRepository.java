@@ -0,0 +1,66 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.BookingHistory;
+import com.example.demo.repository.projection.BookingRowView;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface BookingHistoryRepository extends JpaRepository<BookingHistory, Long> {
+
+    // Same columns as BookingRepository.BOOKING_ROW_COLUMNS, renter and spot may have been deleted since
+    String HISTORY_ROW_COLUMNS = """
+        h.id AS id, h.startTime AS startTime, h.endTime AS endTime, h.totalAmount AS totalAmount,
+        h.totalAmountMinor AS totalAmountMinor, h.status AS status, h.renterId AS renterId, r.email AS renterEmail,
+        h.spotId AS spotId, s.address AS spotAddress, s.city AS spotCity, h.createdAt AS createdAt,
+        h.refundStatus AS refundStatus
+        FROM BookingHistory h LEFT JOIN User r ON r.id = h.renterId LEFT JOIN ParkingSpot s ON s.id = h.spotId
+        """;
+
+    // Keyset pages in the same (startTime, id) order as the live booking pages, so both can be merged
+
+    @Query("SELECT " + HISTORY_ROW_COLUMNS + " WHERE h.renterId = :renterId ORDER BY h.startTime, h.id")
+    List<BookingRowView> findRenterRowPage(@Param("renterId") Long renterId, Limit limit);
+
+    @Query("SELECT " + HISTORY_ROW_COLUMNS + """
+         WHERE h.renterId = :renterId
+           AND (h.startTime > :afterStart OR (h.startTime = :afterStart AND h.id > :afterId))
+         ORDER BY h.startTime, h.id
+        """)
+    List<BookingRowView> findRenterRowPageAfter(@Param("renterId") Long renterId,
+                                                @Param("afterStart") LocalDateTime afterStart,
+                                                @Param("afterId") long afterId,
+                                                Limit limit);
+
+    @Query("SELECT " + HISTORY_ROW_COLUMNS + " WHERE h.spotId = :spotId ORDER BY h.startTime, h.id")
+    List<BookingRowView> findSpotRowPage(@Param("spotId") Long spotId, Limit limit);
+
+    @Query("SELECT " + HISTORY_ROW_COLUMNS + """
+         WHERE h.spotId = :spotId
+           AND (h.startTime > :afterStart OR (h.startTime = :afterStart AND h.id > :afterId))
+         ORDER BY h.startTime, h.id
+        """)
+    List<BookingRowView> findSpotRowPageAfter(@Param("spotId") Long spotId,
+                                              @Param("afterStart") LocalDateTime afterStart,
+                                              @Param("afterId") long afterId,
+                                              Limit limit);
+
+    // Copies the given live bookings into the history, rows archived before are skipped
+    @Modifying
+    @Query(value = """
+        INSERT IGNORE INTO booking_history
+               (id, start_time, end_time, total_amount, total_amount_minor, status, renter_id, spot_id,
+                created_at, updated_at, stripe_payment_intent_id, refund_status, archived_at)
+        SELECT b.id, b.start_time, b.end_time, b.total_amount, b.total_amount_minor, b.status, b.renter_id, b.spot_id,
+               b.created_at, b.updated_at, b.stripe_payment_intent_id, b.refund_status, :now
+          FROM booking b
+         WHERE b.id IN (:ids)
+        """, nativeQuery = true)
+    int copyFromBookings(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+}
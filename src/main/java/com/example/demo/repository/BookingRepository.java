@@ -1,13 +1,25 @@
 package com.example.demo.repository;
 import com.example.demo.enums.BookingStatus;
+import com.example.demo.enums.RefundStatus;
 import com.example.demo.model.Booking;
 import com.example.demo.model.ParkingSpot;
 import com.example.demo.model.User;
+import com.example.demo.repository.projection.BookingRowView;
+import com.example.demo.repository.projection.BookingSlotView;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface BookingRepository extends JpaRepository<Booking, Long> {
 
@@ -17,12 +29,19 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
     //Find booking for a specific parking spot
     List<Booking> findBySpot(ParkingSpot spot);
 
-    // Check if a spot is already booked in a given time range
-    boolean existsBySpotAndStartTimeLessThanEqualAndEndTimeGreaterThanEqual(
-            ParkingSpot spot,
-            LocalDateTime endTime,
-            LocalDateTime startTime
-    );
+    // Check if a spot has a booking in one of the given statuses in a given time range,
+    // ignoredBookingId (the booking being moved) may be null
+    @Query("""
+        SELECT COUNT(b) > 0 FROM Booking b
+         WHERE b.spot.id = :spotId AND b.status IN :statuses
+           AND b.startTime <= :endTime AND b.endTime >= :startTime
+           AND (:ignoredBookingId IS NULL OR b.id <> :ignoredBookingId)
+        """)
+    boolean existsOverlapping(@Param("spotId") Long spotId,
+                              @Param("statuses") Collection<BookingStatus> statuses,
+                              @Param("startTime") LocalDateTime startTime,
+                              @Param("endTime") LocalDateTime endTime,
+                              @Param("ignoredBookingId") Long ignoredBookingId);
 
     List<Booking> findByStatus(BookingStatus status);
 
@@ -30,9 +49,228 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
 
     User renter(User renter);
 
-    List<Booking> findByStatusAndStartTimeBefore(BookingStatus bookingStatus, LocalDateTime now);
+    // Columns of BookingRowView, read in one statement without loading renter and spot entities
+    String BOOKING_ROW_COLUMNS = """
+        b.id AS id, b.startTime AS startTime, b.endTime AS endTime, b.totalAmount AS totalAmount,
+        b.totalAmountMinor AS totalAmountMinor, b.status AS status, r.id AS renterId, r.email AS renterEmail,
+        s.id AS spotId, s.address AS spotAddress, s.city AS spotCity, b.createdAt AS createdAt,
+        b.refundStatus AS refundStatus
+        FROM Booking b JOIN b.renter r JOIN b.spot s
+        """;
 
-    List<Booking> findByStatusAndEndTimeBefore(BookingStatus bookingStatus, LocalDateTime now);
+    // Keyset pages for the list endpoints, callers ask for one row more than the page size
 
-    List<Booking> findByStatusAndCreatedAtBefore(BookingStatus bookingStatus, LocalDateTime cutoff);
+    @Query("SELECT " + BOOKING_ROW_COLUMNS + " WHERE b.id > :afterId ORDER BY b.id")
+    List<BookingRowView> findRowPageAfterId(@Param("afterId") long afterId, Limit limit);
+
+    @Query("SELECT " + BOOKING_ROW_COLUMNS + " WHERE r.id = :renterId ORDER BY b.startTime, b.id")
+    List<BookingRowView> findRenterRowPage(@Param("renterId") Long renterId, Limit limit);
+
+    @Query("SELECT " + BOOKING_ROW_COLUMNS + """
+         WHERE r.id = :renterId
+           AND (b.startTime > :afterStart OR (b.startTime = :afterStart AND b.id > :afterId))
+         ORDER BY b.startTime, b.id
+        """)
+    List<BookingRowView> findRenterRowPageAfter(@Param("renterId") Long renterId,
+                                                @Param("afterStart") LocalDateTime afterStart,
+                                                @Param("afterId") long afterId,
+                                                Limit limit);
+
+    @Query("SELECT " + BOOKING_ROW_COLUMNS + " WHERE s.id = :spotId ORDER BY b.startTime, b.id")
+    List<BookingRowView> findSpotRowPage(@Param("spotId") Long spotId, Limit limit);
+
+    @Query("SELECT " + BOOKING_ROW_COLUMNS + """
+         WHERE s.id = :spotId
+           AND (b.startTime > :afterStart OR (b.startTime = :afterStart AND b.id > :afterId))
+         ORDER BY b.startTime, b.id
+        """)
+    List<BookingRowView> findSpotRowPageAfter(@Param("spotId") Long spotId,
+                                              @Param("afterStart") LocalDateTime afterStart,
+                                              @Param("afterId") long afterId,
+                                              Limit limit);
+
+    // All bookings as flat rows. The MySQL driver streams the result row by row
+    // when the fetch size is Integer.MIN_VALUE, so memory use does not grow with the table.
+    // The stream must be consumed and closed inside a transaction.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "-2147483648"))
+    @Query("SELECT " + BOOKING_ROW_COLUMNS + " ORDER BY b.id")
+    Stream<BookingRowView> streamAllRows();
+
+    @Query("SELECT b.renter.id FROM Booking b WHERE b.id = :id")
+    Optional<Long> findRenterIdById(@Param("id") Long id);
+
+    // Store the PaymentIntent of a booking without loading it
+    @Modifying
+    @Query("UPDATE Booking b SET b.stripePaymentIntentId = :intentId, b.updatedAt = :now, b.version = b.version + 1 WHERE b.id = :id")
+    int setStripePaymentIntentId(@Param("id") Long id, @Param("intentId") String intentId, @Param("now") LocalDateTime now);
+
+    // Keyset-paginated ids of due bookings, used by the scheduler to work in bounded chunks
+
+    @Query("SELECT b.id FROM Booking b WHERE b.status = :status AND b.startTime <= :now AND b.id > :afterId ORDER BY b.id")
+    List<Long> findIdsOfStarted(@Param("status") BookingStatus status,
+                                @Param("now") LocalDateTime now,
+                                @Param("afterId") long afterId,
+                                Limit limit);
+
+    @Query("SELECT b.id FROM Booking b WHERE b.status = :status AND b.endTime <= :now AND b.id > :afterId ORDER BY b.id")
+    List<Long> findIdsOfEnded(@Param("status") BookingStatus status,
+                              @Param("now") LocalDateTime now,
+                              @Param("afterId") long afterId,
+                              Limit limit);
+
+    @Query("SELECT b.id FROM Booking b WHERE b.status = :status AND b.createdAt <= :cutoff AND b.id > :afterId ORDER BY b.id")
+    List<Long> findIdsOfCreatedBefore(@Param("status") BookingStatus status,
+                                      @Param("cutoff") LocalDateTime cutoff,
+                                      @Param("afterId") long afterId,
+                                      Limit limit);
+
+    // Slots of all bookings in the given statuses, used to rebuild the in-memory schedules
+    @Query("""
+        SELECT b.id AS id, b.spot.id AS spotId, b.status AS status,
+               b.startTime AS startTime, b.endTime AS endTime, b.createdAt AS createdAt
+          FROM Booking b
+         WHERE b.status IN :statuses
+        """)
+    List<BookingSlotView> findSlotsByStatusIn(@Param("statuses") Collection<BookingStatus> statuses);
+
+    // Slots of one spot's bookings in the given statuses, used to resync a spot of the in-memory index
+    @Query("""
+        SELECT b.id AS id, b.spot.id AS spotId, b.status AS status,
+               b.startTime AS startTime, b.endTime AS endTime, b.createdAt AS createdAt
+          FROM Booking b
+         WHERE b.spot.id = :spotId AND b.status IN :statuses
+        """)
+    List<BookingSlotView> findSlotsBySpotIdAndStatusIn(@Param("spotId") Long spotId,
+                                                       @Param("statuses") Collection<BookingStatus> statuses);
+
+    // Slots of the bookings changed since the given time, used to catch up the in-memory schedules
+    @Query("""
+        SELECT b.id AS id, b.spot.id AS spotId, b.status AS status,
+               b.startTime AS startTime, b.endTime AS endTime, b.createdAt AS createdAt
+          FROM Booking b
+         WHERE b.updatedAt >= :since
+        """)
+    List<BookingSlotView> findSlotsUpdatedSince(@Param("since") LocalDateTime since);
+
+    // Slots of the given bookings, used to reschedule them after a set-based update
+    @Query("""
+        SELECT b.id AS id, b.spot.id AS spotId, b.status AS status,
+               b.startTime AS startTime, b.endTime AS endTime, b.createdAt AS createdAt
+          FROM Booking b
+         WHERE b.id IN :ids
+        """)
+    List<BookingSlotView> findSlotsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Ids among the given bookings that currently have the given status
+    @Query("SELECT b.id FROM Booking b WHERE b.id IN :ids AND b.status = :status")
+    List<Long> findIdsByIdInAndStatus(@Param("ids") Collection<Long> ids, @Param("status") BookingStatus status);
+
+    // Ids among the given bookings whose status is not one of the given ones
+    @Query("SELECT b.id FROM Booking b WHERE b.id IN :ids AND b.status NOT IN :statuses")
+    List<Long> findIdsByIdInAndStatusNotIn(@Param("ids") Collection<Long> ids,
+                                           @Param("statuses") Collection<BookingStatus> statuses);
+
+    // Set-based status transitions, each only touches bookings whose deadline has really passed.
+    // Like every UPDATE here they bump the version, so a stale Booking saved afterwards is rejected
+
+    @Modifying
+    @Query("""
+        UPDATE Booking b SET b.status = :to, b.updatedAt = :now, b.version = b.version + 1
+         WHERE b.id IN :ids AND b.status = :from AND b.startTime <= :now
+        """)
+    int updateStatusOfStarted(@Param("ids") Collection<Long> ids,
+                              @Param("from") BookingStatus from,
+                              @Param("to") BookingStatus to,
+                              @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("""
+        UPDATE Booking b SET b.status = :to, b.updatedAt = :now, b.version = b.version + 1
+         WHERE b.id IN :ids AND b.status = :from AND b.endTime <= :now
+        """)
+    int updateStatusOfEnded(@Param("ids") Collection<Long> ids,
+                            @Param("from") BookingStatus from,
+                            @Param("to") BookingStatus to,
+                            @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("""
+        UPDATE Booking b SET b.status = :to, b.updatedAt = :now, b.version = b.version + 1
+         WHERE b.id IN :ids AND b.status = :from AND b.createdAt <= :cutoff
+        """)
+    int updateStatusOfCreatedBefore(@Param("ids") Collection<Long> ids,
+                                    @Param("from") BookingStatus from,
+                                    @Param("to") BookingStatus to,
+                                    @Param("cutoff") LocalDateTime cutoff,
+                                    @Param("now") LocalDateTime now);
+
+    // PENDING -> CONFIRMED for paid bookings, bookings that moved on in the meantime are left alone
+    @Modifying
+    @Query("""
+        UPDATE Booking b SET b.status = :to, b.updatedAt = :now, b.version = b.version + 1
+         WHERE b.id IN :ids AND b.status = :from
+        """)
+    int updateStatus(@Param("ids") Collection<Long> ids,
+                     @Param("from") BookingStatus from,
+                     @Param("to") BookingStatus to,
+                     @Param("now") LocalDateTime now);
+
+    // Live bookings of a spot that have not started yet
+    @Query("SELECT b.id FROM Booking b WHERE b.spot.id = :spotId AND b.status IN :statuses AND b.startTime > :now")
+    List<Long> findUpcomingIdsOfSpot(@Param("spotId") Long spotId,
+                                     @Param("statuses") Collection<BookingStatus> statuses,
+                                     @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("""
+        UPDATE Booking b SET b.status = com.example.demo.enums.BookingStatus.CANCELLED, b.updatedAt = :now, b.version = b.version + 1
+         WHERE b.id IN :ids AND b.status IN :statuses AND b.startTime > :now
+        """)
+    int cancelUpcoming(@Param("ids") Collection<Long> ids,
+                       @Param("statuses") Collection<BookingStatus> statuses,
+                       @Param("now") LocalDateTime now);
+
+    // Refund bookkeeping, see RefundQueue
+
+    // Leaves the version alone: it runs in the transaction that changes the booking's status, and
+    // cancelBooking saves its loaded entity (refundStatus set to PENDING too) right after it.
+    // That status change is what concurrent writers must conflict with.
+    @Modifying
+    @Query("""
+        UPDATE Booking b SET b.refundStatus = com.example.demo.enums.RefundStatus.PENDING
+         WHERE b.id IN :ids AND b.status IN :statuses AND b.stripePaymentIntentId IS NOT NULL AND b.refundStatus IS NULL
+        """)
+    int markRefundPending(@Param("ids") Collection<Long> ids, @Param("statuses") Collection<BookingStatus> statuses);
+
+    @Modifying
+    @Query("UPDATE Booking b SET b.refundStatus = :refundStatus, b.version = b.version + 1 WHERE b.id IN :ids")
+    int updateRefundStatus(@Param("ids") Collection<Long> ids, @Param("refundStatus") RefundStatus refundStatus);
+
+    // Archiving, see BookingArchiveJob
+
+    // Terminal bookings that ended and last changed before the cutoff, refunds still in flight stay live
+    @Query("""
+        SELECT b.id FROM Booking b
+         WHERE b.status IN (com.example.demo.enums.BookingStatus.COMPLETED, com.example.demo.enums.BookingStatus.CANCELLED)
+           AND b.endTime < :cutoff
+           AND COALESCE(b.updatedAt, b.endTime) < :cutoff
+           AND (b.refundStatus IS NULL OR b.refundStatus <> com.example.demo.enums.RefundStatus.PENDING)
+        """)
+    List<Long> findArchivableIds(@Param("cutoff") LocalDateTime cutoff, Limit limit);
+
+    // Locks the given bookings that are still archivable, so nothing changes them while they are moved
+    @Query(value = """
+        SELECT b.id FROM booking b
+         WHERE b.id IN (:ids)
+           AND b.status IN ('COMPLETED', 'CANCELLED')
+           AND b.end_time < :cutoff
+           AND COALESCE(b.updated_at, b.end_time) < :cutoff
+           AND (b.refund_status IS NULL OR b.refund_status <> 'PENDING')
+           FOR UPDATE
+        """, nativeQuery = true)
+    List<Long> lockArchivable(@Param("ids") Collection<Long> ids, @Param("cutoff") LocalDateTime cutoff);
+
+    @Modifying
+    @Query("DELETE FROM Booking b WHERE b.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,38 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.OwnerLedgerEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+public interface OwnerLedgerEntryRepository extends JpaRepository<OwnerLedgerEntry, Long> {
+
+    // One entry per completed booking for the spot's owner, bookings that already have one are skipped
+    @Modifying
+    @Query(value = """
+        INSERT IGNORE INTO owner_ledger_entry (booking_id, owner_id, amount_minor, currency, created_at)
+        SELECT b.id, s.created_by, COALESCE(b.total_amount_minor, ROUND(b.total_amount * 100)), :currency, :now
+          FROM booking b JOIN parking_spot s ON s.id = b.spot_id
+         WHERE b.id IN :bookingIds AND b.status = 'COMPLETED'
+        """, nativeQuery = true)
+    int insertForCompletedBookings(@Param("bookingIds") Collection<Long> bookingIds,
+                                   @Param("currency") String currency,
+                                   @Param("now") LocalDateTime now);
+
+    @Query("SELECT MAX(e.id) FROM OwnerLedgerEntry e WHERE e.payoutId IS NULL")
+    Long findMaxUnsettledId();
+
+    // Points the unsettled entries up to maxEntryId at the payouts created for them
+    @Modifying
+    @Query(value = """
+        UPDATE owner_ledger_entry e
+          JOIN owner_payout p ON p.owner_id = e.owner_id AND p.currency = e.currency AND p.up_to_entry_id = :maxEntryId
+           SET e.payout_id = p.id
+         WHERE e.payout_id IS NULL AND e.id <= :maxEntryId
+        """, nativeQuery = true)
+    int linkToPayouts(@Param("maxEntryId") long maxEntryId);
+}
@@ -0,0 +1,51 @@
+package com.example.demo.repository;
+
+import com.example.demo.enums.PayoutStatus;
+import com.example.demo.model.OwnerPayout;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OwnerPayoutRepository extends JpaRepository<OwnerPayout, Long> {
+
+    // One payout per owner and currency summing the unsettled entries up to maxEntryId
+    @Modifying
+    @Query(value = """
+        INSERT INTO owner_payout (owner_id, currency, amount_minor, entry_count, up_to_entry_id, status, attempts, created_at)
+        SELECT e.owner_id, e.currency, SUM(e.amount_minor), COUNT(*), :maxEntryId, 'PENDING', 0, :now
+          FROM owner_ledger_entry e
+         WHERE e.payout_id IS NULL AND e.id <= :maxEntryId
+         GROUP BY e.owner_id, e.currency
+        """, nativeQuery = true)
+    int createPayoutsUpTo(@Param("maxEntryId") long maxEntryId, @Param("now") LocalDateTime now);
+
+    @Query("SELECT p FROM OwnerPayout p WHERE p.status = :status AND p.id > :afterId ORDER BY p.id")
+    List<OwnerPayout> findByStatusAfterId(@Param("status") PayoutStatus status, @Param("afterId") long afterId, Limit limit);
+
+    @Modifying
+    @Query("""
+        UPDATE OwnerPayout p
+           SET p.status = com.example.demo.enums.PayoutStatus.PAID, p.providerReference = :reference,
+               p.paidAt = :now, p.attempts = p.attempts + 1, p.lastError = NULL
+         WHERE p.id = :id AND p.status = com.example.demo.enums.PayoutStatus.PENDING
+        """)
+    int markPaid(@Param("id") Long id, @Param("reference") String reference, @Param("now") LocalDateTime now);
+
+    // Stays PENDING for the next run until maxAttempts is reached.
+    // status is assigned first, MySQL evaluates later assignments with the new attempts value
+    @Modifying
+    @Query("""
+        UPDATE OwnerPayout p
+           SET p.status = CASE WHEN p.attempts + 1 >= :maxAttempts
+                               THEN com.example.demo.enums.PayoutStatus.FAILED
+                               ELSE com.example.demo.enums.PayoutStatus.PENDING END,
+               p.attempts = p.attempts + 1, p.lastError = :error
+         WHERE p.id = :id AND p.status = com.example.demo.enums.PayoutStatus.PENDING
+        """)
+    int markAttemptFailed(@Param("id") Long id, @Param("error") String error, @Param("maxAttempts") int maxAttempts);
+}
@@ -1,37 +1,93 @@
 package com.example.demo.repository;
 
+import com.example.demo.enums.BookingStatus;
 import com.example.demo.model.ParkingSpot;
 import com.example.demo.model.User;
+import com.example.demo.repository.projection.SpotIndexView;
+import com.example.demo.repository.projection.SpotLocationView;
+import com.example.demo.repository.projection.SpotPriceView;
+import com.example.demo.repository.projection.SpotRowView;
+import com.example.demo.repository.projection.SpotTextView;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface ParkingSpotRepository extends JpaRepository<ParkingSpot, Long> {
 
-    // Fetch all active spots
-    List<ParkingSpot> findByIsActiveTrue();
+    // Fetch a spot and lock its row until the transaction ends (serializes bookings of one spot)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT ps FROM ParkingSpot ps WHERE ps.id = :id")
+    Optional<ParkingSpot> findByIdForUpdate(@Param("id") Long id);
+
+    // Columns of SpotRowView, read in one statement without loading the owner and images
+    String SPOT_ROW_COLUMNS = """
+        ps.id AS id, ps.title AS title, ps.description AS description, ps.address AS address,
+        ps.city AS city, ps.postal_code AS postalCode, ps.country AS country,
+        ps.latitude AS latitude, ps.longitude AS longitude,
+        ps.available_from AS availableFrom, ps.available_to AS availableTo,
+        ps.price_per_hour AS pricePerHour, ps.price_per_day AS pricePerDay
+        FROM ParkingSpot ps
+        """;
+
+    // Keyset page of active spots, callers ask for one row more than the page size
+    @Query("SELECT " + SPOT_ROW_COLUMNS + " WHERE ps.isActive = true AND ps.id > :afterId ORDER BY ps.id")
+    List<SpotRowView> findActiveRowPageAfterId(@Param("afterId") long afterId, Limit limit);
+
+    // Rows of the given spots, in no particular order
+    @Query("SELECT " + SPOT_ROW_COLUMNS + " WHERE ps.id IN :ids")
+    List<SpotRowView> findRowsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Rows of all spots created by the user with the given email
+    @Query("SELECT " + SPOT_ROW_COLUMNS + " WHERE ps.createdBy.email = :email")
+    List<SpotRowView> findRowsByCreatorEmail(@Param("email") String email);
+
+    // Rows of all active spots in a city (ignoring capitalization differences).
+    // Plain equality, the column collation is case-insensitive and LOWER() would rule out the city index.
+    @Query("SELECT " + SPOT_ROW_COLUMNS + " WHERE ps.city = :city AND ps.isActive = true")
+    List<SpotRowView> findActiveRowsInCity(@Param("city") String city);
+
+    // All active spots as flat rows, streamed row by row by the MySQL driver (fetch size Integer.MIN_VALUE).
+    // The stream must be consumed and closed inside a transaction.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "-2147483648"))
+    @Query("SELECT " + SPOT_ROW_COLUMNS + " WHERE ps.isActive = true ORDER BY ps.id")
+    Stream<SpotRowView> streamActiveRows();
 
     // Fetch all spots created by a specific user
     List<ParkingSpot> findByCreatedBy(User user);
 
-    //Fetch all spots in specific city (ignoring capitalization differences, and only fetching active)
-    List<ParkingSpot> findByCityIgnoreCaseAndIsActiveTrue(String city);
-
-    // Fetch available spots in a city within a given date range
-    @Query("""
-         SELECT ps FROM ParkingSpot ps
+    // Fetch available spots in a city within a given date range,
+    // leaving out spots that already have a live booking overlapping the (buffered) period
+    @Query("SELECT " + SPOT_ROW_COLUMNS + """
          WHERE ps.city = :city
            AND ps.isActive = true
            AND ps.available_from <= :startDate
            AND ps.available_to >= :endDate
+           AND NOT EXISTS (
+               SELECT 1 FROM Booking b
+                WHERE b.spot = ps
+                  AND b.status IN :liveStatuses
+                  AND b.startTime <= :bufferedEnd
+                  AND b.endTime >= :bufferedStart)
          """)
-    List<ParkingSpot> findAvailableSpotsInCity(
+    List<SpotRowView> findAvailableSpotsInCity(
             @Param("city") String city,
             @Param("startDate")LocalDateTime startDate,
-            @Param("endDate")LocalDateTime endDate);
+            @Param("endDate")LocalDateTime endDate,
+            @Param("bufferedStart") LocalDateTime bufferedStart,
+            @Param("bufferedEnd") LocalDateTime bufferedEnd,
+            @Param("liveStatuses") Collection<BookingStatus> liveStatuses);
 
     //Search by keyword (title or description)
     @Query(""" 
@@ -52,8 +108,40 @@ public interface ParkingSpotRepository extends JpaRepository<ParkingSpot, Long>
             @Param("maxLat") double maxLat,
             @Param("minLon") double minLon,
             @Param("maxLon") double maxLon);
-}
 
+    // Coordinates of all active spots, used to build the geo index
+    @Query("""
+        SELECT ps.id AS id, ps.latitude AS latitude, ps.longitude AS longitude
+          FROM ParkingSpot ps
+         WHERE ps.isActive = true
+           AND ps.latitude IS NOT NULL
+           AND ps.longitude IS NOT NULL
+        """)
+    List<SpotLocationView> findActiveSpotLocations();
 
+    // Prices of the given active spots, in no particular order
+    @Query("""
+        SELECT ps.id AS id, ps.price_per_hour AS pricePerHour, ps.price_per_day AS pricePerDay
+          FROM ParkingSpot ps
+         WHERE ps.isActive = true
+           AND ps.id IN :ids
+        """)
+    List<SpotPriceView> findActivePricesByIdIn(@Param("ids") Collection<Long> ids);
 
+    // Searchable text of all active spots, used to build the search index
+    @Query("""
+        SELECT ps.id AS id, ps.title AS title, ps.description AS description, ps.address AS address, ps.city AS city
+          FROM ParkingSpot ps
+         WHERE ps.isActive = true
+        """)
+    List<SpotTextView> findActiveSpotTexts();
 
+    // Spots changed since the given time, active or not, used to catch up the in-memory indexes
+    @Query("""
+        SELECT ps.id AS id, ps.isActive AS active, ps.latitude AS latitude, ps.longitude AS longitude,
+               ps.title AS title, ps.description AS description, ps.address AS address, ps.city AS city
+          FROM ParkingSpot ps
+         WHERE ps.updatedAt >= :since
+        """)
+    List<SpotIndexView> findIndexRowsUpdatedSince(@Param("since") LocalDateTime since);
+}
@@ -0,0 +1,66 @@
+package com.example.demo.repository;
+
+import com.example.demo.enums.PaymentOutboxStatus;
+import com.example.demo.model.PaymentOutbox;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface PaymentOutboxRepository extends JpaRepository<PaymentOutbox, Long> {
+
+    Optional<PaymentOutbox> findByBookingId(Long bookingId);
+
+    // Pending rows due for an attempt that no worker holds
+    @Query("""
+        SELECT o.id FROM PaymentOutbox o
+         WHERE o.status = :status AND o.nextAttemptAt <= :now
+           AND (o.claimedUntil IS NULL OR o.claimedUntil < :now)
+         ORDER BY o.id
+        """)
+    List<Long> findDueIds(@Param("status") PaymentOutboxStatus status, @Param("now") LocalDateTime now, Limit limit);
+
+    // Take a pending row for a worker, returns 0 if another worker holds it or it is done
+    @Modifying
+    @Query("""
+        UPDATE PaymentOutbox o SET o.claimedUntil = :until
+         WHERE o.id = :id AND o.status = com.example.demo.enums.PaymentOutboxStatus.PENDING
+           AND (o.claimedUntil IS NULL OR o.claimedUntil < :now)
+        """)
+    int claim(@Param("id") Long id, @Param("now") LocalDateTime now, @Param("until") LocalDateTime until);
+
+    @Modifying
+    @Query("UPDATE PaymentOutbox o SET o.claimedUntil = NULL WHERE o.id = :id")
+    int release(@Param("id") Long id);
+
+    @Modifying
+    @Query("""
+        UPDATE PaymentOutbox o
+           SET o.status = com.example.demo.enums.PaymentOutboxStatus.SENT, o.clientSecret = :clientSecret,
+               o.attempts = o.attempts + 1, o.claimedUntil = NULL, o.lastError = NULL
+         WHERE o.id = :id
+        """)
+    int markSent(@Param("id") Long id, @Param("clientSecret") String clientSecret);
+
+    @Modifying
+    @Query("""
+        UPDATE PaymentOutbox o
+           SET o.attempts = o.attempts + 1, o.nextAttemptAt = :nextAttemptAt, o.claimedUntil = NULL, o.lastError = :error
+         WHERE o.id = :id
+        """)
+    int markRetry(@Param("id") Long id, @Param("error") String error, @Param("nextAttemptAt") LocalDateTime nextAttemptAt);
+
+    @Modifying
+    @Query("""
+        UPDATE PaymentOutbox o
+           SET o.status = com.example.demo.enums.PaymentOutboxStatus.FAILED,
+               o.attempts = o.attempts + 1, o.claimedUntil = NULL, o.lastError = :error
+         WHERE o.id = :id
+        """)
+    int markFailed(@Param("id") Long id, @Param("error") String error);
+}
@@ -0,0 +1,64 @@
+package com.example.demo.repository;
+
+import com.example.demo.enums.RefundStatus;
+import com.example.demo.model.PaymentRefund;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface PaymentRefundRepository extends JpaRepository<PaymentRefund, Long> {
+
+    /*
+        Queue a refund row for every given booking that has a PaymentIntent and is in one of the statuses.
+        Paid bookings (CONFIRMED, ACTIVE, or CANCELLED ones paid late) are refunded,
+        unpaid PENDING ones get their PaymentIntent cancelled.
+        Runs before the bookings are cancelled, in the same transaction and on the same rows.
+        Bookings that already have a refund row are skipped.
+     */
+    @Modifying
+    @Query(value = """
+        INSERT IGNORE INTO payment_refund (booking_id, payment_intent_id, action, status, attempts, next_attempt_at, created_at)
+        SELECT b.id, b.stripe_payment_intent_id,
+               CASE WHEN b.status = 'PENDING' THEN 'CANCEL_INTENT' ELSE 'REFUND' END,
+               'PENDING', 0, :now, :now
+          FROM booking b
+         WHERE b.id IN :bookingIds AND b.status IN :statuses AND b.stripe_payment_intent_id IS NOT NULL
+        """, nativeQuery = true)
+    int insertForBookings(@Param("bookingIds") Collection<Long> bookingIds,
+                          @Param("statuses") Collection<String> statuses,
+                          @Param("now") LocalDateTime now);
+
+    @Query("""
+        SELECT r FROM PaymentRefund r
+         WHERE r.status = com.example.demo.enums.RefundStatus.PENDING AND r.nextAttemptAt <= :now
+         ORDER BY r.nextAttemptAt, r.id
+        """)
+    List<PaymentRefund> findDue(@Param("now") LocalDateTime now, Limit limit);
+
+    @Modifying
+    @Query("""
+        UPDATE PaymentRefund r
+           SET r.status = :status, r.providerReference = :reference, r.lastError = :error,
+               r.attempts = r.attempts + 1, r.completedAt = :now
+         WHERE r.id = :id
+        """)
+    int markCompleted(@Param("id") Long id,
+                      @Param("status") RefundStatus status,
+                      @Param("reference") String reference,
+                      @Param("error") String error,
+                      @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("""
+        UPDATE PaymentRefund r
+           SET r.attempts = r.attempts + 1, r.nextAttemptAt = :nextAttemptAt, r.lastError = :error
+         WHERE r.id = :id
+        """)
+    int markRetry(@Param("id") Long id, @Param("error") String error, @Param("nextAttemptAt") LocalDateTime nextAttemptAt);
+}
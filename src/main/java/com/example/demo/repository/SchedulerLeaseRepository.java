@@ -0,0 +1,42 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.SchedulerLease;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface SchedulerLeaseRepository extends JpaRepository<SchedulerLease, String> {
+
+    // Extend the lease if this node still holds it with the same token
+    @Modifying
+    @Query("""
+        UPDATE SchedulerLease l SET l.expiresAt = :until
+         WHERE l.name = :name AND l.owner = :owner AND l.fencingToken = :token
+        """)
+    int renew(@Param("name") String name,
+              @Param("owner") String owner,
+              @Param("token") long token,
+              @Param("until") LocalDateTime until);
+
+    // Take over an expired lease and issue the next fencing token
+    @Modifying
+    @Query("""
+        UPDATE SchedulerLease l SET l.owner = :owner, l.fencingToken = l.fencingToken + 1, l.expiresAt = :until
+         WHERE l.name = :name AND l.expiresAt < :now
+        """)
+    int takeOver(@Param("name") String name,
+                 @Param("owner") String owner,
+                 @Param("now") LocalDateTime now,
+                 @Param("until") LocalDateTime until);
+
+    // Read the lease with a shared row lock, so a take over waits until the caller's transaction ends
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("SELECT l FROM SchedulerLease l WHERE l.name = :name")
+    Optional<SchedulerLease> findForShare(@Param("name") String name);
+}
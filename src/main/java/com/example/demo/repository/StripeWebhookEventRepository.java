@@ -0,0 +1,40 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.StripeWebhookEvent;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface StripeWebhookEventRepository extends JpaRepository<StripeWebhookEvent, Long> {
+
+    // Records an event unless its Stripe event id is already stored, returns 0 for a redelivery
+    @Modifying
+    @Query(value = """
+        INSERT IGNORE INTO stripe_webhook_event (event_id, type, booking_id, payment_intent_id, received_at)
+        VALUES (:eventId, :type, :bookingId, :paymentIntentId, :receivedAt)
+        """, nativeQuery = true)
+    int insertIfAbsent(@Param("eventId") String eventId,
+                       @Param("type") String type,
+                       @Param("bookingId") Long bookingId,
+                       @Param("paymentIntentId") String paymentIntentId,
+                       @Param("receivedAt") LocalDateTime receivedAt);
+
+    // Oldest events that were not applied yet
+    @Query("SELECT e FROM StripeWebhookEvent e WHERE e.processedAt IS NULL ORDER BY e.id")
+    List<StripeWebhookEvent> findUnprocessed(Limit limit);
+
+    @Modifying
+    @Query("UPDATE StripeWebhookEvent e SET e.processedAt = :now WHERE e.id IN :ids")
+    int markProcessed(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    // Processed events older than Stripe's redelivery window are no longer needed for deduplication
+    @Modifying
+    @Query("DELETE FROM StripeWebhookEvent e WHERE e.processedAt < :cutoff")
+    int deleteProcessedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -0,0 +1,26 @@
+package com.example.demo.repository.projection;
+
+import com.example.demo.enums.BookingStatus;
+import com.example.demo.enums.RefundStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Flat read-only row of a booking with the renter and spot columns the API returns.
+ * Used when streaming bookings, so no entities (and their eager associations) are loaded.
+ */
+public interface BookingRowView {
+    Long getId();
+    LocalDateTime getStartTime();
+    LocalDateTime getEndTime();
+    double getTotalAmount();
+    Long getTotalAmountMinor();
+    BookingStatus getStatus();
+    Long getRenterId();
+    String getRenterEmail();
+    Long getSpotId();
+    String getSpotAddress();
+    String getSpotCity();
+    LocalDateTime getCreatedAt();
+    RefundStatus getRefundStatus();
+}
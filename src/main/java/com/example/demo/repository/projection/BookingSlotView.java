@@ -0,0 +1,18 @@
+package com.example.demo.repository.projection;
+
+import com.example.demo.enums.BookingStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read-only view of the time slot a booking occupies on a spot.
+ * Used to (re)build in-memory schedules without loading full Booking entities.
+ */
+public interface BookingSlotView {
+    Long getId();
+    Long getSpotId();
+    BookingStatus getStatus();
+    LocalDateTime getStartTime();
+    LocalDateTime getEndTime();
+    LocalDateTime getCreatedAt();
+}
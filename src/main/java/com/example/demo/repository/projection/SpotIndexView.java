@@ -0,0 +1,18 @@
+package com.example.demo.repository.projection;
+
+import java.math.BigDecimal;
+
+/**
+ * Read-only view of what the in-memory spot indexes keep of a parking spot, active or not.
+ * Used to catch up the geo and search indexes with changes made on other nodes.
+ */
+public interface SpotIndexView {
+    Long getId();
+    Boolean getActive();
+    BigDecimal getLatitude();
+    BigDecimal getLongitude();
+    String getTitle();
+    String getDescription();
+    String getAddress();
+    String getCity();
+}
@@ -0,0 +1,13 @@
+package com.example.demo.repository.projection;
+
+import java.math.BigDecimal;
+
+/**
+ * Read-only view of where a parking spot is.
+ * Used to build the in-memory geo index without loading full ParkingSpot entities.
+ */
+public interface SpotLocationView {
+    Long getId();
+    BigDecimal getLatitude();
+    BigDecimal getLongitude();
+}
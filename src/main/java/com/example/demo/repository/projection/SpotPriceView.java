@@ -0,0 +1,11 @@
+package com.example.demo.repository.projection;
+
+/**
+ * Read-only view of the prices of a parking spot.
+ * Used to quote many spots at once without loading full ParkingSpot entities.
+ */
+public interface SpotPriceView {
+    Long getId();
+    double getPricePerHour();
+    double getPricePerDay();
+}
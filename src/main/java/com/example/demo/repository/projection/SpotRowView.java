@@ -0,0 +1,24 @@
+package com.example.demo.repository.projection;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Flat read-only row of a parking spot with the columns the API returns.
+ * Used when streaming spots, so no entities (and their eager associations) are loaded.
+ */
+public interface SpotRowView {
+    Long getId();
+    String getTitle();
+    String getDescription();
+    String getAddress();
+    String getCity();
+    String getPostalCode();
+    String getCountry();
+    BigDecimal getLatitude();
+    BigDecimal getLongitude();
+    LocalDateTime getAvailableFrom();
+    LocalDateTime getAvailableTo();
+    double getPricePerHour();
+    double getPricePerDay();
+}
@@ -0,0 +1,13 @@
+package com.example.demo.repository.projection;
+
+/**
+ * Read-only view of the searchable text of a parking spot.
+ * Used to build the in-memory search index without loading full ParkingSpot entities.
+ */
+public interface SpotTextView {
+    Long getId();
+    String getTitle();
+    String getDescription();
+    String getAddress();
+    String getCity();
+}
@@ -0,0 +1,13 @@
+package com.example.demo.requests.parkingspot;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+public class QuoteParkingSpotsRequest {
+    private List<Long> spotIds;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+}
@@ -5,6 +5,10 @@ import java.time.LocalDateTime;
 
 import lombok.Data;
 
+/**
+ * The PaymentIntent is created after the booking commits, so its client secret is not part of this DTO.
+ * Clients get it from GET /booking/{bookingId}/payment-intent?waitMs=... (PaymentIntentStatusDto).
+ */
 @Data
 public class BookingResponseDto {
     private Long id;
@@ -17,5 +21,5 @@ public class BookingResponseDto {
     private Long spotId;
     private String spotLocation;
     private LocalDateTime createdAt;
-    private String clientSecret;
+    private String refundStatus; // set once a cancelled booking's payment is being refunded
 }
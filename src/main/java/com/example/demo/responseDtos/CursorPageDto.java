@@ -0,0 +1,17 @@
+package com.example.demo.responseDtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One page of a keyset paginated list.
+ * nextCursor is passed back as "after" to get the next page, it is null on the last page.
+ */
+@Data
+@AllArgsConstructor
+public class CursorPageDto<T> {
+    private List<T> items;
+    private String nextCursor;
+}
@@ -0,0 +1,12 @@
+package com.example.demo.responseDtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class NearbyParkingSpotResponseDto {
+    private ParkingSpotResponseDto spot;
+    // great-circle distance from the searched point
+    private double distanceKm;
+}
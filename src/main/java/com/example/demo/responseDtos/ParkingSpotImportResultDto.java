@@ -0,0 +1,23 @@
+package com.example.demo.responseDtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class ParkingSpotImportResultDto {
+    private int imported;
+    private int rejected;
+    // first rejected rows with the reason, rejected counts all of them
+    private List<RowError> errors;
+
+    @Data
+    @AllArgsConstructor
+    public static class RowError {
+        // 1-based line number in the uploaded file
+        private long line;
+        private String message;
+    }
+}
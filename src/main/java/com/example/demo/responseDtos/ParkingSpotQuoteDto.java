@@ -0,0 +1,16 @@
+package com.example.demo.responseDtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+@AllArgsConstructor
+public class ParkingSpotQuoteDto {
+    private Long spotId;
+    // exact price in minor units (cents), what a booking for the same window would charge
+    private long totalAmountMinor;
+    private BigDecimal totalAmount;
+    private String currency;
+}
@@ -7,6 +7,7 @@ import java.time.LocalDateTime;
 
 @Data
 public class ParkingSpotResponseDto {
+    private Long id;
     private String title;
     private String description;
     private String address;
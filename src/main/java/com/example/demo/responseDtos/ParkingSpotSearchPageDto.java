@@ -0,0 +1,16 @@
+package com.example.demo.responseDtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class ParkingSpotSearchPageDto {
+    // spots of the requested page, best match first
+    private List<ParkingSpotResponseDto> spots;
+    private int page;
+    private int size;
+    private int totalHits;
+}
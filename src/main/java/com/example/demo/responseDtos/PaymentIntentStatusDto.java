@@ -0,0 +1,13 @@
+package com.example.demo.responseDtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class PaymentIntentStatusDto {
+    private Long bookingId;
+    private String status; // PENDING, SENT, FAILED or NONE when no payment was requested
+    private String clientSecret;
+    private String error;
+}
@@ -4,7 +4,6 @@ import com.example.demo.security.jwt.AuthTokenFilter;
 import com.example.demo.security.jwt.JwtAuthEntryPoint;
 import com.example.demo.security.user.AppUserDetailsService;
 import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -33,11 +32,6 @@ public class AppConfig {
 
     private static final List<String> SECURED_URLS =List.of("/api/v1/parking-spots");
 
-    @Bean
-    public ModelMapper modelMapper() {
-        return new ModelMapper();
-    }
-
     @Bean
     public PasswordEncoder passwordEncoder() {
         return new BCryptPasswordEncoder();
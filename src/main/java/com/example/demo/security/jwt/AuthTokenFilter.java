@@ -1,7 +1,10 @@
 package com.example.demo.security.jwt;
 
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
-import com.example.demo.security.user.AppUserDetailsService;
+import com.example.demo.cache.TtlCache;
+import com.example.demo.security.user.AppUserDetails;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.Cookie;
@@ -9,21 +12,49 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Authenticates requests from the JWT alone: the token is verified once and the principal is
+ * built from its id and roles claims, so no database query is needed per request.
+ * Deleted users and role changes are honored through TokenRevocations.
+ *
+ * Verified tokens can be cached for a few seconds (auth.token.cache.ttl-seconds, 0 turns it off),
+ * which skips the signature check for clients sending the same token again.
+ */
 @Component
 @RequiredArgsConstructor
 public class AuthTokenFilter extends OncePerRequestFilter {
     private final JwtUtils jwtUtils;
-    private final AppUserDetailsService userDetailsService;
+    private final TokenRevocations tokenRevocations;
+
+    @Value("${auth.token.cache.ttl-seconds:30}")
+    private long cacheTtlSeconds;
+    @Value("${auth.token.cache.max-size:10000}")
+    private int cacheMaxSize;
+
+    // null when caching is turned off
+    private TtlCache<String, VerifiedToken> verifiedTokens;
+
+    private record VerifiedToken(AppUserDetails userDetails, Date issuedAt) {
+    }
+
+    @PostConstruct
+    void initCache() {
+        if (cacheTtlSeconds > 0) {
+            verifiedTokens = new TtlCache<>(cacheMaxSize, cacheTtlSeconds, TimeUnit.SECONDS);
+        }
+    }
 
     @Override
     protected void doFilterInternal(@NonNull HttpServletRequest request,
@@ -31,9 +62,8 @@ public class AuthTokenFilter extends OncePerRequestFilter {
                                     @NonNull FilterChain filterChain) throws ServletException, IOException {
         String jwt = parseJwtToken(request);
         try {
-            if (StringUtils.hasText(jwt) && jwtUtils.validateToken(jwt)) {
-                String username = jwtUtils.getUsernameFromToken(jwt);
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+            if (StringUtils.hasText(jwt)) {
+                AppUserDetails userDetails = authenticate(jwt);
                 Authentication auth = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
                 SecurityContextHolder.getContext().setAuthentication(auth);
             }
@@ -50,6 +80,24 @@ public class AuthTokenFilter extends OncePerRequestFilter {
 
     }
 
+    private AppUserDetails authenticate(String jwt) {
+        VerifiedToken token = verifiedTokens == null ? null : verifiedTokens.get(jwt);
+        if (token == null) {
+            Claims claims = jwtUtils.parseClaims(jwt);
+            token = new VerifiedToken(jwtUtils.getUserDetailsFromClaims(claims), jwtUtils.getIssuedAt(claims));
+            if (verifiedTokens != null) {
+                // never cached past the token's own expiry
+                long nanosLeft = TimeUnit.MILLISECONDS.toNanos(claims.getExpiration().getTime() - System.currentTimeMillis());
+                verifiedTokens.put(jwt, token, nanosLeft);
+            }
+        }
+        // checked on cache hits too, so a revocation applies at once
+        if (tokenRevocations.isRevoked(token.userDetails().getId(), token.issuedAt())) {
+            throw new JwtException("Token has been revoked");
+        }
+        return token.userDetails();
+    }
+
     private String parseJwtToken(HttpServletRequest request) {
         String headerAuth = request.getHeader("Authorization");
         if (StringUtils.hasText(headerAuth) && headerAuth.startsWith("Bearer ")) {
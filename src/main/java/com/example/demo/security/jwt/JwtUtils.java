@@ -3,7 +3,9 @@ package com.example.demo.security.jwt;
 import java.security.Key;
 import java.util.Date;
 import java.util.List;
+import java.util.stream.Collectors;
 
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
@@ -12,8 +14,10 @@ import org.springframework.stereotype.Component;
 
 import com.example.demo.security.user.AppUserDetails;
 
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.MalformedJwtException;
 import io.jsonwebtoken.SignatureAlgorithm;
@@ -24,11 +28,26 @@ import io.jsonwebtoken.security.Keys;
 
 @Component
 public class JwtUtils {
+    // iat has second precision, revocations compare the issue time in milliseconds
+    private static final String ISSUED_AT_MILLIS = "iat_ms";
+
     @Value("${auth.token.jwtSecret}")
     private String jwtSecret;
     @Value("${auth.token.expirationInMils}")
     private long expirationTime;
 
+    // built once, the key and the parser are immutable and thread-safe
+    private Key signingKey;
+    private JwtParser parser;
+
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+        parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+    }
+
     public String generateJwtToken(Authentication authentication) {
         UserDetails userDetails = (UserDetails) authentication.getPrincipal();
         AppUserDetails userPrincipal = (AppUserDetails) authentication.getPrincipal();
@@ -44,33 +63,50 @@ public class JwtUtils {
                 .setSubject(userPrincipal.getEmail())
                 .claim("id", userPrincipal.getId())
                 .claim("roles", roles)
+                .claim(ISSUED_AT_MILLIS, now.getTime())
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
-                .signWith(key(), SignatureAlgorithm.HS256).compact();
+                .signWith(signingKey, SignatureAlgorithm.HS256).compact();
+    }
+
+    /**
+     * Verifies the token and returns its claims.
+     * @throws JwtException if the token is invalid or expired
+     */
+    public Claims parseClaims(String token) {
+        try {
+            return parser.parseClaimsJws(token).getBody();
+        } catch (ExpiredJwtException | UnsupportedJwtException | MalformedJwtException | SignatureException | IllegalArgumentException e) {
+            throw new JwtException(e.getMessage());
+        }
+    }
+
+    /**
+     * Builds the principal from the id and roles claims, without loading the user.
+     */
+    public AppUserDetails getUserDetailsFromClaims(Claims claims) {
+        List<?> roles = claims.get("roles", List.class);
+        return AppUserDetails.buildUserDetails(
+                claims.get("id", Long.class),
+                claims.getSubject(),
+                roles == null ? List.of() : roles.stream().map(Object::toString).collect(Collectors.toList()));
     }
 
-    private Key key() {
-        return Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+    /**
+     * The issue time of the token in milliseconds. Tokens issued without the iat_ms claim fall back to
+     * iat, the start of the second they were issued in.
+     */
+    public Date getIssuedAt(Claims claims) {
+        Long issuedAtMillis = claims.get(ISSUED_AT_MILLIS, Long.class);
+        return issuedAtMillis != null ? new Date(issuedAtMillis) : claims.getIssuedAt();
     }
 
     public String getUsernameFromToken(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(key())
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+        return parseClaims(token).getSubject();
     }
 
     public boolean validateToken(String token) {
-        try {
-            Jwts.parserBuilder()
-                    .setSigningKey(key())
-                    .build()
-                    .parseClaimsJws(token);
-            return true;
-        } catch (ExpiredJwtException | UnsupportedJwtException | MalformedJwtException | SignatureException | IllegalArgumentException e) {
-            throw new JwtException(e.getMessage());
-        }
+        parseClaims(token);
+        return true;
     }
 }
@@ -0,0 +1,78 @@
+package com.example.demo.security.jwt;
+
+import com.example.demo.model.TokenRevocation;
+import com.example.demo.repository.TokenRevocationRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lets stateless JWT authentication honor user deletion, role and password changes.
+ *
+ * Revoking a user writes a token_revocation row and rejects the user's tokens on this node at once.
+ * Every node reloads the recent revocations on a fixed interval, so other nodes reject them within
+ * that interval. Requests themselves only do a map lookup. Rows older than the token lifetime
+ * cannot cover a valid token any more and are purged.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TokenRevocations {
+
+    private final TokenRevocationRepository revocationRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${auth.token.expirationInMils}")
+    private long expirationTime;
+
+    // user id -> epoch millisecond up to which the user's tokens are revoked
+    private final Map<Long, Long> revokedUntil = new ConcurrentHashMap<>();
+
+    /**
+     * Rejects every token of the user issued until now.
+     * Call when a user is deleted or their roles or password change, the user has to log in again.
+     */
+    public void revokeTokensOf(Long userId) {
+        LocalDateTime now = LocalDateTime.now();
+        revocationRepository.save(new TokenRevocation(userId, now));
+        revokedUntil.merge(userId, toEpochMilli(now), Math::max);
+    }
+
+    public boolean isRevoked(Long userId, Date issuedAt) {
+        Long until = revokedUntil.get(userId);
+        // issuedAt comes from JwtUtils.getIssuedAt, a token issued right after the revocation is accepted
+        return until != null && (issuedAt == null || issuedAt.getTime() <= until);
+    }
+
+    @Scheduled(fixedDelayString = "${auth.token.revocation.refresh-ms:5000}")
+    public void refresh() {
+        LocalDateTime since = LocalDateTime.now().minusNanos(expirationTime * 1_000_000);
+        try {
+            List<TokenRevocation> revocations = revocationRepository.findByRevokedAtAfter(since);
+            for (TokenRevocation revocation : revocations) {
+                revokedUntil.merge(revocation.getUserId(), toEpochMilli(revocation.getRevokedAt()), Math::max);
+            }
+            long oldest = toEpochMilli(since);
+            revokedUntil.values().removeIf(until -> until < oldest);
+
+            transactionTemplate.executeWithoutResult(status -> revocationRepository.deleteOlderThan(since));
+        } catch (RuntimeException e) {
+            // keep the revocations known so far, retried on the next run
+            log.warn("Token revocation refresh failed: {}", e.getMessage());
+        }
+    }
+
+    private static long toEpochMilli(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
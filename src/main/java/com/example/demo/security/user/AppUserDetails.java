@@ -38,6 +38,14 @@ public class AppUserDetails implements UserDetails {
                 authorities);
     }
 
+    // Principal of a verified token, it carries no password
+    public static AppUserDetails buildUserDetails(Long id, String email, List<String> roles) {
+        List<GrantedAuthority> authorities = roles.stream()
+                .map(role -> (GrantedAuthority) new SimpleGrantedAuthority(role))
+                .collect(Collectors.toList());
+        return new AppUserDetails(id, email, null, authorities);
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return authorities;
@@ -2,6 +2,7 @@ package com.example.demo.security.user;
 
 import com.example.demo.model.User;
 import com.example.demo.repository.UserRepository;
+import com.example.demo.service.user.UserIdentityCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -15,6 +16,7 @@ import java.util.Optional;
 public class AppUserDetailsService implements UserDetailsService {
 
     private final UserRepository userRepository;
+    private final UserIdentityCache userIdentityCache;
 
 
     @Override
@@ -22,6 +24,8 @@ public class AppUserDetailsService implements UserDetailsService {
         User user = Optional.ofNullable(userRepository.findByEmail(username))
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + username));
 
+        // the password hash is needed here, so this always reads the user and warms the cache for the services
+        userIdentityCache.put(user);
         return AppUserDetails.buildUserDetails(user);
     }
 
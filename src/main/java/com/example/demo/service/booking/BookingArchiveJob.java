@@ -0,0 +1,88 @@
+package com.example.demo.service.booking;
+
+import com.example.demo.exeptions.LeadershipLostException;
+import com.example.demo.repository.BookingHistoryRepository;
+import com.example.demo.repository.BookingRepository;
+import com.example.demo.service.cluster.LeaderLease;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.OptionalLong;
+
+/*
+    Moves completed and cancelled bookings that ended more than booking.archive.after-days ago
+    from booking into booking_history, so the overlap checks, scheduler queries and spot listings
+    only work on the live set. Bookings with a refund still pending stay until it is done.
+
+    Every batch is copied (INSERT IGNORE ... SELECT) and deleted in one transaction, after locking
+    the rows and checking again that they are still archivable. The list endpoints merge the history
+    back in when it is asked for.
+
+    Only the node holding the LeaderLease runs the job, every batch checks the fencing token.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BookingArchiveJob {
+
+    private final BookingRepository bookingRepository;
+    private final BookingHistoryRepository historyRepository;
+    private final LeaderLease leaderLease;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${booking.archive.after-days:90}")
+    private int afterDays;
+    @Value("${booking.archive.batch-size:500}")
+    private int batchSize;
+
+    @Scheduled(cron = "${booking.archive.cron:0 30 3 * * *}")
+    public void archive() {
+        OptionalLong token = leaderLease.currentToken();
+        if (token.isEmpty()) {
+            return; // another node is the leader
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(afterDays);
+
+        int archived = 0;
+        try {
+            List<Long> ids;
+            do {
+                // archived rows leave the table, so every round simply takes the next ones
+                ids = bookingRepository.findArchivableIds(cutoff, Limit.of(batchSize));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                int moved = moveToHistory(token.getAsLong(), ids, cutoff);
+                if (moved == 0) {
+                    break; // all of them changed in the meantime
+                }
+                archived += moved;
+            } while (ids.size() == batchSize);
+        } catch (LeadershipLostException e) {
+            log.warn("Booking archiving stopped: {}", e.getMessage());
+        }
+        log.info("Archived {} booking(s) that ended before {}", archived, cutoff);
+    }
+
+    // Private Helper Methods
+
+    private int moveToHistory(long token, List<Long> ids, LocalDateTime cutoff) {
+        LocalDateTime now = LocalDateTime.now();
+        return transactionTemplate.execute(status -> {
+            leaderLease.fence(token);
+            List<Long> locked = bookingRepository.lockArchivable(ids, cutoff);
+            if (locked.isEmpty()) {
+                return 0;
+            }
+            historyRepository.copyFromBookings(locked, now);
+            return bookingRepository.deleteByIdIn(locked);
+        });
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.demo.service.booking;
+
+import com.example.demo.enums.BookingStatus;
+import com.example.demo.model.Booking;
+import com.example.demo.repository.BookingRepository;
+import com.example.demo.repository.projection.BookingSlotView;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * In-memory index of the live (PENDING, CONFIRMED, ACTIVE) bookings of every parking spot.
+ * Overlap checks are answered from a start-time ordered set per spot in O(log n),
+ * so requests for a taken slot are turned away without touching the booking table.
+ *
+ * Every node keeps its own index, so it is a hint and not the authority: the database check
+ * in BookingService decides, and a conflict only the index knows of makes the service reload
+ * that spot (reloadSpot). The index is rebuilt from the database on startup, kept in sync by the
+ * booking service and the transitions, and catches up with the other nodes' changes through
+ * sync (IndexSync). Changes made inside a transaction are undone if that transaction rolls back.
+ *
+ * Every spot maps to one of a fixed set of lock stripes guarding its slot set,
+ * spots on other stripes proceed in parallel. Spots without live bookings are dropped.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BookingAvailabilityIndex {
+
+    // Minutes that have to stay free between two bookings of the same spot
+    public static final long BUFFER_MINUTES = 5;
+
+    public static final Set<BookingStatus> LIVE_STATUSES =
+            EnumSet.of(BookingStatus.PENDING, BookingStatus.CONFIRMED, BookingStatus.ACTIVE);
+
+    // Number of lock stripes, must be a power of two
+    private static final int STRIPES = 256;
+
+    private static final Comparator<Slot> BY_START =
+            Comparator.comparing(Slot::start).thenComparingLong(Slot::bookingId);
+
+    private final BookingRepository bookingRepository;
+
+    private final Map<Long, NavigableSet<Slot>> slotsBySpot = new ConcurrentHashMap<>();
+    private final Map<Long, Slot> slotsByBooking = new ConcurrentHashMap<>();
+    private final Object[] stripes = Stream.generate(Object::new).limit(STRIPES).toArray();
+
+    private record Slot(long bookingId, long spotId, LocalDateTime start, LocalDateTime end) {
+    }
+
+    /**
+     * Loads all live bookings and drops the bookings that are no longer live.
+     * Runs on startup and periodically (IndexSync), the index stays usable while it runs.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<BookingSlotView> liveSlots = bookingRepository.findSlotsByStatusIn(LIVE_STATUSES);
+
+        Set<Long> liveIds = new HashSet<>();
+        for (BookingSlotView view : liveSlots) {
+            put(new Slot(view.getId(), view.getSpotId(), view.getStartTime(), view.getEndTime()));
+            liveIds.add(view.getId());
+        }
+        for (Long bookingId : List.copyOf(slotsByBooking.keySet())) {
+            if (!liveIds.contains(bookingId)) {
+                remove(bookingId);
+            }
+        }
+        log.info("Booking availability index rebuilt with {} live bookings", liveSlots.size());
+    }
+
+    /**
+     * Checks if the spot is free between start and end, including the buffer on both sides,
+     * as far as this node knows.
+     * @param ignoredBookingId booking to leave out of the check (the one being updated), or null
+     */
+    public boolean isAvailable(Long spotId, LocalDateTime start, LocalDateTime end, Long ignoredBookingId) {
+        LocalDateTime from = start.minusMinutes(BUFFER_MINUTES);
+        LocalDateTime to = end.plusMinutes(BUFFER_MINUTES);
+        Slot probe = new Slot(Long.MAX_VALUE, spotId, to, to);
+
+        synchronized (stripeFor(spotId)) {
+            NavigableSet<Slot> slots = slotsBySpot.get(spotId);
+            if (slots == null) {
+                return true;
+            }
+            // Live slots of one spot never overlap, so the latest slot starting before 'to'
+            // is the only one that can still reach into the requested period
+            for (Slot slot : slots.headSet(probe, true).descendingSet()) {
+                if (ignoredBookingId != null && slot.bookingId() == ignoredBookingId) {
+                    continue;
+                }
+                return slot.end().isBefore(from);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Replaces the slots of a spot with its live bookings in the database,
+     * used when the index reported a conflict the database does not have.
+     */
+    public void reloadSpot(Long spotId) {
+        List<BookingSlotView> liveSlots = bookingRepository.findSlotsBySpotIdAndStatusIn(spotId, LIVE_STATUSES);
+        synchronized (stripeFor(spotId)) {
+            NavigableSet<Slot> stale = slotsBySpot.remove(spotId);
+            if (stale != null) {
+                stale.forEach(slot -> slotsByBooking.remove(slot.bookingId(), slot));
+            }
+            for (BookingSlotView view : liveSlots) {
+                put(new Slot(view.getId(), view.getSpotId(), view.getStartTime(), view.getEndTime()));
+            }
+        }
+        log.debug("Availability of spot {} reloaded with {} live bookings", spotId, liveSlots.size());
+    }
+
+    /**
+     * Records the current time slot and status of a booking.
+     * Live bookings are added or moved, finished and cancelled bookings are removed.
+     */
+    public void track(Booking booking) {
+        Long bookingId = booking.getId();
+        Slot previous = LIVE_STATUSES.contains(booking.getStatus())
+                ? put(new Slot(bookingId, booking.getSpot().getId(), booking.getStartTime(), booking.getEndTime()))
+                : remove(bookingId);
+
+        undoOnRollback(() -> {
+            remove(bookingId);
+            if (previous != null) {
+                put(previous);
+            }
+        });
+    }
+
+    /**
+     * Applies a booking as read from the database, used to catch up with changes of other nodes.
+     */
+    public void sync(BookingSlotView view) {
+        if (LIVE_STATUSES.contains(view.getStatus())) {
+            put(new Slot(view.getId(), view.getSpotId(), view.getStartTime(), view.getEndTime()));
+        } else {
+            remove(view.getId());
+        }
+    }
+
+    /**
+     * Removes a booking that left the live statuses.
+     */
+    public void release(Long bookingId) {
+        Slot previous = remove(bookingId);
+        if (previous != null) {
+            undoOnRollback(() -> put(previous));
+        }
+    }
+
+    // Private Helper Methods
+
+    private Slot put(Slot slot) {
+        Slot previous = remove(slot.bookingId());
+        synchronized (stripeFor(slot.spotId())) {
+            slotsBySpot.computeIfAbsent(slot.spotId(), id -> new TreeSet<>(BY_START)).add(slot);
+            slotsByBooking.put(slot.bookingId(), slot);
+        }
+        return previous;
+    }
+
+    private Slot remove(Long bookingId) {
+        Slot previous = slotsByBooking.remove(bookingId);
+        if (previous != null) {
+            synchronized (stripeFor(previous.spotId())) {
+                NavigableSet<Slot> slots = slotsBySpot.get(previous.spotId());
+                // spots without live bookings are dropped, the index does not grow with every spot ever booked
+                if (slots != null && slots.remove(previous) && slots.isEmpty()) {
+                    slotsBySpot.remove(previous.spotId());
+                }
+            }
+        }
+        return previous;
+    }
+
+    private Object stripeFor(long spotId) {
+        // Spread consecutive ids over the stripes
+        return stripes[(Long.hashCode(spotId) * 0x9E3779B9) >>> 24 & (STRIPES - 1)];
+    }
+
+    private void undoOnRollback(Runnable undo) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    undo.run();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.demo.service.booking;
+
+import com.example.demo.enums.BookingStatus;
+import com.example.demo.model.Booking;
+import com.example.demo.repository.BookingRepository;
+import com.example.demo.repository.projection.BookingSlotView;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fires booking status transitions at their deadlines instead of waiting for the next poll.
+ * Every live booking has up to three deadlines in a DelayQueue:
+ * - PAYMENT_TIMEOUT: createdAt + payment timeout, PENDING -> CANCELLED
+ * - START: startTime, CONFIRMED -> ACTIVE
+ * - END: endTime, ACTIVE -> COMPLETED
+ *
+ * All deadlines of a booking are queued up front. A deadline that no longer applies
+ * (booking paid, cancelled or moved) is either skipped because the booking was rescheduled,
+ * or turns into a no-op in BookingTransitionService, which re-checks status and time.
+ *
+ * The queue is loaded from the database on startup and updated by BookingService
+ * when bookings are created, updated or cancelled, and by PaymentService when they are paid.
+ * Changes made on other nodes are picked up by IndexSync, which also reloads the queue periodically.
+ * Scheduling a booking again with the same status and times does not queue anything.
+ * Unlike the BookingScheduler pass it runs on every app node: each node fires the deadlines
+ * it knows about, and firing the same deadline twice is harmless.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BookingDeadlineQueue {
+
+    // Upper bound of deadlines handled in one database round trip
+    private static final int MAX_BATCH = 500;
+
+    private final BookingRepository bookingRepository;
+    private final BookingTransitionService transitionService;
+
+    private final DelayQueue<Deadline> queue = new DelayQueue<>();
+    // Latest schedule per booking, queued deadlines of older generations are ignored
+    private final Map<Long, Scheduled> scheduled = new ConcurrentHashMap<>();
+    private final AtomicLong generationCounter = new AtomicLong();
+
+    private volatile Thread worker;
+
+    public enum Kind {
+        PAYMENT_TIMEOUT,
+        START,
+        END
+    }
+
+    private record Deadline(long bookingId, long generation, Kind kind, long fireAtMillis) implements Delayed {
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(fireAtMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            Deadline that = (Deadline) other;
+            int byTime = Long.compare(fireAtMillis, that.fireAtMillis);
+            // START before END when both are due at once
+            return byTime != 0 ? byTime : kind.compareTo(that.kind);
+        }
+    }
+
+    private record Scheduled(long generation, BookingStatus status, LocalDateTime start, LocalDateTime end) {
+        boolean sameAs(Scheduled other) {
+            return status == other.status && start.equals(other.start) && end.equals(other.end);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        rebuild();
+        worker = new Thread(this::run, "booking-deadlines");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Schedules all live bookings and forgets the bookings that are no longer live.
+     * Runs on startup and periodically (IndexSync), bookings already scheduled with the same times are left alone.
+     */
+    public void rebuild() {
+        List<BookingSlotView> liveBookings = bookingRepository.findSlotsByStatusIn(BookingAvailabilityIndex.LIVE_STATUSES);
+        Set<Long> liveIds = new HashSet<>();
+        for (BookingSlotView view : liveBookings) {
+            enqueue(view.getId(), view.getStatus(), view.getStartTime(), view.getEndTime(), view.getCreatedAt());
+            liveIds.add(view.getId());
+        }
+        scheduled.keySet().retainAll(liveIds);
+        log.info("Booking deadline queue loaded with {} deadlines for {} live bookings", queue.size(), liveBookings.size());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * (Re)schedules the deadlines of a booking from its current status and times.
+     * Inside a transaction this happens after commit, so rolled back changes are never scheduled.
+     */
+    public void schedule(Booking booking) {
+        schedule(booking.getId(), booking.getStatus(), booking.getStartTime(), booking.getEndTime(),
+                booking.getCreatedAt() != null ? booking.getCreatedAt() : LocalDateTime.now());
+    }
+
+    /**
+     * Same as schedule(Booking) for bookings changed with a set-based update.
+     */
+    public void schedule(BookingSlotView view) {
+        schedule(view.getId(), view.getStatus(), view.getStartTime(), view.getEndTime(), view.getCreatedAt());
+    }
+
+    // Private Helper Methods
+
+    private void schedule(Long bookingId, BookingStatus status, LocalDateTime start, LocalDateTime end, LocalDateTime createdAt) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            enqueue(bookingId, status, start, end, createdAt);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                enqueue(bookingId, status, start, end, createdAt);
+            }
+        });
+    }
+
+    private void enqueue(Long bookingId, BookingStatus status, LocalDateTime start, LocalDateTime end, LocalDateTime createdAt) {
+        if (!BookingAvailabilityIndex.LIVE_STATUSES.contains(status)) {
+            scheduled.remove(bookingId);
+            return;
+        }
+        Scheduled next = new Scheduled(generationCounter.incrementAndGet(), status, start, end);
+        if (scheduled.merge(bookingId, next, (current, candidate) -> current.sameAs(candidate) ? current : candidate) != next) {
+            return; // already queued with this status and these times
+        }
+        long generation = next.generation();
+
+        if (status == BookingStatus.PENDING) {
+            queue.add(new Deadline(bookingId, generation, Kind.PAYMENT_TIMEOUT,
+                    toMillis(createdAt.plusMinutes(transitionService.getPaymentTimeoutMinutes()))));
+        }
+        if (status != BookingStatus.ACTIVE) {
+            queue.add(new Deadline(bookingId, generation, Kind.START, toMillis(start)));
+        }
+        queue.add(new Deadline(bookingId, generation, Kind.END, toMillis(end)));
+    }
+
+    private void run() {
+        List<Deadline> due = new ArrayList<>();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                due.add(queue.take());
+                queue.drainTo(due, MAX_BATCH - 1);
+                fire(due);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                // The polling BookingScheduler picks these bookings up later
+                log.error("Failed to apply {} booking deadline(s)", due.size(), e);
+            } finally {
+                due.clear();
+            }
+        }
+    }
+
+    private void fire(List<Deadline> due) {
+        Map<Kind, List<Long>> idsByKind = new EnumMap<>(Kind.class);
+        for (Deadline deadline : due) {
+            Scheduled current = scheduled.get(deadline.bookingId());
+            if (current == null || current.generation() != deadline.generation()) {
+                continue; // rescheduled or no longer live
+            }
+            if (deadline.kind() == Kind.END) {
+                scheduled.remove(deadline.bookingId(), current);
+            }
+            idsByKind.computeIfAbsent(deadline.kind(), kind -> new ArrayList<>()).add(deadline.bookingId());
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        // Enum order: payment timeouts, then starts, then ends
+        idsByKind.forEach((kind, ids) -> {
+            switch (kind) {
+                case PAYMENT_TIMEOUT -> transitionService.cancelUnpaid(ids, now);
+                case START -> transitionService.activate(ids, now);
+                case END -> transitionService.complete(ids, now);
+            }
+        });
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -1,21 +1,39 @@
 package com.example.demo.service.booking;
 import com.example.demo.enums.BookingStatus;
-import com.example.demo.model.Booking;
+import com.example.demo.exeptions.LeadershipLostException;
 import com.example.demo.repository.BookingRepository;
+import com.example.demo.service.concurrency.ConflictRetry;
+import com.example.demo.service.cluster.LeaderLease;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.OptionalLong;
+import java.util.function.LongFunction;
+import java.util.function.ToIntFunction;
 
 /*
     Scheduler to update booking statuses based on time.
     - Activates bookings when start time is reached.
     - Completes bookings when end time is reached.
     - Cancels unpaid pending bookings after a timeout period 15 minutes.
+
+    Transitions normally fire on time from BookingDeadlineQueue,
+    this pass is the safety net for anything the queue missed.
+
+    Due bookings are selected as ids in keyset-paginated chunks and every chunk is
+    updated with one set-based UPDATE in its own transaction, so memory use and
+    transaction size stay bounded however large the backlog is.
+
+    Only the node holding the LeaderLease runs the pass, and every chunk checks
+    the fencing token in its transaction before it writes. A chunk that hits a lock
+    conflict is retried in a new transaction (ConflictRetry).
  */
 
 @Component
@@ -23,57 +41,72 @@ import java.util.List;
 @Slf4j
 public class BookingScheduler {
     private final BookingRepository bookingRepository;
+    private final BookingTransitionService transitionService;
+    private final LeaderLease leaderLease;
+    private final TransactionTemplate transactionTemplate;
+    private final ConflictRetry conflictRetry;
+
+    @Value("${booking.scheduler.chunk-size:500}")
+    private int chunkSize;
 
     /**
      * Runs every 5 minutes to keep booking states in sync with time.
      */
     @Scheduled(fixedRate = 300_000) // 5 minutes in milliseconds
-    @Transactional
     public void updateBookingStatuses() {
+        OptionalLong token = leaderLease.currentToken();
+        if (token.isEmpty()) {
+            return; // another node is the leader
+        }
         LocalDateTime now = LocalDateTime.now();
 
-        activateBookings(now);
-        completeBookings(now);
-        cancelUnpaidPendingBookings(now);
-    }
-
-    private void activateBookings(LocalDateTime now) {
-        List<Booking> toActivate = bookingRepository.findByStatusAndStartTimeBefore(
-                BookingStatus.CONFIRMED, now
-        );
+        try {
+            int activated = activateBookings(token.getAsLong(), now);
+            int completed = completeBookings(token.getAsLong(), now);
+            int cancelled = cancelUnpaidPendingBookings(token.getAsLong(), now);
 
-        for (Booking booking : toActivate) {
-            booking.setStatus(BookingStatus.ACTIVE);
-            log.info("Booking {} activated (spot {})", booking.getId(), booking.getSpot().getId());
+            log.info("Booking status pass: {} activated, {} completed, {} cancelled", activated, completed, cancelled);
+        } catch (LeadershipLostException e) {
+            log.warn("Booking status pass stopped: {}", e.getMessage());
         }
-        bookingRepository.saveAll(toActivate);
     }
 
+    private int activateBookings(long token, LocalDateTime now) {
+        return inChunks(token,
+                afterId -> bookingRepository.findIdsOfStarted(BookingStatus.CONFIRMED, now, afterId, Limit.of(chunkSize)),
+                ids -> transitionService.activate(ids, now));
+    }
 
-    private void completeBookings(LocalDateTime now) {
-        List<Booking> toComplete = bookingRepository.findByStatusAndEndTimeBefore(
-                BookingStatus.ACTIVE, now
-        );
-
-        for (Booking booking : toComplete) {
-            booking.setStatus(BookingStatus.COMPLETED);
-            log.info("Booking {} completed (spot {})", booking.getId(), booking.getSpot().getId());
-            // TODO: trigger payment release to owner
-        }
-        bookingRepository.saveAll(toComplete);
+    private int completeBookings(long token, LocalDateTime now) {
+        return inChunks(token,
+                afterId -> bookingRepository.findIdsOfEnded(BookingStatus.ACTIVE, now, afterId, Limit.of(chunkSize)),
+                ids -> transitionService.complete(ids, now));
     }
 
-    private void cancelUnpaidPendingBookings(LocalDateTime now) {
-        LocalDateTime cutoff = now.minusMinutes(15); // configurable timeout
-        List<Booking> toCancel = bookingRepository.findByStatusAndCreatedAtBefore(
-                BookingStatus.PENDING, cutoff
-        );
+    private int cancelUnpaidPendingBookings(long token, LocalDateTime now) {
+        LocalDateTime cutoff = now.minusMinutes(transitionService.getPaymentTimeoutMinutes());
+        return inChunks(token,
+                afterId -> bookingRepository.findIdsOfCreatedBefore(BookingStatus.PENDING, cutoff, afterId, Limit.of(chunkSize)),
+                ids -> transitionService.cancelUnpaid(ids, now));
+    }
 
-        for (Booking booking : toCancel) {
-            booking.setStatus(BookingStatus.CANCELLED);
-            log.info("Booking {} cancelled due to inactivity", booking.getId());
-            // TODO: trigger refund if payment was pre-authorized
-        }
-        bookingRepository.saveAll(toCancel);
+    // Walks the due ids chunk by chunk (keyset on id) and applies the transition to each chunk
+    private int inChunks(long token, LongFunction<List<Long>> nextChunk, ToIntFunction<List<Long>> transition) {
+        int changed = 0;
+        long afterId = 0;
+        List<Long> ids;
+        do {
+            ids = nextChunk.apply(afterId);
+            if (ids.isEmpty()) {
+                break;
+            }
+            List<Long> chunk = ids;
+            changed += conflictRetry.execute("BookingScheduler.transition", () -> transactionTemplate.execute(status -> {
+                leaderLease.fence(token);
+                return transition.applyAsInt(chunk);
+            }));
+            afterId = ids.get(ids.size() - 1);
+        } while (ids.size() == chunkSize);
+        return changed;
     }
 }
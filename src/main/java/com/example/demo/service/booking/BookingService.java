@@ -1,28 +1,42 @@
 package com.example.demo.service.booking;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
-import org.modelmapper.ModelMapper;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.example.demo.enums.BookingStatus;
+import com.example.demo.enums.RefundStatus;
 import com.example.demo.exeptions.ActionNotAllowedException;
 import com.example.demo.exeptions.ResourceNotFoundException;
 import com.example.demo.model.Booking;
 import com.example.demo.model.ParkingSpot;
 import com.example.demo.model.User;
+import com.example.demo.repository.BookingHistoryRepository;
 import com.example.demo.repository.BookingRepository;
 import com.example.demo.repository.ParkingSpotRepository;
 import com.example.demo.repository.UserRepository;
+import com.example.demo.repository.projection.BookingRowView;
 import com.example.demo.requests.booking.CreateBookingRequest;
 import com.example.demo.responseDtos.BookingResponseDto;
+import com.example.demo.responseDtos.CursorPageDto;
 import com.example.demo.security.user.AppUserDetails;
-import com.example.demo.service.payment.PaymentService;
+import com.example.demo.service.concurrency.RetryOnConflict;
+import com.example.demo.service.paging.KeysetCursor;
+import com.example.demo.service.payment.PaymentIntentOutbox;
+import com.example.demo.service.payment.RefundQueue;
+import com.example.demo.service.pricing.PricingEngine;
+import com.example.demo.service.user.UserIdentity;
+import com.example.demo.service.user.UserIdentityCache;
 
 import lombok.RequiredArgsConstructor;
 
@@ -30,6 +44,12 @@ import lombok.RequiredArgsConstructor;
  * Service for managing bookings of parking spots.
  * Provides methods to create, cancel, update, and retrieve bookings.
  * Handles business logic such as preventing double bookings and calculating total price.
+ * Requests for a taken slot are turned away early by the in-memory BookingAvailabilityIndex,
+ * a conflict only that node's index knows of is confirmed against the database first.
+ *
+ * Admission of a new or moved booking is serialized per spot only: the spot row is locked
+ * for the transaction and the overlap check against the database under that lock decides,
+ * for threads and app nodes alike. Bookings of different spots never wait on each other.
  *
  * Booking status explained:
  * PENDING: The booking has been created but not yet confirmed or paid for.
@@ -44,7 +64,9 @@ import lombok.RequiredArgsConstructor;
  * CONFIRMED -> ACTIVE (when the booking start time is reached)
  * ACTIVE -> COMPLETED (when the booking end time is reached)
  *
- * Payments are handled via PaymentService (Stripe) and webhooks.
+ * Payments are handled via PaymentService (Stripe) and webhooks. The PaymentIntent of a new booking
+ * is created by PaymentIntentOutbox after the booking commits, clients fetch its client secret
+ * from GET /booking/{id}/payment-intent.
  */
 @Service
 @RequiredArgsConstructor
@@ -54,16 +76,24 @@ public class BookingService implements IBookingService {
     private final BookingRepository bookingRepository;
     private final ParkingSpotRepository parkingSpotRepository;
     private final UserRepository userRepository;
-    private final ModelMapper modelMapper;
-    private final PaymentService paymentService;
+    private final UserIdentityCache userIdentityCache;
+    private final PaymentIntentOutbox paymentIntentOutbox;
+    private final RefundQueue refundQueue;
+    private final PricingEngine pricingEngine;
+    private final BookingHistoryRepository bookingHistoryRepository;
+    private final BookingAvailabilityIndex availabilityIndex;
+    private final BookingDeadlineQueue deadlineQueue;
 
     /**
      * Create a new booking for a parking spot.
      * Validates the booking request to prevent double bookings and ensure proper time frames.
      * Calculates the total price based on the duration of the booking.
-     * Also initializes a Stripe PaymentIntent and returns its client secret in the DTO.
+     * The Stripe PaymentIntent is requested through the outbox and created after commit,
+     * clients wait for its client secret on GET /booking/{bookingId}/payment-intent.
      */
     @Override
+    @RetryOnConflict
+    @Transactional(isolation = Isolation.READ_COMMITTED)
     public BookingResponseDto createBooking(AppUserDetails userDetails, CreateBookingRequest request) {
 
         Long spotId = request.getSpotId();
@@ -71,48 +101,38 @@ public class BookingService implements IBookingService {
         LocalDateTime end = request.getEndTime();
 
         // Find renter and parking spot
-        User renter = userRepository.findByEmail(userDetails.getUsername());
-        if (renter == null) {
-            throw new ResourceNotFoundException("User not found");
-        }
-
-        ParkingSpot spot = parkingSpotRepository.findById(spotId)
-                .orElseThrow(() -> new ResourceNotFoundException("Parking Spot not found"));
+        UserIdentity renter = userIdentityCache.requireByEmail(userDetails.getUsername());
 
         // Simple validation for booking times
         validateBookingTimes(start, end);
 
-        // Prevent double booking, with 5 minutes buffer
-        boolean overlapping = bookingRepository.existsBySpotAndStartTimeLessThanEqualAndEndTimeGreaterThanEqual(
-                spot,
-                end.plusMinutes(5),
-                start.minusMinutes(5)
-        );
-        if (overlapping) {
-            throw new ActionNotAllowedException("Parking spot is already booked during this period (5 min buffer included)");
-        }
+        // Prevent double booking, with 5 minutes buffer (fast rejection before locking anything)
+        String conflictMessage = "Parking spot is already booked during this period (5 min buffer included)";
+        checkAvailable(spotId, start, end, null, conflictMessage);
+
+        ParkingSpot spot = parkingSpotRepository.findByIdForUpdate(spotId)
+                .orElseThrow(() -> new ResourceNotFoundException("Parking Spot not found"));
 
         // Calculate total price
-        BigDecimal price = calculatePrice(spot, start, end);
+        long price = calculatePrice(spot, start, end);
 
         Booking booking = new Booking();
-        booking.setRenter(renter);
+        booking.setRenter(userRepository.getReferenceById(renter.id()));
         booking.setSpot(spot);
         booking.setStartTime(start);
         booking.setEndTime(end);
-        booking.setTotalAmount(price.doubleValue());
+        booking.setTotalAmountMinor(price);
+        booking.setTotalAmount(PricingEngine.toMajor(price));
         booking.setStatus(BookingStatus.PENDING);
 
         Booking savedBooking = bookingRepository.save(booking);
+        admit(savedBooking, conflictMessage);
+        deadlineQueue.schedule(savedBooking);
 
-        // Initiate Stripe payment for this booking via PaymentService
-        // Pick the currency you actually use ("eur"/"usd"/...)
-        String clientSecret = paymentService.createPaymentIntentForBooking(savedBooking.getId(), "eur");
-
-        BookingResponseDto dto = convertToDto(savedBooking);
-        dto.setClientSecret(clientSecret);
+        // The Stripe call happens after commit, the client secret is not known yet
+        paymentIntentOutbox.enqueue(savedBooking.getId(), pricingEngine.getCurrency());
 
-        return dto;
+        return convertToDto(savedBooking, renter.email());
     }
 
     /**
@@ -121,12 +141,13 @@ public class BookingService implements IBookingService {
      * Bookings cannot be cancelled less than 1 hour before the start time.
      */
     @Override
+    @RetryOnConflict
     public BookingResponseDto cancelBooking(AppUserDetails userDetails, Long bookingId) {
         Booking booking = bookingRepository.findById(bookingId)
                 .orElseThrow(() -> new ResourceNotFoundException("Booking not found"));
 
-        User renter = userRepository.findByEmail(userDetails.getUsername());
-        if (!booking.getRenter().equals(renter)) {
+        UserIdentity renter = userIdentityCache.requireByEmail(userDetails.getUsername());
+        if (!booking.getRenter().getId().equals(renter.id())) {
             throw new ActionNotAllowedException("Only renter can cancel its own booking");
         }
 
@@ -138,10 +159,15 @@ public class BookingService implements IBookingService {
             throw new ActionNotAllowedException("This booking cannot be cancelled anymore (already completed or cancelled)");
         }
 
+        // refund a paid booking, or cancel the PaymentIntent of an unpaid one, after commit
+        if (refundQueue.request(List.of(booking.getId()), List.of(booking.getStatus()), LocalDateTime.now()) > 0) {
+            booking.setRefundStatus(RefundStatus.PENDING); // saved below, keep the queued state
+        }
+
         booking.setStatus(BookingStatus.CANCELLED);
         bookingRepository.save(booking);
-
-        // If you later support automatic refunds, implement it via PaymentService here.
+        availabilityIndex.release(booking.getId());
+        deadlineQueue.schedule(booking);
 
         return convertToDto(booking);
     }
@@ -154,12 +180,14 @@ public class BookingService implements IBookingService {
      * Recalculates the total price based on the new duration.
      */
     @Override
+    @RetryOnConflict
+    @Transactional(isolation = Isolation.READ_COMMITTED)
     public BookingResponseDto updateBooking(AppUserDetails userDetails, Long bookingId, CreateBookingRequest request) {
         Booking booking = bookingRepository.findById(bookingId)
                 .orElseThrow(() -> new ResourceNotFoundException("Booking not found"));
 
-        User renter = userRepository.findByEmail(userDetails.getUsername());
-        if (!booking.getRenter().equals(renter)) {
+        UserIdentity renter = userIdentityCache.requireByEmail(userDetails.getUsername());
+        if (!booking.getRenter().getId().equals(renter.id())) {
             throw new ActionNotAllowedException("Only the renter can update their own booking");
         }
 
@@ -178,21 +206,19 @@ public class BookingService implements IBookingService {
         validateBookingTimes(newStart, newEnd);
 
         // Prevent overlap with other bookings on same spot
-        boolean overlapping = bookingRepository.existsBySpotAndStartTimeLessThanEqualAndEndTimeGreaterThanEqual(
-                booking.getSpot(),
-                newEnd.plusMinutes(5),
-                newStart.minusMinutes(5)
-        );
-        if (overlapping) {
-            throw new ActionNotAllowedException("Parking spot is already booked during the new time period");
-        }
+        String conflictMessage = "Parking spot is already booked during the new time period";
+        checkAvailable(booking.getSpot().getId(), newStart, newEnd, booking.getId(), conflictMessage);
+        parkingSpotRepository.findByIdForUpdate(booking.getSpot().getId());
 
-        BigDecimal newPrice = calculatePrice(booking.getSpot(), newStart, newEnd);
+        long newPrice = calculatePrice(booking.getSpot(), newStart, newEnd);
 
         booking.setStartTime(newStart);
         booking.setEndTime(newEnd);
-        booking.setTotalAmount(newPrice.doubleValue());
+        booking.setTotalAmountMinor(newPrice);
+        booking.setTotalAmount(PricingEngine.toMajor(newPrice));
         bookingRepository.save(booking);
+        admit(booking, conflictMessage);
+        deadlineQueue.schedule(booking);
 
         // If you support adjusting/capturing different amounts, wire it through PaymentService here.
 
@@ -200,33 +226,108 @@ public class BookingService implements IBookingService {
     }
 
     @Override
-    public List<BookingResponseDto> getBookingsByRenter(Long renterId) {
-        User renter = userRepository.findById(renterId)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+    @Transactional(readOnly = true)
+    public CursorPageDto<BookingResponseDto> getBookingsByRenter(Long renterId, String after, int limit, boolean includeHistory) {
+        KeysetCursor.checkLimit(limit);
+        KeysetCursor cursor = KeysetCursor.decodeTimed(after);
+        if (!userRepository.existsById(renterId)) {
+            throw new ResourceNotFoundException("User not found");
+        }
 
-        List<Booking> bookings = bookingRepository.findByRenter(renter);
-        return getConvertedBookings(bookings);
+        List<BookingRowView> rows = cursor == null
+                ? bookingRepository.findRenterRowPage(renterId, Limit.of(limit + 1))
+                : bookingRepository.findRenterRowPageAfter(renterId, cursor.time(), cursor.id(), Limit.of(limit + 1));
+        if (includeHistory) {
+            List<BookingRowView> archived = cursor == null
+                    ? bookingHistoryRepository.findRenterRowPage(renterId, Limit.of(limit + 1))
+                    : bookingHistoryRepository.findRenterRowPageAfter(renterId, cursor.time(), cursor.id(), Limit.of(limit + 1));
+            rows = mergeByStartTime(rows, archived, limit + 1);
+        }
+        return KeysetCursor.page(rows, limit, this::startTimeCursor, this::convertToDto);
     }
 
     @Override
-    public List<BookingResponseDto> getBookingsBySpot(Long spotId) {
-        ParkingSpot spot = parkingSpotRepository.findById(spotId)
-                .orElseThrow(() -> new ResourceNotFoundException("Parking Spot not found"));
-        List<Booking> bookings = bookingRepository.findBySpot(spot);
-        return getConvertedBookings(bookings);
+    @Transactional(readOnly = true)
+    public CursorPageDto<BookingResponseDto> getBookingsBySpot(Long spotId, String after, int limit, boolean includeHistory) {
+        KeysetCursor.checkLimit(limit);
+        KeysetCursor cursor = KeysetCursor.decodeTimed(after);
+        if (!parkingSpotRepository.existsById(spotId)) {
+            throw new ResourceNotFoundException("Parking Spot not found");
+        }
+
+        List<BookingRowView> rows = cursor == null
+                ? bookingRepository.findSpotRowPage(spotId, Limit.of(limit + 1))
+                : bookingRepository.findSpotRowPageAfter(spotId, cursor.time(), cursor.id(), Limit.of(limit + 1));
+        if (includeHistory) {
+            List<BookingRowView> archived = cursor == null
+                    ? bookingHistoryRepository.findSpotRowPage(spotId, Limit.of(limit + 1))
+                    : bookingHistoryRepository.findSpotRowPageAfter(spotId, cursor.time(), cursor.id(), Limit.of(limit + 1));
+            rows = mergeByStartTime(rows, archived, limit + 1);
+        }
+        return KeysetCursor.page(rows, limit, this::startTimeCursor, this::convertToDto);
     }
 
     /**
-     * Retrieve all bookings (admin use).
+     * Retrieve all bookings (admin use), one page at a time.
      */
     @Override
-    public List<BookingResponseDto> getAllBookings() {
-        List<Booking> bookings = bookingRepository.findAll();
-        return getConvertedBookings(bookings);
+    @Transactional(readOnly = true)
+    public CursorPageDto<BookingResponseDto> getAllBookings(String after, int limit) {
+        KeysetCursor.checkLimit(limit);
+        KeysetCursor cursor = KeysetCursor.decode(after);
+        long afterId = cursor == null ? 0 : cursor.id();
+
+        List<BookingRowView> rows = bookingRepository.findRowPageAfterId(afterId, Limit.of(limit + 1));
+        return KeysetCursor.page(rows, limit, row -> KeysetCursor.ofId(row.getId()), this::convertToDto);
+    }
+
+    /**
+     * Export of all bookings (admin use). Rows are read from a streaming result set
+     * and handed to the consumer one by one, memory use stays flat however many there are.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllBookings(Consumer<BookingResponseDto> consumer) {
+        try (Stream<BookingRowView> rows = bookingRepository.streamAllRows()) {
+            rows.map(this::convertToDto).forEach(consumer);
+        }
     }
 
     // Private Helper Methods
 
+    /**
+     * Admits a saved booking, or throws to roll it back.
+     * The caller must hold the spot row lock, so the database check cannot race with another
+     * admission of the spot on any node. The index only records the result.
+     */
+    private void admit(Booking booking, String conflictMessage) {
+        if (overlapsInDatabase(booking.getSpot().getId(), booking.getStartTime(), booking.getEndTime(), booking.getId())) {
+            throw new ActionNotAllowedException(conflictMessage);
+        }
+        availabilityIndex.track(booking);
+    }
+
+    // Early check without locks. The index only sees what this node wrote or synced, so a conflict
+    // it reports is confirmed against the database, if the database disagrees the spot is reloaded
+    private void checkAvailable(Long spotId, LocalDateTime start, LocalDateTime end, Long bookingId, String conflictMessage) {
+        if (availabilityIndex.isAvailable(spotId, start, end, bookingId)) {
+            return;
+        }
+        if (overlapsInDatabase(spotId, start, end, bookingId)) {
+            throw new ActionNotAllowedException(conflictMessage);
+        }
+        availabilityIndex.reloadSpot(spotId);
+    }
+
+    private boolean overlapsInDatabase(Long spotId, LocalDateTime start, LocalDateTime end, Long ignoredBookingId) {
+        return bookingRepository.existsOverlapping(
+                spotId,
+                BookingAvailabilityIndex.LIVE_STATUSES,
+                start.minusMinutes(BookingAvailabilityIndex.BUFFER_MINUTES),
+                end.plusMinutes(BookingAvailabilityIndex.BUFFER_MINUTES),
+                ignoredBookingId);
+    }
+
     private void validateBookingTimes(LocalDateTime start, LocalDateTime end) {
         if (start.isAfter(end) || start.isEqual(end)) {
             throw new ActionNotAllowedException("Start time must be before end time");
@@ -239,42 +340,74 @@ public class BookingService implements IBookingService {
         }
     }
 
-    private BigDecimal calculatePrice(ParkingSpot spot, LocalDateTime start, LocalDateTime end) {
-        long totalHours = Duration.between(start, end).toHours();
-        if (totalHours == 0) totalHours = 1;
-
-        long days = totalHours / 24;
-        long hours = totalHours % 24;
-
-        BigDecimal price = BigDecimal.ZERO;
-
-        if (days > 0) {
-            price = price.add(BigDecimal.valueOf(days)
-                    .multiply(BigDecimal.valueOf(spot.getPrice_per_day())));
-        }
-        if (hours > 0) {
-            price = price.add(BigDecimal.valueOf(hours)
-                    .multiply(BigDecimal.valueOf(spot.getPrice_per_hour())));
-        }
-
-        return price.setScale(2, RoundingMode.HALF_UP);
+    private long calculatePrice(ParkingSpot spot, LocalDateTime start, LocalDateTime end) {
+        return pricingEngine.quote(PricingEngine.toMinor(spot.getPrice_per_hour()),
+                PricingEngine.toMinor(spot.getPrice_per_day()), start, end);
     }
 
     // DTO converter helpers
 
     private BookingResponseDto convertToDto(Booking booking) {
-        BookingResponseDto dto = modelMapper.map(booking, BookingResponseDto.class);
+        return convertToDto(booking, booking.getRenter().getEmail());
+    }
+
+    // The renter email is passed in when the renter is only a reference that should not be loaded
+    private BookingResponseDto convertToDto(Booking booking, String renterEmail) {
+        BookingResponseDto dto = new BookingResponseDto();
+        dto.setId(booking.getId());
+        dto.setStartTime(booking.getStartTime());
+        dto.setEndTime(booking.getEndTime());
+        dto.setTotalAmount(booking.getTotalAmountMinor() != null
+                ? BigDecimal.valueOf(booking.getTotalAmountMinor(), 2)
+                : BigDecimal.valueOf(booking.getTotalAmount()));
+        dto.setStatus(booking.getStatus().name());
         dto.setRenterId(booking.getRenter().getId());
-        dto.setRenterName(booking.getRenter().getEmail());
+        dto.setRenterName(renterEmail);
         dto.setSpotId(booking.getSpot().getId());
         dto.setSpotLocation(booking.getSpot().getAddress() + " " + booking.getSpot().getCity());
-        dto.setStatus(booking.getStatus().name());
+        dto.setCreatedAt(booking.getCreatedAt());
+        dto.setRefundStatus(booking.getRefundStatus() == null ? null : booking.getRefundStatus().name());
         return dto;
     }
 
-    private List<BookingResponseDto> getConvertedBookings(List<Booking> bookings) {
-        return bookings.stream()
-                .map(this::convertToDto)
-                .toList();
+    private BookingResponseDto convertToDto(BookingRowView row) {
+        BookingResponseDto dto = new BookingResponseDto();
+        dto.setId(row.getId());
+        dto.setStartTime(row.getStartTime());
+        dto.setEndTime(row.getEndTime());
+        dto.setTotalAmount(row.getTotalAmountMinor() != null
+                ? BigDecimal.valueOf(row.getTotalAmountMinor(), 2)
+                : BigDecimal.valueOf(row.getTotalAmount()));
+        dto.setStatus(row.getStatus().name());
+        dto.setRenterId(row.getRenterId());
+        dto.setRenterName(row.getRenterEmail());
+        dto.setSpotId(row.getSpotId());
+        dto.setSpotLocation(row.getSpotAddress() + " " + row.getSpotCity());
+        dto.setCreatedAt(row.getCreatedAt());
+        dto.setRefundStatus(row.getRefundStatus() == null ? null : row.getRefundStatus().name());
+        return dto;
+    }
+
+    // Merges two pages sorted by (startTime, id) into one, booking ids are unique across live and history
+    private static List<BookingRowView> mergeByStartTime(List<BookingRowView> live, List<BookingRowView> archived, int max) {
+        if (archived.isEmpty()) {
+            return live;
+        }
+        Comparator<BookingRowView> order = Comparator.comparing(BookingRowView::getStartTime).thenComparing(BookingRowView::getId);
+        List<BookingRowView> merged = new ArrayList<>(Math.min(max, live.size() + archived.size()));
+        int i = 0;
+        int j = 0;
+        while (merged.size() < max && (i < live.size() || j < archived.size())) {
+            if (j == archived.size() || (i < live.size() && order.compare(live.get(i), archived.get(j)) <= 0)) {
+                merged.add(live.get(i++));
+            } else {
+                merged.add(archived.get(j++));
+            }
+        }
+        return merged;
+    }
+
+    private KeysetCursor startTimeCursor(BookingRowView row) {
+        return new KeysetCursor(row.getStartTime(), row.getId());
     }
 }
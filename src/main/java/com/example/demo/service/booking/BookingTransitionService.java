@@ -0,0 +1,128 @@
+package com.example.demo.service.booking;
+
+import com.example.demo.enums.BookingStatus;
+import com.example.demo.repository.BookingRepository;
+import com.example.demo.repository.OwnerLedgerEntryRepository;
+import com.example.demo.service.concurrency.RetryOnConflict;
+import com.example.demo.service.payment.RefundQueue;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Applies the time based booking status transitions to a given set of bookings.
+ * - CONFIRMED -> ACTIVE when the start time is reached.
+ * - ACTIVE -> COMPLETED when the end time is reached, the owner's earnings go to the ledger.
+ * - PENDING -> CANCELLED when the booking is still unpaid after the payment timeout.
+ *
+ * Every transition is one UPDATE statement that re-checks status and deadline,
+ * so calling it for a booking that already moved on (or is not due yet) does nothing.
+ * Called on their own (BookingDeadlineQueue) they are retried on lock conflicts, see ConflictRetry.
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional
+@Slf4j
+public class BookingTransitionService {
+
+    private final BookingRepository bookingRepository;
+    private final BookingAvailabilityIndex availabilityIndex;
+    private final OwnerLedgerEntryRepository ledgerRepository;
+    private final RefundQueue refundQueue;
+
+    @Value("${booking.payment-timeout-minutes:15}")
+    private long paymentTimeoutMinutes;
+
+    // bookings are charged in this currency, see BookingService.createBooking
+    @Value("${payouts.currency:eur}")
+    private String payoutCurrency;
+
+    public long getPaymentTimeoutMinutes() {
+        return paymentTimeoutMinutes;
+    }
+
+    /**
+     * CONFIRMED -> ACTIVE for the given bookings that have started.
+     * @return number of bookings activated
+     */
+    @RetryOnConflict
+    public int activate(Collection<Long> bookingIds, LocalDateTime now) {
+        int activated = bookingRepository.updateStatusOfStarted(
+                bookingIds, BookingStatus.CONFIRMED, BookingStatus.ACTIVE, now);
+        if (activated > 0) {
+            log.info("{} booking(s) activated", activated);
+        }
+        return activated;
+    }
+
+    /**
+     * ACTIVE -> COMPLETED for the given bookings that have ended.
+     * @return number of bookings completed
+     */
+    @RetryOnConflict
+    public int complete(Collection<Long> bookingIds, LocalDateTime now) {
+        int completed = bookingRepository.updateStatusOfEnded(
+                bookingIds, BookingStatus.ACTIVE, BookingStatus.COMPLETED, now);
+        releaseFromIndex(bookingIds, completed);
+        if (completed > 0) {
+            // owners earn the booking once it is completed, paid out by PayoutSettlementJob
+            ledgerRepository.insertForCompletedBookings(bookingIds, payoutCurrency, now);
+            log.info("{} booking(s) completed", completed);
+        }
+        return completed;
+    }
+
+    /**
+     * PENDING -> CANCELLED for the given bookings that were not paid in time.
+     * @return number of bookings cancelled
+     */
+    @RetryOnConflict
+    public int cancelUnpaid(Collection<Long> bookingIds, LocalDateTime now) {
+        // the PaymentIntents of the cancelled bookings must not be paid anymore
+        refundQueue.request(bookingIds, List.of(BookingStatus.PENDING), now);
+        int cancelled = bookingRepository.updateStatusOfCreatedBefore(
+                bookingIds, BookingStatus.PENDING, BookingStatus.CANCELLED, now.minusMinutes(paymentTimeoutMinutes), now);
+        releaseFromIndex(bookingIds, cancelled);
+        if (cancelled > 0) {
+            log.info("{} unpaid booking(s) cancelled due to inactivity", cancelled);
+        }
+        return cancelled;
+    }
+
+    /**
+     * PENDING/CONFIRMED -> CANCELLED for all bookings of the spot that have not started yet,
+     * used when the owner deactivates the spot. Paid bookings are refunded.
+     * @return number of bookings cancelled
+     */
+    @RetryOnConflict
+    public int cancelUpcomingOfSpot(Long spotId, LocalDateTime now) {
+        List<BookingStatus> statuses = List.of(BookingStatus.PENDING, BookingStatus.CONFIRMED);
+        List<Long> bookingIds = bookingRepository.findUpcomingIdsOfSpot(spotId, statuses, now);
+        if (bookingIds.isEmpty()) {
+            return 0;
+        }
+        refundQueue.request(bookingIds, statuses, now);
+        int cancelled = bookingRepository.cancelUpcoming(bookingIds, statuses, now);
+        // their queued deadlines become no-ops, the transitions re-check the status
+        releaseFromIndex(bookingIds, cancelled);
+        if (cancelled > 0) {
+            log.info("{} booking(s) of deactivated spot {} cancelled", cancelled, spotId);
+        }
+        return cancelled;
+    }
+
+    // Frees the slots of the given bookings that are no longer live. Also when this UPDATE changed
+    // nothing: another node or an earlier run may have moved them, and this node's index still has them
+    private void releaseFromIndex(Collection<Long> bookingIds, int changed) {
+        Collection<Long> released = changed == bookingIds.size()
+                ? bookingIds
+                : bookingRepository.findIdsByIdInAndStatusNotIn(bookingIds, BookingAvailabilityIndex.LIVE_STATUSES);
+        released.forEach(availabilityIndex::release);
+    }
+}
@@ -2,10 +2,11 @@ package com.example.demo.service.booking;
 
 import com.example.demo.requests.booking.CreateBookingRequest;
 import com.example.demo.responseDtos.BookingResponseDto;
+import com.example.demo.responseDtos.CursorPageDto;
 import com.example.demo.security.user.AppUserDetails;
 
 import java.time.LocalDateTime;
-import java.util.List;
+import java.util.function.Consumer;
 
 public interface IBookingService {
 
@@ -21,11 +22,15 @@ public interface IBookingService {
     //Update a booking 1 hour before booking, start and end date can be changed
     public BookingResponseDto updateBooking(AppUserDetails userDetails, Long bookingId, CreateBookingRequest request);
 
-    //Get booking by renter
-    public List<BookingResponseDto> getBookingsByRenter(Long renterId);
+    //Get booking by renter, one page ordered by start time, archived bookings merged in when includeHistory is set
+    public CursorPageDto<BookingResponseDto> getBookingsByRenter(Long renterId, String after, int limit, boolean includeHistory);
 
-    //Get bookings by spot
-    public List<BookingResponseDto> getBookingsBySpot(Long spotId);
+    //Get bookings by spot, one page ordered by start time, archived bookings merged in when includeHistory is set
+    public CursorPageDto<BookingResponseDto> getBookingsBySpot(Long spotId, String after, int limit, boolean includeHistory);
 
-    List<BookingResponseDto> getAllBookings();
+    //Get all bookings, one page ordered by id
+    CursorPageDto<BookingResponseDto> getAllBookings(String after, int limit);
+
+    //Hand every booking to the consumer as it is read, without loading them all into memory
+    void streamAllBookings(Consumer<BookingResponseDto> consumer);
 }
@@ -0,0 +1,85 @@
+package com.example.demo.service.cluster;
+
+import com.example.demo.repository.BookingRepository;
+import com.example.demo.repository.ParkingSpotRepository;
+import com.example.demo.repository.projection.BookingSlotView;
+import com.example.demo.repository.projection.SpotIndexView;
+import com.example.demo.service.booking.BookingAvailabilityIndex;
+import com.example.demo.service.booking.BookingDeadlineQueue;
+import com.example.demo.service.parkingspot.SpotGeoIndex;
+import com.example.demo.service.parkingspot.SpotSearchIndex;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Keeps the in-memory structures of this node in step with writes made on the other nodes:
+ * BookingAvailabilityIndex, BookingDeadlineQueue, SpotGeoIndex and SpotSearchIndex.
+ *
+ * Runs on every node. Each poll reads the bookings and spots whose updated_at is after the
+ * previous poll and applies them. The window reaches back an extra overlap, covering clock skew
+ * between the nodes, transactions that commit after they stamped updated_at, and replica lag.
+ * Rows seen twice are applied twice, which changes nothing.
+ *
+ * Deleted spots and anything a poll missed are caught by a full rebuild of all four structures
+ * every rebuild-ms. A stale entry in between is harmless: bookings are admitted by the database
+ * check, transitions re-check status and time, and spot results are loaded from the database.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class IndexSync {
+
+    private final BookingRepository bookingRepository;
+    private final ParkingSpotRepository parkingSpotRepository;
+    private final BookingAvailabilityIndex availabilityIndex;
+    private final BookingDeadlineQueue deadlineQueue;
+    private final SpotGeoIndex geoIndex;
+    private final SpotSearchIndex searchIndex;
+
+    @Value("${cluster.index-sync.overlap-ms:30000}")
+    private long overlapMillis;
+
+    private LocalDateTime lastPoll = LocalDateTime.now();
+
+    @Scheduled(fixedDelayString = "${cluster.index-sync.poll-ms:2000}")
+    public void poll() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        LocalDateTime since = lastPoll.minusNanos(overlapMillis * 1_000_000);
+        try {
+            List<BookingSlotView> bookings = bookingRepository.findSlotsUpdatedSince(since);
+            for (BookingSlotView booking : bookings) {
+                availabilityIndex.sync(booking);
+                deadlineQueue.schedule(booking);
+            }
+            List<SpotIndexView> spots = parkingSpotRepository.findIndexRowsUpdatedSince(since);
+            for (SpotIndexView spot : spots) {
+                geoIndex.sync(spot);
+                searchIndex.sync(spot);
+            }
+            lastPoll = startedAt;
+            log.debug("Index sync applied {} bookings and {} spots changed since {}", bookings.size(), spots.size(), since);
+        } catch (RuntimeException e) {
+            // the next poll reads from the same point again
+            log.warn("Index sync failed: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(initialDelayString = "${cluster.index-sync.rebuild-ms:600000}",
+            fixedDelayString = "${cluster.index-sync.rebuild-ms:600000}")
+    public void rebuild() {
+        try {
+            availabilityIndex.rebuild();
+            deadlineQueue.rebuild();
+            geoIndex.rebuild();
+            searchIndex.rebuild();
+        } catch (RuntimeException e) {
+            log.warn("Index rebuild failed: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.demo.service.cluster;
+
+import com.example.demo.exeptions.LeadershipLostException;
+import com.example.demo.model.SchedulerLease;
+import com.example.demo.repository.SchedulerLeaseRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.LocalDateTime;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Database backed leader election, so background jobs run on exactly one app node.
+ *
+ * Every node tries to renew or take over the lease row on a fixed interval. A lease that was
+ * not renewed expires after the lease duration, and another node takes it over with the next
+ * fencing token, so a dead leader is replaced within duration + renew interval.
+ *
+ * A node treats itself as leader only until a safety margin before its lease expires
+ * (measured with the monotonic clock), and jobs call fence() inside their transaction so
+ * a paused old leader cannot write once a new leader holds a newer token.
+ * Node clocks are assumed to be NTP synced, expiry times are written with the local clock.
+ */
+@Component
+@Slf4j
+public class LeaderLease {
+
+    public static final String LEASE_NAME = "background-jobs";
+
+    private final SchedulerLeaseRepository leaseRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final String nodeId;
+
+    @Value("${cluster.lease.duration-seconds:30}")
+    private long leaseSeconds;
+
+    // token of the lease this node holds, -1 when it is not the leader
+    private volatile long fencingToken = -1;
+    private volatile long leaderUntilNanos;
+
+    public LeaderLease(SchedulerLeaseRepository leaseRepository, TransactionTemplate transactionTemplate) {
+        this.leaseRepository = leaseRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.nodeId = hostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        if (!leaseRepository.existsById(LEASE_NAME)) {
+            try {
+                leaseRepository.save(new SchedulerLease(LEASE_NAME, null, 0, LocalDateTime.now().minusSeconds(1)));
+            } catch (DataIntegrityViolationException e) {
+                // another node created it first
+            }
+        }
+        heartbeat();
+    }
+
+    /**
+     * Renews the lease when this node holds it, otherwise tries to take over an expired one.
+     */
+    @Scheduled(fixedDelayString = "${cluster.lease.renew-interval-ms:10000}", initialDelayString = "${cluster.lease.renew-interval-ms:10000}")
+    public void heartbeat() {
+        long attemptStarted = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime until = now.plusSeconds(leaseSeconds);
+        long heldToken = fencingToken;
+
+        try {
+            Long token = transactionTemplate.execute(status -> {
+                if (heldToken >= 0 && leaseRepository.renew(LEASE_NAME, nodeId, heldToken, until) == 1) {
+                    return heldToken;
+                }
+                if (leaseRepository.takeOver(LEASE_NAME, nodeId, now, until) == 1) {
+                    return leaseRepository.findById(LEASE_NAME).map(SchedulerLease::getFencingToken).orElse(-1L);
+                }
+                return -1L;
+            });
+            updateState(token == null ? -1 : token, attemptStarted);
+        } catch (RuntimeException e) {
+            log.warn("Lease heartbeat failed: {}", e.getMessage());
+            // keep leadership only until the local deadline runs out
+        }
+    }
+
+    /**
+     * @return the fencing token if this node currently is the leader
+     */
+    public OptionalLong currentToken() {
+        long token = fencingToken;
+        if (token < 0 || System.nanoTime() - leaderUntilNanos >= 0) {
+            return OptionalLong.empty();
+        }
+        return OptionalLong.of(token);
+    }
+
+    public boolean isLeader() {
+        return currentToken().isPresent();
+    }
+
+    /**
+     * Verifies inside the caller's transaction that the lease is still held with the given token.
+     * The shared row lock makes a take over wait until this transaction ends.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void fence(long token) {
+        boolean held = leaseRepository.findForShare(LEASE_NAME)
+                .filter(lease -> nodeId.equals(lease.getOwner()) && lease.getFencingToken() == token)
+                .isPresent();
+        if (!held) {
+            fencingToken = -1;
+            throw new LeadershipLostException("Lease " + LEASE_NAME + " is no longer held with token " + token);
+        }
+    }
+
+    // Private Helper Methods
+
+    private void updateState(long token, long attemptStarted) {
+        boolean wasLeader = fencingToken >= 0;
+        if (token >= 0) {
+            // stop acting as leader a third of the lease before it could expire elsewhere
+            leaderUntilNanos = attemptStarted + leaseSeconds * 2_000_000_000L / 3;
+            fencingToken = token;
+            if (!wasLeader) {
+                log.info("Node {} became leader with fencing token {}", nodeId, token);
+            }
+        } else {
+            fencingToken = -1;
+            if (wasLeader) {
+                log.info("Node {} lost leadership", nodeId);
+            }
+        }
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "node";
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.demo.service.concurrency;
+
+import com.example.demo.exeptions.ConcurrentUpdateException;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Retries units of work that lost a race with a concurrent update.
+ *
+ * Booking and ParkingSpot carry a @Version, saving a copy that somebody else changed in the meantime
+ * fails with an OptimisticLockingFailureException instead of silently overwriting the change.
+ * Deadlocks and lock wait timeouts (PessimisticLockingFailureException) are retried the same way.
+ * Every attempt runs in a fresh transaction and reads the current state again, so the business
+ * checks see what the other side wrote. Between attempts it sleeps a random time up to an
+ * exponentially growing cap (full jitter), so the competing callers do not collide again.
+ * After max-attempts a ConcurrentUpdateException is thrown.
+ *
+ * Only the outermost transaction can be retried: inside a running transaction the work is just run
+ * and a conflict is left to the caller that started the transaction.
+ *
+ * Used for the @RetryOnConflict service methods and, through execute(), around TransactionTemplate
+ * blocks of the background jobs. Runs outside the transaction interceptor (higher precedence).
+ *
+ * Metrics:
+ * - concurrency.conflicts{operation, type}: every conflict, type optimistic or lock
+ * - concurrency.calls{operation, outcome}: ok (first attempt), retried (succeeded after conflicts),
+ *   exhausted (gave up) or failed (other error)
+ */
+@Aspect
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 1)
+@Slf4j
+public class ConflictRetry {
+
+    private final MeterRegistry meterRegistry;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+
+    public ConflictRetry(MeterRegistry meterRegistry,
+                         @Value("${concurrency.retry.max-attempts:4}") int maxAttempts,
+                         @Value("${concurrency.retry.initial-backoff-ms:20}") long initialBackoffMs,
+                         @Value("${concurrency.retry.max-backoff-ms:500}") long maxBackoffMs) {
+        this.meterRegistry = meterRegistry;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    @FunctionalInterface
+    private interface Attempt<T> {
+        T run() throws Throwable;
+    }
+
+    /**
+     * Runs the work, again on a concurrent update conflict. The work has to start its own transaction.
+     */
+    public <T> T execute(String operation, Supplier<T> work) {
+        try {
+            return retry(operation, work::get);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e); // a Supplier cannot throw checked exceptions
+        }
+    }
+
+    @Around("@annotation(retryOnConflict)")
+    public Object around(ProceedingJoinPoint joinPoint, RetryOnConflict retryOnConflict) throws Throwable {
+        String operation = retryOnConflict.value().isEmpty()
+                ? joinPoint.getSignature().getDeclaringType().getSimpleName() + "." + joinPoint.getSignature().getName()
+                : retryOnConflict.value();
+        return retry(operation, joinPoint::proceed);
+    }
+
+    // Private Helper Methods
+
+    private <T> T retry(String operation, Attempt<T> attempt) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return attempt.run(); // part of a larger transaction, its starter retries
+        }
+
+        for (int attemptNumber = 1; ; attemptNumber++) {
+            try {
+                T result = attempt.run();
+                count(operation, attemptNumber == 1 ? "ok" : "retried");
+                return result;
+            } catch (OptimisticLockingFailureException | PessimisticLockingFailureException e) {
+                String type = e instanceof OptimisticLockingFailureException ? "optimistic" : "lock";
+                meterRegistry.counter("concurrency.conflicts", "operation", operation, "type", type).increment();
+
+                if (attemptNumber >= maxAttempts) {
+                    count(operation, "exhausted");
+                    log.warn("{} still conflicting after {} attempts: {}", operation, attemptNumber, e.getMessage());
+                    throw new ConcurrentUpdateException("The data was changed at the same time by someone else, please try again", e);
+                }
+                log.debug("{} conflicted ({}), attempt {} of {}", operation, type, attemptNumber, maxAttempts);
+                backOff(attemptNumber, e);
+            } catch (Throwable e) {
+                count(operation, "failed");
+                throw e;
+            }
+        }
+    }
+
+    // Full jitter: a random pause between 0 and initial * 2^(attempt - 1), capped at max
+    private void backOff(int attemptNumber, RuntimeException conflict) {
+        long capMs = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attemptNumber - 1, 20));
+        if (capMs <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextLong(capMs + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw conflict;
+        }
+    }
+
+    private void count(String operation, String outcome) {
+        meterRegistry.counter("concurrency.calls", "operation", operation, "outcome", outcome).increment();
+    }
+}
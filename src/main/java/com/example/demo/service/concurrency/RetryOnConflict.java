@@ -0,0 +1,21 @@
+package com.example.demo.service.concurrency;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Runs the method again, in a new transaction, when it fails on a concurrent update, see ConflictRetry.
+ * Called inside an already running transaction the method is not retried on its own,
+ * the conflict goes up to whoever started that transaction.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RetryOnConflict {
+
+    /**
+     * Name of the operation in the metrics, defaults to ClassName.method.
+     */
+    String value() default "";
+}
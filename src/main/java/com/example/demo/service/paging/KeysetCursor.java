@@ -0,0 +1,79 @@
+package com.example.demo.service.paging;
+
+import com.example.demo.exeptions.ActionNotAllowedException;
+import com.example.demo.responseDtos.CursorPageDto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Position in a keyset paginated list: the sort key of the last row of the previous page.
+ * Lists ordered by id only leave time null, lists ordered by (start_time, id) set both.
+ *
+ * Sent to clients as an opaque url-safe string, so the format can change without breaking them.
+ */
+public record KeysetCursor(LocalDateTime time, long id) {
+
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 500;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    public static KeysetCursor ofId(long id) {
+        return new KeysetCursor(null, id);
+    }
+
+    public String encode() {
+        String raw = (time == null ? "" : time.toString()) + "|" + id;
+        return ENCODER.encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the decoded cursor, or null for the first page
+     */
+    public static KeysetCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(DECODER.decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            String time = raw.substring(0, separator);
+            return new KeysetCursor(time.isEmpty() ? null : LocalDateTime.parse(time), Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new ActionNotAllowedException("Invalid page cursor");
+        }
+    }
+
+    /**
+     * Decodes a cursor of a list ordered by (time, id).
+     */
+    public static KeysetCursor decodeTimed(String cursor) {
+        KeysetCursor decoded = decode(cursor);
+        if (decoded != null && decoded.time() == null) {
+            throw new ActionNotAllowedException("Invalid page cursor");
+        }
+        return decoded;
+    }
+
+    public static void checkLimit(int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new ActionNotAllowedException("Limit must be between 1 and " + MAX_LIMIT);
+        }
+    }
+
+    /**
+     * Builds a page from rows fetched with limit + 1, the extra row only tells that there is a next page.
+     */
+    public static <R, D> CursorPageDto<D> page(List<R> rows, int limit, Function<R, KeysetCursor> cursorOf, Function<R, D> mapper) {
+        boolean hasNext = rows.size() > limit;
+        List<R> pageRows = hasNext ? rows.subList(0, limit) : rows;
+        String nextCursor = hasNext ? cursorOf.apply(pageRows.get(limit - 1)).encode() : null;
+        return new CursorPageDto<>(pageRows.stream().map(mapper).toList(), nextCursor);
+    }
+}
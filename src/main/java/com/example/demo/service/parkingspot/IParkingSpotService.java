@@ -1,17 +1,29 @@
 package com.example.demo.service.parkingspot;
 
+import com.example.demo.responseDtos.CursorPageDto;
+import com.example.demo.responseDtos.NearbyParkingSpotResponseDto;
+import com.example.demo.responseDtos.ParkingSpotImportResultDto;
+import com.example.demo.responseDtos.ParkingSpotQuoteDto;
 import com.example.demo.responseDtos.ParkingSpotResponseDto;
+import com.example.demo.responseDtos.ParkingSpotSearchPageDto;
 import com.example.demo.requests.parkingspot.CreateParkingSpotRequest;
+import com.example.demo.requests.parkingspot.QuoteParkingSpotsRequest;
 import com.example.demo.requests.parkingspot.UpdateParkingSpotRequest;
 import com.example.demo.security.user.AppUserDetails;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface IParkingSpotService {
 
-    // Fetch all active spots
-    List<ParkingSpotResponseDto> fetchAllActiveParkingSpots();
+    // Fetch all active spots, one page ordered by id
+    CursorPageDto<ParkingSpotResponseDto> fetchAllActiveParkingSpots(String after, int limit);
+
+    // Hand every active spot to the consumer as it is read, without loading them all into memory
+    void streamAllActiveParkingSpots(Consumer<ParkingSpotResponseDto> consumer);
 
     // Fetch all spots created by current user
     List<ParkingSpotResponseDto> fetchParkingSpotsByUserId(AppUserDetails userDetails);
@@ -20,13 +32,25 @@ public interface IParkingSpotService {
     List<ParkingSpotResponseDto> fetchAllActiveParkingSpotsInGivenCity(String city);
 
     //Fetch available spots in a city with given data range
-    //Fetch all active spots in specific city
+    //Only spots that are free for the whole period are returned
     List<ParkingSpotResponseDto> fetchAllActiveParkingSpotsInGivenCityAndTimePeriod(String city, LocalDateTime startDate, LocalDateTime endDate);
 
+    //Fetch the k active spots closest to a point within a radius, closest first
+    List<NearbyParkingSpotResponseDto> fetchNearestActiveParkingSpots(double latitude, double longitude, double radiusKm, int limit);
+
+    //Full text search over title, description, address and city of active spots, best match first
+    ParkingSpotSearchPageDto searchActiveParkingSpots(String query, int page, int size);
+
+    //Price of the same time window at many active spots, in request order, unknown or inactive spots are left out
+    List<ParkingSpotQuoteDto> quoteParkingSpots(QuoteParkingSpotsRequest request);
+
     //Create a users parking spot and save it to the database
     //@params createparkingSpot request and the app user details
     ParkingSpotResponseDto createParkingSpot(CreateParkingSpotRequest request, AppUserDetails userDetails);
 
+    //Bulk create the current users spots from a CSV or NDJSON upload, rows are written in batches as they are read
+    ParkingSpotImportResultDto importParkingSpots(InputStream rows, ParkingSpotImporter.Format format, AppUserDetails userDetails) throws IOException;
+
     ParkingSpotResponseDto updateParkingSpotById(UpdateParkingSpotRequest request, Long ParkingSpotId, AppUserDetails userDetails);
 
     void deleteParkingSpotById(Long parkingSpotId, AppUserDetails userDetails);
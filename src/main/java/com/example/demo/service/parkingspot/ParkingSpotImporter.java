@@ -0,0 +1,332 @@
+package com.example.demo.service.parkingspot;
+
+import com.example.demo.exeptions.ActionNotAllowedException;
+import com.example.demo.model.ParkingSpot;
+import com.example.demo.model.User;
+import com.example.demo.repository.ParkingSpotRepository;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.requests.parkingspot.CreateParkingSpotRequest;
+import com.example.demo.responseDtos.ParkingSpotImportResultDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Bulk import of parking spots for one owner from CSV or NDJSON.
+ *
+ * Rows are parsed and validated while the upload is read, valid rows are collected into batches of
+ * spots.import.batch-size and every batch is written in its own transaction. ParkingSpot ids come
+ * from a pooled table generator, so Hibernate sends the inserts as JDBC batches
+ * (hibernate.jdbc.batch_size, with rewriteBatchedStatements the MySQL driver turns them into
+ * multi-row inserts). Memory use is bounded by one batch, however large the upload.
+ *
+ * Invalid rows are skipped and reported with their line number. If the database rejects a batch,
+ * its rows are retried one by one so only the offending rows are reported.
+ *
+ * CSV files start with a header row naming the columns (CSV_COLUMNS, the same names as the JSON
+ * fields), fields may be quoted with "..." but cannot span lines.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ParkingSpotImporter {
+
+    public enum Format {
+        CSV,
+        NDJSON
+    }
+
+    static final List<String> CSV_COLUMNS = List.of("title", "description", "address", "city", "postal_code",
+            "country", "latitude", "longitude", "available_from", "available_to", "price_per_hour", "price_per_day");
+    private static final List<String> REQUIRED_CSV_COLUMNS = List.of("title", "address", "city", "price_per_hour", "price_per_day");
+
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final int MAX_TEXT_LENGTH = 255;
+
+    private final ParkingSpotRepository parkingSpotRepository;
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final SpotGeoIndex geoIndex;
+    private final SpotSearchIndex searchIndex;
+
+    @Value("${spots.import.batch-size:1000}")
+    private int batchSize;
+
+    public ParkingSpotImportResultDto importSpots(InputStream rows, Format format, Long ownerId) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(rows, StandardCharsets.UTF_8));
+        ObjectReader jsonReader = objectMapper.readerFor(CreateParkingSpotRequest.class);
+        Run run = new Run(ownerId);
+        Map<String, Integer> columns = null;
+
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            if (format == Format.CSV && columns == null) {
+                columns = parseHeader(line);
+                continue;
+            }
+
+            CreateParkingSpotRequest request;
+            try {
+                request = format == Format.CSV ? fromCsv(splitCsvLine(line), columns) : jsonReader.readValue(line);
+            } catch (JsonProcessingException e) {
+                run.reject(lineNumber, "Unreadable row: " + e.getOriginalMessage());
+                continue;
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                run.reject(lineNumber, "Unreadable row: " + e.getMessage());
+                continue;
+            }
+
+            String error = validate(request);
+            if (error != null) {
+                run.reject(lineNumber, error);
+                continue;
+            }
+            run.add(lineNumber, toSpot(request));
+            if (run.pending.size() >= batchSize) {
+                run.flush();
+            }
+        }
+        run.flush();
+
+        log.info("Parking spot import for user {}: {} imported, {} rejected", ownerId, run.imported, run.rejected);
+        return new ParkingSpotImportResultDto(run.imported, run.rejected, run.errors);
+    }
+
+    // Private Helper Methods
+
+    // State of one import: the batch being collected and the counters
+    private final class Run {
+        private final Long ownerId;
+        private final List<ParkingSpot> pending = new ArrayList<>();
+        private final List<Long> pendingLines = new ArrayList<>();
+        private final List<ParkingSpotImportResultDto.RowError> errors = new ArrayList<>();
+        private int imported;
+        private int rejected;
+
+        private Run(Long ownerId) {
+            this.ownerId = ownerId;
+        }
+
+        void add(long line, ParkingSpot spot) {
+            pending.add(spot);
+            pendingLines.add(line);
+        }
+
+        void reject(long line, String message) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new ParkingSpotImportResultDto.RowError(line, message));
+            }
+        }
+
+        void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            try {
+                save(pending);
+                imported += pending.size();
+                pending.forEach(ParkingSpotImporter.this::track);
+            } catch (DataAccessException e) {
+                log.warn("Import batch of {} parking spots rejected, retrying row by row: {}",
+                        pending.size(), e.getMostSpecificCause().getMessage());
+                for (int i = 0; i < pending.size(); i++) {
+                    saveAlone(pending.get(i), pendingLines.get(i));
+                }
+            }
+            pending.clear();
+            pendingLines.clear();
+        }
+
+        private void saveAlone(ParkingSpot spot, long line) {
+            // the rolled back batch already assigned an id
+            spot.setId(null);
+            try {
+                save(List.of(spot));
+                imported++;
+                track(spot);
+            } catch (DataAccessException e) {
+                reject(line, "Rejected by the database: " + e.getMostSpecificCause().getMessage());
+            }
+        }
+
+        private void save(List<ParkingSpot> spots) {
+            transactionTemplate.executeWithoutResult(status -> {
+                User owner = userRepository.getReferenceById(ownerId);
+                spots.forEach(spot -> spot.setCreatedBy(owner));
+                parkingSpotRepository.saveAllAndFlush(spots);
+            });
+        }
+    }
+
+    private void track(ParkingSpot spot) {
+        geoIndex.track(spot);
+        searchIndex.track(spot);
+    }
+
+    private static ParkingSpot toSpot(CreateParkingSpotRequest request) {
+        return new ParkingSpot(
+                request.getTitle(),
+                request.getDescription(),
+                request.getAddress(),
+                request.getCity(),
+                request.getPostal_code(),
+                request.getCountry(),
+                request.getLatitude(),
+                request.getLongitude(),
+                request.getAvailable_from(),
+                request.getAvailable_to(),
+                request.getPrice_per_hour(),
+                request.getPrice_per_day()
+        );
+    }
+
+    // returns the reason the row cannot be imported, or null if it is fine
+    private static String validate(CreateParkingSpotRequest request) {
+        if (isBlank(request.getTitle()) || isBlank(request.getAddress()) || isBlank(request.getCity())) {
+            return "Title, address and city are required";
+        }
+        for (String text : new String[]{request.getTitle(), request.getDescription(), request.getAddress(),
+                request.getCity(), request.getPostal_code(), request.getCountry()}) {
+            if (text != null && text.length() > MAX_TEXT_LENGTH) {
+                return "Text fields can be at most " + MAX_TEXT_LENGTH + " characters";
+            }
+        }
+        if (!(request.getPrice_per_hour() > 0) || !(request.getPrice_per_day() >= 0)
+                || Double.isInfinite(request.getPrice_per_hour()) || Double.isInfinite(request.getPrice_per_day())) {
+            return "Price per hour must be positive and price per day zero or more";
+        }
+        BigDecimal latitude = request.getLatitude();
+        BigDecimal longitude = request.getLongitude();
+        if ((latitude == null) != (longitude == null)) {
+            return "Latitude and longitude must be given together";
+        }
+        if (latitude != null && (latitude.abs().compareTo(BigDecimal.valueOf(90)) > 0
+                || longitude.abs().compareTo(BigDecimal.valueOf(180)) > 0)) {
+            return "Latitude must be within 90 and longitude within 180 degrees";
+        }
+        LocalDateTime from = request.getAvailable_from();
+        LocalDateTime to = request.getAvailable_to();
+        if (from != null && to != null && !to.isAfter(from)) {
+            return "Available to must be after available from";
+        }
+        return null;
+    }
+
+    private static Map<String, Integer> parseHeader(String line) {
+        // spreadsheet exports often start with a byte order mark
+        List<String> names = splitCsvLine(line.startsWith("\uFEFF") ? line.substring(1) : line);
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i).trim().toLowerCase(Locale.ROOT);
+            if (!CSV_COLUMNS.contains(name)) {
+                throw new ActionNotAllowedException("Unknown CSV column: " + name + ", expected columns are " + CSV_COLUMNS);
+            }
+            columns.put(name, i);
+        }
+        for (String required : REQUIRED_CSV_COLUMNS) {
+            if (!columns.containsKey(required)) {
+                throw new ActionNotAllowedException("CSV header is missing the column: " + required);
+            }
+        }
+        return columns;
+    }
+
+    private static CreateParkingSpotRequest fromCsv(List<String> fields, Map<String, Integer> columns) {
+        CreateParkingSpotRequest request = new CreateParkingSpotRequest();
+        request.setTitle(field(fields, columns, "title"));
+        request.setDescription(field(fields, columns, "description"));
+        request.setAddress(field(fields, columns, "address"));
+        request.setCity(field(fields, columns, "city"));
+        request.setPostal_code(field(fields, columns, "postal_code"));
+        request.setCountry(field(fields, columns, "country"));
+
+        String latitude = field(fields, columns, "latitude");
+        request.setLatitude(latitude != null ? new BigDecimal(latitude) : null);
+        String longitude = field(fields, columns, "longitude");
+        request.setLongitude(longitude != null ? new BigDecimal(longitude) : null);
+
+        String from = field(fields, columns, "available_from");
+        request.setAvailable_from(from != null ? LocalDateTime.parse(from) : null);
+        String to = field(fields, columns, "available_to");
+        request.setAvailable_to(to != null ? LocalDateTime.parse(to) : null);
+
+        String pricePerHour = field(fields, columns, "price_per_hour");
+        request.setPrice_per_hour(pricePerHour != null ? Double.parseDouble(pricePerHour) : 0);
+        String pricePerDay = field(fields, columns, "price_per_day");
+        request.setPrice_per_day(pricePerDay != null ? Double.parseDouble(pricePerDay) : 0);
+        return request;
+    }
+
+    // value of a column, null if the column is not in the file or the field is empty
+    private static String field(List<String> fields, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    // Splits one CSV line on commas, "..." quotes a field and "" inside quotes is a literal quote
+    static List<String> splitCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static boolean isBlank(String text) {
+        return text == null || text.isBlank();
+    }
+}
@@ -1,21 +1,45 @@
 package com.example.demo.service.parkingspot;
 
+import com.example.demo.responseDtos.CursorPageDto;
+import com.example.demo.responseDtos.NearbyParkingSpotResponseDto;
+import com.example.demo.responseDtos.ParkingSpotImportResultDto;
+import com.example.demo.responseDtos.ParkingSpotQuoteDto;
 import com.example.demo.responseDtos.ParkingSpotResponseDto;
+import com.example.demo.responseDtos.ParkingSpotSearchPageDto;
 import com.example.demo.exeptions.ActionNotAllowedException;
 import com.example.demo.exeptions.ResourceNotFoundException;
 import com.example.demo.model.ParkingSpot;
-import com.example.demo.model.User;
 import com.example.demo.repository.ParkingSpotRepository;
 import com.example.demo.repository.UserRepository;
+import com.example.demo.repository.projection.SpotPriceView;
+import com.example.demo.repository.projection.SpotRowView;
 import com.example.demo.requests.parkingspot.CreateParkingSpotRequest;
+import com.example.demo.requests.parkingspot.QuoteParkingSpotsRequest;
 import com.example.demo.requests.parkingspot.UpdateParkingSpotRequest;
 import com.example.demo.security.user.AppUserDetails;
+import com.example.demo.service.booking.BookingAvailabilityIndex;
+import com.example.demo.service.booking.BookingTransitionService;
+import com.example.demo.service.concurrency.RetryOnConflict;
+import com.example.demo.service.paging.KeysetCursor;
+import com.example.demo.service.pricing.PricingEngine;
+import com.example.demo.service.user.UserIdentity;
+import com.example.demo.service.user.UserIdentityCache;
 import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -23,61 +47,176 @@ public class ParkingSpotService implements IParkingSpotService {
 
     private final ParkingSpotRepository parkingSpotRepository;
     private final UserRepository userRepository;
-    private final ModelMapper modelMapper;
+    private final UserIdentityCache userIdentityCache;
+    private final SpotGeoIndex geoIndex;
+    private final SpotSearchIndex searchIndex;
+    private final BookingTransitionService transitionService;
+    private final PricingEngine pricingEngine;
+    private final ParkingSpotImporter parkingSpotImporter;
+
+    private static final double MAX_NEARBY_RADIUS_KM = 50;
+    private static final int MAX_NEARBY_LIMIT = 100;
+    private static final int MAX_SEARCH_PAGE_SIZE = 100;
+    private static final int MAX_QUOTE_SPOTS = 500;
 
     // Fetch all active spots
     @Override
-    public List<ParkingSpotResponseDto> fetchAllActiveParkingSpots(){
-         List<ParkingSpot> parkingSpots = parkingSpotRepository.findByIsActiveTrue();
-         return getConvertedParkingSpots(parkingSpots);
+    @Transactional(readOnly = true)
+    public CursorPageDto<ParkingSpotResponseDto> fetchAllActiveParkingSpots(String after, int limit){
+         KeysetCursor.checkLimit(limit);
+         KeysetCursor cursor = KeysetCursor.decode(after);
+         long afterId = cursor == null ? 0 : cursor.id();
+
+         List<SpotRowView> rows = parkingSpotRepository.findActiveRowPageAfterId(afterId, Limit.of(limit + 1));
+         return KeysetCursor.page(rows, limit, row -> KeysetCursor.ofId(row.getId()), this::convertToDto);
+    }
+
+    // Stream all active spots from a streaming result set, memory use stays flat however many there are
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllActiveParkingSpots(Consumer<ParkingSpotResponseDto> consumer){
+         try (Stream<SpotRowView> rows = parkingSpotRepository.streamActiveRows()) {
+             rows.map(this::convertToDto).forEach(consumer);
+         }
     }
 
     // Fetch all spots created by current user
     @Override
+    @Transactional(readOnly = true)
     public List<ParkingSpotResponseDto> fetchParkingSpotsByUserId(AppUserDetails userDetails){
-
-        User currentUser = userRepository.findByEmail(userDetails.getUsername());
-
-        if (currentUser == null) {
-            throw new ResourceNotFoundException("User not found");
-        }
-         List<ParkingSpot> parkingSpots = parkingSpotRepository.findByCreatedBy(currentUser);
-         return getConvertedParkingSpots(parkingSpots);
+         List<SpotRowView> rows = parkingSpotRepository.findRowsByCreatorEmail(userDetails.getUsername());
+         return getConvertedRows(rows);
     }
 
     //Fetch all active spots in specific city
     @Override
+    @Transactional(readOnly = true)
     public List<ParkingSpotResponseDto> fetchAllActiveParkingSpotsInGivenCity(String city){
-         List<ParkingSpot> parkingSpots = parkingSpotRepository.findByCityIgnoreCaseAndIsActiveTrue(city);
-         return getConvertedParkingSpots(parkingSpots);
+         List<SpotRowView> rows = parkingSpotRepository.findActiveRowsInCity(city);
+         return getConvertedRows(rows);
     }
 
     //Fetch available spots in a city with given data range
-    //Fetch all active spots in specific city
+    //Spots already booked in the period (5 min buffer included) are left out in the same query
     @Override
+    @Transactional(readOnly = true)
     public List<ParkingSpotResponseDto> fetchAllActiveParkingSpotsInGivenCityAndTimePeriod(String city, LocalDateTime startDate, LocalDateTime endDate){
-         List<ParkingSpot> parkingSpots = parkingSpotRepository.findAvailableSpotsInCity(city, startDate, endDate);
-         return getConvertedParkingSpots(parkingSpots);
+         List<SpotRowView> rows = parkingSpotRepository.findAvailableSpotsInCity(
+                 city,
+                 startDate,
+                 endDate,
+                 startDate.minusMinutes(BookingAvailabilityIndex.BUFFER_MINUTES),
+                 endDate.plusMinutes(BookingAvailabilityIndex.BUFFER_MINUTES),
+                 BookingAvailabilityIndex.LIVE_STATUSES);
+         return getConvertedRows(rows);
+    }
+
+    //Fetch the k active spots closest to a point, ranked from the in-memory geo index
+    @Override
+    @Transactional(readOnly = true)
+    public List<NearbyParkingSpotResponseDto> fetchNearestActiveParkingSpots(double latitude, double longitude, double radiusKm, int limit) {
+        // NaN passes every comparison, "NaN" is a valid double request parameter
+        if (!Double.isFinite(latitude) || !Double.isFinite(longitude)
+                || latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+            throw new ActionNotAllowedException("Invalid coordinates");
+        }
+        if (!Double.isFinite(radiusKm) || radiusKm <= 0 || radiusKm > MAX_NEARBY_RADIUS_KM) {
+            throw new ActionNotAllowedException("Radius must be between 0 and " + MAX_NEARBY_RADIUS_KM + " km");
+        }
+        if (limit < 1 || limit > MAX_NEARBY_LIMIT) {
+            throw new ActionNotAllowedException("Limit must be between 1 and " + MAX_NEARBY_LIMIT);
+        }
+
+        List<SpotGeoIndex.Hit> hits = geoIndex.nearest(latitude, longitude, radiusKm, limit);
+        Map<Long, SpotRowView> spotsById = findRowsById(hits.stream().map(SpotGeoIndex.Hit::spotId).toList());
+
+        // keep the distance order of the index
+        return hits.stream()
+                .filter(hit -> spotsById.containsKey(hit.spotId()))
+                .map(hit -> new NearbyParkingSpotResponseDto(convertToDto(spotsById.get(hit.spotId())), hit.distanceKm()))
+                .toList();
+    }
+
+    //Full text search, ranked by the in-memory search index, only the requested page is loaded
+    @Override
+    @Transactional(readOnly = true)
+    public ParkingSpotSearchPageDto searchActiveParkingSpots(String query, int page, int size) {
+        if (page < 0 || size < 1 || size > MAX_SEARCH_PAGE_SIZE) {
+            throw new ActionNotAllowedException("Page must be 0 or more and size between 1 and " + MAX_SEARCH_PAGE_SIZE);
+        }
+        // only the hits up to the end of the requested page are ranked
+        SpotSearchIndex.Result result = searchIndex.search(query, (int) Math.min((long) (page + 1) * size, Integer.MAX_VALUE));
+        List<SpotSearchIndex.Hit> hits = result.hits();
+        int from = (int) Math.min((long) page * size, hits.size());
+        List<SpotSearchIndex.Hit> pageHits = hits.subList(from, hits.size());
+
+        Map<Long, SpotRowView> spotsById = findRowsById(pageHits.stream().map(SpotSearchIndex.Hit::spotId).toList());
+
+        // keep the relevance order of the index
+        List<ParkingSpotResponseDto> spots = pageHits.stream()
+                .map(hit -> spotsById.get(hit.spotId()))
+                .filter(spot -> spot != null)
+                .map(this::convertToDto)
+                .toList();
+        return new ParkingSpotSearchPageDto(spots, page, size, result.total());
+    }
+
+    //One query for the prices, then every spot is priced in memory with the booking pricing rules
+    @Override
+    @Transactional(readOnly = true)
+    public List<ParkingSpotQuoteDto> quoteParkingSpots(QuoteParkingSpotsRequest request) {
+        List<Long> spotIds = request.getSpotIds();
+        if (spotIds == null || spotIds.isEmpty() || spotIds.size() > MAX_QUOTE_SPOTS) {
+            throw new ActionNotAllowedException("Between 1 and " + MAX_QUOTE_SPOTS + " spots can be quoted at once");
+        }
+        LocalDateTime start = request.getStartTime();
+        LocalDateTime end = request.getEndTime();
+        if (start == null || end == null || !end.isAfter(start)) {
+            throw new ActionNotAllowedException("End time must be after start time");
+        }
+
+        Map<Long, SpotPriceView> pricesById = parkingSpotRepository.findActivePricesByIdIn(spotIds).stream()
+                .collect(Collectors.toMap(SpotPriceView::getId, Function.identity()));
+
+        String currency = pricingEngine.getCurrency();
+        List<ParkingSpotQuoteDto> quotes = new ArrayList<>(pricesById.size());
+        for (Long spotId : spotIds) {
+            // remove, so a spot asked for twice is quoted once
+            SpotPriceView prices = pricesById.remove(spotId);
+            if (prices == null) {
+                continue;
+            }
+            long totalMinor = pricingEngine.quote(PricingEngine.toMinor(prices.getPricePerHour()),
+                    PricingEngine.toMinor(prices.getPricePerDay()), start, end);
+            quotes.add(new ParkingSpotQuoteDto(spotId, totalMinor, BigDecimal.valueOf(totalMinor, 2), currency));
+        }
+        return quotes;
     }
 
     @Override
+    @Transactional
     public ParkingSpotResponseDto createParkingSpot(CreateParkingSpotRequest request, AppUserDetails userDetails) {
         //Create and fill in the needed info for a parking spot
         ParkingSpot parkingSpot = createParkingSpot(request);
         //fetch current user
-        User currentUser = userRepository.findByEmail(userDetails.getUsername());
-
-        if (currentUser == null) {
-            throw new ResourceNotFoundException("User not found");
-        }
+        UserIdentity currentUser = userIdentityCache.requireByEmail(userDetails.getUsername());
         //set curr user
-        parkingSpot.setCreatedBy(currentUser);
+        parkingSpot.setCreatedBy(userRepository.getReferenceById(currentUser.id()));
 
         //Save to database
         parkingSpotRepository.save(parkingSpot);
+        geoIndex.track(parkingSpot);
+        searchIndex.track(parkingSpot);
         //return dto to controller
         return convertToDto(parkingSpot);
     }
+    //Not transactional, the importer commits every batch on its own
+    @Override
+    public ParkingSpotImportResultDto importParkingSpots(InputStream rows, ParkingSpotImporter.Format format, AppUserDetails userDetails) throws IOException {
+        UserIdentity currentUser = userIdentityCache.requireByEmail(userDetails.getUsername());
+        return parkingSpotImporter.importSpots(rows, format, currentUser.id());
+    }
+
     //Helper method to create values for a parking spot
     private ParkingSpot createParkingSpot(CreateParkingSpotRequest request) {
         return new ParkingSpot(
@@ -97,19 +236,17 @@ public class ParkingSpotService implements IParkingSpotService {
     }
 
     @Override
+    @RetryOnConflict
+    @Transactional
     public ParkingSpotResponseDto updateParkingSpotById(UpdateParkingSpotRequest request, Long ParkingSpotId, AppUserDetails userDetails) {
         //get existing parking spot, see if it exists
         ParkingSpot existingParkingSpot = parkingSpotRepository.findById(ParkingSpotId)
                 .orElseThrow(() -> new ResourceNotFoundException("ParkingSpot not found"));
 
         //get current user
-        User currentUser = userRepository.findByEmail(userDetails.getUsername());
-        //check that current user is not null
-        if (currentUser == null) {
-            throw new ResourceNotFoundException("User not found");
-        }
+        UserIdentity currentUser = userIdentityCache.requireByEmail(userDetails.getUsername());
         //Check that the parking spot belongs to the user
-        if(!existingParkingSpot.getCreatedBy().equals(currentUser)){
+        if(!existingParkingSpot.getCreatedBy().getId().equals(currentUser.id())){
             throw new ActionNotAllowedException("This is not current users parking spot");
         }
         //Updates the parking spot values
@@ -117,6 +254,8 @@ public class ParkingSpotService implements IParkingSpotService {
 
         //Save it to the database
         parkingSpotRepository.save(existingParkingSpot);
+        geoIndex.track(existingParkingSpot);
+        searchIndex.track(existingParkingSpot);
 
         //Return the dto to the parking spot controller
         return convertToDto(existingParkingSpot);
@@ -139,36 +278,34 @@ public class ParkingSpotService implements IParkingSpotService {
     }
 
     @Override
+    @RetryOnConflict
+    @Transactional
     public void deleteParkingSpotById(Long parkingSpotId, AppUserDetails userDetails) {
 
-        User currentUser = userRepository.findByEmail(userDetails.getUsername());
-
-        if (currentUser == null) {
-            throw new ResourceNotFoundException("User not found");
-        }
+        UserIdentity currentUser = userIdentityCache.requireByEmail(userDetails.getUsername());
 
         ParkingSpot existingParkingSpot = parkingSpotRepository.findById(parkingSpotId)
                 .orElseThrow(() -> new ResourceNotFoundException("ParkingSpot not found"));
 
-        if(existingParkingSpot.getCreatedBy().equals(currentUser)){
+        if(existingParkingSpot.getCreatedBy().getId().equals(currentUser.id())){
             parkingSpotRepository.delete(existingParkingSpot);
+            geoIndex.untrack(parkingSpotId);
+            searchIndex.untrack(parkingSpotId);
         } else{
             throw new ActionNotAllowedException("This is not current users parking spot");
         }
     }
     //Parking spots are by default active when created
     @Override
+    @RetryOnConflict
+    @Transactional
     public void deactivateParkingSpotById(Long parkingSpotId, AppUserDetails userDetails) {
         ParkingSpot parkingSpot = parkingSpotRepository.findById(parkingSpotId)
                 .orElseThrow(() -> new ResourceNotFoundException("Parking spot not found"));
 
-        User currentUser = userRepository.findByEmail(userDetails.getUsername());
+        UserIdentity currentUser = userIdentityCache.requireByEmail(userDetails.getUsername());
 
-        if (currentUser == null) {
-            throw new ResourceNotFoundException("User not found");
-        }
-
-        if(!parkingSpot.getCreatedBy().equals(currentUser)){
+        if(!parkingSpot.getCreatedBy().getId().equals(currentUser.id())){
             throw new ActionNotAllowedException("This is not current users parking spot");
         }
 
@@ -178,20 +315,22 @@ public class ParkingSpotService implements IParkingSpotService {
 
         parkingSpot.setActive(false);
         parkingSpotRepository.save(parkingSpot);
+        // the spot is no longer offered, its upcoming bookings are cancelled and refunded
+        transitionService.cancelUpcomingOfSpot(parkingSpot.getId(), LocalDateTime.now());
+        geoIndex.track(parkingSpot);
+        searchIndex.track(parkingSpot);
     }
 
     @Override
+    @RetryOnConflict
+    @Transactional
     public void activateParkingSpotById(Long parkingSpotId, AppUserDetails userDetails) {
         ParkingSpot parkingSpot = parkingSpotRepository.findById(parkingSpotId)
                 .orElseThrow(() -> new ResourceNotFoundException("Parking spot not found"));
 
-        User currentUser = userRepository.findByEmail(userDetails.getUsername());
+        UserIdentity currentUser = userIdentityCache.requireByEmail(userDetails.getUsername());
 
-        if (currentUser == null) {
-            throw new ResourceNotFoundException("User not found");
-        }
-
-        if(!parkingSpot.getCreatedBy().equals(currentUser)){
+        if(!parkingSpot.getCreatedBy().getId().equals(currentUser.id())){
             throw new ActionNotAllowedException("This is not current parking spot");
         }
 
@@ -201,12 +340,46 @@ public class ParkingSpotService implements IParkingSpotService {
         //Activate parking spot
         parkingSpot.setActive(true);
         parkingSpotRepository.save(parkingSpot);
+        geoIndex.track(parkingSpot);
+        searchIndex.track(parkingSpot);
 
     }
 
     //Method to convert parking spot objects into parkingspot dtos
-    private ParkingSpotResponseDto convertToDto(ParkingSpot parkingSpot){
-        return modelMapper.map(parkingSpot, ParkingSpotResponseDto.class);
+    //package-visible, SpotDtoConversionTest checks it against the ModelMapper mapping it replaced
+    ParkingSpotResponseDto convertToDto(ParkingSpot parkingSpot){
+        ParkingSpotResponseDto dto = new ParkingSpotResponseDto();
+        dto.setId(parkingSpot.getId());
+        dto.setTitle(parkingSpot.getTitle());
+        dto.setDescription(parkingSpot.getDescription());
+        dto.setAddress(parkingSpot.getAddress());
+        dto.setCity(parkingSpot.getCity());
+        dto.setPostal_code(parkingSpot.getPostal_code());
+        dto.setCountry(parkingSpot.getCountry());
+        dto.setLatitude(parkingSpot.getLatitude());
+        dto.setLongitude(parkingSpot.getLongitude());
+        dto.setAvailable_from(parkingSpot.getAvailable_from());
+        dto.setAvailable_to(parkingSpot.getAvailable_to());
+        dto.setPrice_per_hour(parkingSpot.getPrice_per_hour());
+        dto.setPrice_per_day(parkingSpot.getPrice_per_day());
+        return dto;
+    }
+    private ParkingSpotResponseDto convertToDto(SpotRowView row){
+        ParkingSpotResponseDto dto = new ParkingSpotResponseDto();
+        dto.setId(row.getId());
+        dto.setTitle(row.getTitle());
+        dto.setDescription(row.getDescription());
+        dto.setAddress(row.getAddress());
+        dto.setCity(row.getCity());
+        dto.setPostal_code(row.getPostalCode());
+        dto.setCountry(row.getCountry());
+        dto.setLatitude(row.getLatitude());
+        dto.setLongitude(row.getLongitude());
+        dto.setAvailable_from(row.getAvailableFrom());
+        dto.setAvailable_to(row.getAvailableTo());
+        dto.setPrice_per_hour(row.getPricePerHour());
+        dto.setPrice_per_day(row.getPricePerDay());
+        return dto;
     }
     /** TODO: later add for images, ex :
      *public ProductDto convertToDto(Product product) {
@@ -220,11 +393,20 @@ public class ParkingSpotService implements IParkingSpotService {
      *     }
      */
 
-    private List<ParkingSpotResponseDto> getConvertedParkingSpots(List<ParkingSpot> parkingSpots){
-        return parkingSpots.stream()
+    private List<ParkingSpotResponseDto> getConvertedRows(List<SpotRowView> rows){
+        return rows.stream()
                 .map(this :: convertToDto)
                 .toList();
     }
 
+    // Rows of the given spots keyed by id, spots deleted in the meantime are missing
+    private Map<Long, SpotRowView> findRowsById(List<Long> spotIds){
+        if (spotIds.isEmpty()) {
+            return Map.of();
+        }
+        return parkingSpotRepository.findRowsByIdIn(spotIds).stream()
+                .collect(Collectors.toMap(SpotRowView::getId, Function.identity()));
+    }
+
 
 }
@@ -0,0 +1,332 @@
+package com.example.demo.service.parkingspot;
+
+import com.example.demo.model.ParkingSpot;
+import com.example.demo.repository.ParkingSpotRepository;
+import com.example.demo.repository.projection.SpotIndexView;
+import com.example.demo.repository.projection.SpotLocationView;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory grid index over the coordinates of all active parking spots.
+ * Spots are bucketed into square lat/lon cells, coordinates are kept in primitive arrays.
+ *
+ * A k-nearest query scans rings of cells outwards from the searched point and stops as soon as
+ * the next ring cannot contain anything closer than the current k-th hit, or lies outside the radius.
+ * Distances are true haversine distances. Searches across the antimeridian are not supported.
+ *
+ * Rebuilt from the database on startup and kept in sync by ParkingSpotService. Changes made inside
+ * a transaction are applied once it commits. Changes of other nodes are picked up by IndexSync,
+ * which also rebuilds the index periodically.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SpotGeoIndex {
+
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+    private static final double KM_PER_DEGREE = 111.195;
+    // exact for the sphere used by haversineKm, so the latitude bound never drops a hit
+    private static final double KM_PER_DEGREE_OF_LATITUDE = EARTH_RADIUS_KM * Math.PI / 180;
+
+    private final ParkingSpotRepository parkingSpotRepository;
+
+    // cell edge length in degrees, 0.01 is about 1.1 km north-south
+    @Value("${spots.geo.cell-degrees:0.01}")
+    private double cellDegrees;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // slot storage, slots of removed spots are reused
+    private long[] spotIds = new long[1024];
+    private double[] lats = new double[1024];
+    private double[] lons = new double[1024];
+    private int slotCount;
+    private int[] freeSlots = new int[64];
+    private int freeCount;
+
+    private final Map<Long, Integer> slotBySpotId = new HashMap<>();
+    private final Map<Long, IntList> cells = new HashMap<>();
+
+    public record Hit(long spotId, double distanceKm) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<SpotLocationView> locations = parkingSpotRepository.findActiveSpotLocations();
+
+        lock.writeLock().lock();
+        try {
+            slotBySpotId.clear();
+            cells.clear();
+            slotCount = 0;
+            freeCount = 0;
+            for (SpotLocationView location : locations) {
+                put(location.getId(), location.getLatitude().doubleValue(), location.getLongitude().doubleValue());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Spot geo index rebuilt with {} active spots", locations.size());
+    }
+
+    /**
+     * Adds, moves or removes a spot depending on whether it is active and has coordinates.
+     */
+    public void track(ParkingSpot spot) {
+        Long spotId = spot.getId();
+        boolean active = spot.isActive();
+        BigDecimal latitude = spot.getLatitude();
+        BigDecimal longitude = spot.getLongitude();
+        afterCommit(() -> apply(spotId, active, latitude, longitude));
+    }
+
+    /**
+     * Applies a spot as read from the database, used to catch up with changes of other nodes.
+     */
+    public void sync(SpotIndexView view) {
+        apply(view.getId(), Boolean.TRUE.equals(view.getActive()), view.getLatitude(), view.getLongitude());
+    }
+
+    public void untrack(Long spotId) {
+        afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                remove(spotId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Finds up to k active spots within radiusKm of the point, closest first.
+     * @throws IllegalArgumentException for a non-finite point or radius, or k < 1
+     */
+    public List<Hit> nearest(double lat, double lon, double radiusKm, int k) {
+        if (!Double.isFinite(lat) || !Double.isFinite(lon) || !Double.isFinite(radiusKm) || radiusKm < 0 || k < 1) {
+            throw new IllegalArgumentException("Invalid nearest query: " + lat + ", " + lon + ", " + radiusKm + " km, k=" + k);
+        }
+        double[] heapDistances = new double[k];
+        int[] heapSlots = new int[k];
+        int found = 0;
+
+        lock.readLock().lock();
+        try {
+            int centerLatCell = cellOf(lat);
+            int centerLonCell = cellOf(lon);
+            // narrowest cell width inside the search area, cells get narrower towards the poles
+            double widestLat = Math.min(89.0, Math.abs(lat) + radiusKm / KM_PER_DEGREE);
+            double cellKm = cellDegrees * KM_PER_DEGREE * Math.cos(Math.toRadians(widestLat));
+            // hard bound on top of the distance check below: past the radius, and never more rings
+            // than cells around the globe
+            int maxRing = (int) Math.min(Math.ceil(radiusKm / cellKm) + 1, Math.ceil(360 / cellDegrees));
+
+            for (int ring = 0; ring <= maxRing; ring++) {
+                // every point in this ring is at least this far away from the searched point
+                double ringMinKm = Math.max(0, ring - 1) * cellKm;
+                if (ringMinKm > radiusKm || (found == k && heapDistances[0] <= ringMinKm)) {
+                    break;
+                }
+                for (int dLat = -ring; dLat <= ring; dLat++) {
+                    // inner rows only need the two edge cells of the ring
+                    int step = (dLat == -ring || dLat == ring) ? 1 : 2 * ring;
+                    for (int dLon = -ring; dLon <= ring; dLon += step) {
+                        IntList cell = cells.get(cellKey(centerLatCell + dLat, centerLonCell + dLon));
+                        if (cell == null) {
+                            continue;
+                        }
+                        for (int i = 0; i < cell.size; i++) {
+                            int slot = cell.items[i];
+                            // the north-south distance alone is a lower bound, skips the haversine
+                            // for most of a crowded cell once k hits are found
+                            double bestSoFar = found == k ? heapDistances[0] : radiusKm;
+                            if (Math.abs(lats[slot] - lat) * KM_PER_DEGREE_OF_LATITUDE > bestSoFar) {
+                                continue;
+                            }
+                            double distance = haversineKm(lat, lon, lats[slot], lons[slot]);
+                            if (distance <= radiusKm) {
+                                found = offer(heapDistances, heapSlots, found, distance, slot);
+                            }
+                        }
+                    }
+                }
+            }
+
+            // pop the max-heap from the back to get the hits sorted closest first
+            Hit[] hits = new Hit[found];
+            for (int n = found; n > 0; n--) {
+                hits[n - 1] = new Hit(spotIds[heapSlots[0]], heapDistances[0]);
+                heapDistances[0] = heapDistances[n - 1];
+                heapSlots[0] = heapSlots[n - 1];
+                siftDown(heapDistances, heapSlots, n - 1);
+            }
+            return Arrays.asList(hits);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    // Private Helper Methods
+
+    private void apply(long spotId, boolean active, BigDecimal latitude, BigDecimal longitude) {
+        lock.writeLock().lock();
+        try {
+            if (active && latitude != null && longitude != null) {
+                put(spotId, latitude.doubleValue(), longitude.doubleValue());
+            } else {
+                remove(spotId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void afterCommit(Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.run();
+            }
+        });
+    }
+
+    // callers of the methods below hold the write lock
+
+    private void put(long spotId, double lat, double lon) {
+        remove(spotId);
+        int slot = freeCount > 0 ? freeSlots[--freeCount] : newSlot();
+        spotIds[slot] = spotId;
+        lats[slot] = lat;
+        lons[slot] = lon;
+        slotBySpotId.put(spotId, slot);
+        cells.computeIfAbsent(cellKey(cellOf(lat), cellOf(lon)), key -> new IntList()).add(slot);
+    }
+
+    private void remove(long spotId) {
+        Integer slot = slotBySpotId.remove(spotId);
+        if (slot == null) {
+            return;
+        }
+        long key = cellKey(cellOf(lats[slot]), cellOf(lons[slot]));
+        IntList cell = cells.get(key);
+        cell.removeValue(slot);
+        if (cell.size == 0) {
+            cells.remove(key);
+        }
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    private int newSlot() {
+        if (slotCount == spotIds.length) {
+            int capacity = slotCount * 2;
+            spotIds = Arrays.copyOf(spotIds, capacity);
+            lats = Arrays.copyOf(lats, capacity);
+            lons = Arrays.copyOf(lons, capacity);
+        }
+        return slotCount++;
+    }
+
+    private int cellOf(double degrees) {
+        return (int) Math.floor(degrees / cellDegrees);
+    }
+
+    private static long cellKey(int latCell, int lonCell) {
+        return ((long) latCell << 32) | (lonCell & 0xffffffffL);
+    }
+
+    // Bounded max-heap on the distance, keeps the k closest hits seen so far
+    private static int offer(double[] distances, int[] slots, int count, double distance, int slot) {
+        if (count < distances.length) {
+            int i = count;
+            while (i > 0 && distances[(i - 1) / 2] < distance) {
+                distances[i] = distances[(i - 1) / 2];
+                slots[i] = slots[(i - 1) / 2];
+                i = (i - 1) / 2;
+            }
+            distances[i] = distance;
+            slots[i] = slot;
+            return count + 1;
+        }
+        if (distance < distances[0]) {
+            distances[0] = distance;
+            slots[0] = slot;
+            siftDown(distances, slots, count);
+        }
+        return count;
+    }
+
+    private static void siftDown(double[] distances, int[] slots, int count) {
+        int i = 0;
+        while (true) {
+            int largest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < count && distances[left] > distances[largest]) {
+                largest = left;
+            }
+            if (right < count && distances[right] > distances[largest]) {
+                largest = right;
+            }
+            if (largest == i) {
+                return;
+            }
+            double distance = distances[i];
+            int slot = slots[i];
+            distances[i] = distances[largest];
+            slots[i] = slots[largest];
+            distances[largest] = distance;
+            slots[largest] = slot;
+            i = largest;
+        }
+    }
+
+    private static final class IntList {
+        private int[] items = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = value;
+        }
+
+        void removeValue(int value) {
+            for (int i = 0; i < size; i++) {
+                if (items[i] == value) {
+                    items[i] = items[--size];
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.example.demo.service.parkingspot;
+
+import com.example.demo.model.ParkingSpot;
+import com.example.demo.repository.ParkingSpotRepository;
+import com.example.demo.repository.projection.SpotIndexView;
+import com.example.demo.repository.projection.SpotTextView;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index over title, description, address and city of the active parking spots.
+ *
+ * Text is lower-cased, stripped of accents and split into words. Every term keeps a posting list
+ * of spot id -> field weighted term frequency. Terms are kept sorted, so the last word of a query
+ * also matches as a prefix (type-ahead). A spot has to match every query word, and hits are ranked
+ * with BM25, prefix matches score a bit lower than exact ones.
+ *
+ * Rebuilt from the database on startup and kept in sync by ParkingSpotService. Changes made inside
+ * a transaction are applied once it commits. Changes of other nodes are picked up by IndexSync,
+ * which also rebuilds the index periodically.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SpotSearchIndex {
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern ACCENTS = Pattern.compile("\\p{M}+");
+
+    // field boosts, a word in the title counts more than one in the description
+    private static final float TITLE_WEIGHT = 3f;
+    private static final float CITY_WEIGHT = 2f;
+    private static final float ADDRESS_WEIGHT = 1.5f;
+    private static final float DESCRIPTION_WEIGHT = 1f;
+
+    // BM25 parameters
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double PREFIX_PENALTY = 0.8;
+
+    private final ParkingSpotRepository parkingSpotRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<String, Map<Long, Float>> postings = new TreeMap<>();
+    // indexed terms and weighted length of every spot, needed for removal and BM25
+    private final Map<Long, Map<String, Float>> termsBySpot = new HashMap<>();
+    private final Map<Long, Float> lengthBySpot = new HashMap<>();
+    private double totalLength;
+
+    // best first: higher score, then lower id
+    private static final Comparator<Hit> RANKING =
+            Comparator.comparingDouble(Hit::score).reversed().thenComparingLong(Hit::spotId);
+
+    public record Hit(long spotId, double score) {
+    }
+
+    /**
+     * The best hits of a search, best first, and how many spots matched in total.
+     */
+    public record Result(List<Hit> hits, int total) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<SpotTextView> texts = parkingSpotRepository.findActiveSpotTexts();
+
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            termsBySpot.clear();
+            lengthBySpot.clear();
+            totalLength = 0;
+            for (SpotTextView text : texts) {
+                put(text.getId(), text.getTitle(), text.getDescription(), text.getAddress(), text.getCity());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Spot search index rebuilt with {} active spots and {} terms", texts.size(), postings.size());
+    }
+
+    /**
+     * Adds or re-indexes an active spot, removes an inactive one.
+     */
+    public void track(ParkingSpot spot) {
+        Long spotId = spot.getId();
+        boolean active = spot.isActive();
+        String title = spot.getTitle();
+        String description = spot.getDescription();
+        String address = spot.getAddress();
+        String city = spot.getCity();
+        afterCommit(() -> apply(spotId, active, title, description, address, city));
+    }
+
+    /**
+     * Applies a spot as read from the database, used to catch up with changes of other nodes.
+     */
+    public void sync(SpotIndexView view) {
+        apply(view.getId(), Boolean.TRUE.equals(view.getActive()),
+                view.getTitle(), view.getDescription(), view.getAddress(), view.getCity());
+    }
+
+    public void untrack(Long spotId) {
+        afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                remove(spotId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Returns up to maxHits of the spots matching every word of the query, best match first.
+     * Only the best maxHits are kept in a bounded heap, the other matches are counted but not sorted.
+     */
+    public Result search(String query, int maxHits) {
+        List<String> words = tokenize(query);
+        if (words.isEmpty() || maxHits < 1) {
+            return new Result(List.of(), 0);
+        }
+
+        lock.readLock().lock();
+        try {
+            int spotCount = termsBySpot.size();
+            double averageLength = spotCount == 0 ? 1 : totalLength / spotCount;
+            Map<Long, Double> scores = null;
+
+            for (int i = 0; i < words.size(); i++) {
+                String word = words.get(i);
+                boolean typeAhead = i == words.size() - 1;
+                Map<Long, Double> wordScores = scoreWord(word, typeAhead, spotCount, averageLength);
+
+                if (scores == null) {
+                    scores = wordScores;
+                } else {
+                    // every word has to match
+                    Map<Long, Double> previous = scores;
+                    scores = new HashMap<>();
+                    for (Map.Entry<Long, Double> entry : wordScores.entrySet()) {
+                        Double score = previous.get(entry.getKey());
+                        if (score != null) {
+                            scores.put(entry.getKey(), score + entry.getValue());
+                        }
+                    }
+                }
+                if (scores.isEmpty()) {
+                    return new Result(List.of(), 0);
+                }
+            }
+
+            // worst of the kept hits on top, replaced when a better one comes along
+            PriorityQueue<Hit> best = new PriorityQueue<>(Math.min(maxHits, scores.size()), RANKING.reversed());
+            for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+                Hit hit = new Hit(entry.getKey(), entry.getValue());
+                if (best.size() < maxHits) {
+                    best.add(hit);
+                } else if (RANKING.compare(hit, best.peek()) < 0) {
+                    best.poll();
+                    best.add(hit);
+                }
+            }
+            Hit[] hits = new Hit[best.size()];
+            for (int i = hits.length - 1; i >= 0; i--) {
+                hits[i] = best.poll();
+            }
+            return new Result(Arrays.asList(hits), scores.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Private Helper Methods
+
+    private void apply(long spotId, boolean active, String title, String description, String address, String city) {
+        lock.writeLock().lock();
+        try {
+            if (active) {
+                put(spotId, title, description, address, city);
+            } else {
+                remove(spotId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void afterCommit(Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.run();
+            }
+        });
+    }
+
+    // BM25 score of one query word per spot, the best of the exact and prefix matches
+    private Map<Long, Double> scoreWord(String word, boolean typeAhead, int spotCount, double averageLength) {
+        Map<String, Map<Long, Float>> matches = typeAhead
+                ? postings.subMap(word, true, word + Character.MAX_VALUE, false)
+                : postings.containsKey(word) ? Map.of(word, postings.get(word)) : Map.of();
+
+        Map<Long, Double> wordScores = new HashMap<>();
+        for (Map.Entry<String, Map<Long, Float>> match : matches.entrySet()) {
+            Map<Long, Float> posting = match.getValue();
+            double idf = Math.log(1 + (spotCount - posting.size() + 0.5) / (posting.size() + 0.5));
+            double penalty = match.getKey().equals(word) ? 1.0 : PREFIX_PENALTY;
+
+            for (Map.Entry<Long, Float> entry : posting.entrySet()) {
+                double tf = entry.getValue();
+                double length = lengthBySpot.get(entry.getKey());
+                double score = penalty * idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * length / averageLength));
+                wordScores.merge(entry.getKey(), score, Math::max);
+            }
+        }
+        return wordScores;
+    }
+
+    private void put(long spotId, String title, String description, String address, String city) {
+        remove(spotId);
+        Map<String, Float> terms = new HashMap<>();
+        addField(terms, title, TITLE_WEIGHT);
+        addField(terms, description, DESCRIPTION_WEIGHT);
+        addField(terms, address, ADDRESS_WEIGHT);
+        addField(terms, city, CITY_WEIGHT);
+
+        float length = 0;
+        for (Map.Entry<String, Float> term : terms.entrySet()) {
+            postings.computeIfAbsent(term.getKey(), t -> new HashMap<>()).put(spotId, term.getValue());
+            length += term.getValue();
+        }
+        termsBySpot.put(spotId, terms);
+        lengthBySpot.put(spotId, length);
+        totalLength += length;
+    }
+
+    private void remove(long spotId) {
+        Map<String, Float> terms = termsBySpot.remove(spotId);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms.keySet()) {
+            Map<Long, Float> posting = postings.get(term);
+            posting.remove(spotId);
+            if (posting.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+        totalLength -= lengthBySpot.remove(spotId);
+    }
+
+    private static void addField(Map<String, Float> terms, String text, float weight) {
+        for (String word : tokenize(text)) {
+            terms.merge(word, weight, Float::sum);
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        String normalized = ACCENTS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        List<String> words = new ArrayList<>();
+        for (String word : NON_WORD.split(normalized.toLowerCase(Locale.ROOT))) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+}
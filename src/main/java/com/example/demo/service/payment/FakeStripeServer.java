@@ -0,0 +1,383 @@
+package com.example.demo.service.payment;
+
+import com.example.demo.cache.TtlCache;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stripe.Stripe;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedded stand-in for the Stripe API, for load and integration tests of the payment path without network access.
+ * Enabled with stripe.fake.enabled=true, never enable it in production.
+ *
+ * The Stripe SDK is pointed at this server, so PaymentService runs unchanged (timeouts, retries and
+ * idempotency keys included). It supports:
+ * - POST /v1/payment_intents: creates a PaymentIntent
+ * - GET /v1/payment_intents/{id}
+ * - POST /v1/payment_intents/{id}/confirm: pays the intent, payment_method=pm_card_chargeDeclined declines it
+ * - POST /v1/payment_intents/{id}/cancel and POST /v1/refunds
+ *
+ * Repeated idempotency keys return the first successful response, like Stripe.
+ * Every confirmed intent is reported to the app's /stripe/webhook with a payment_intent.succeeded or
+ * payment_intent.payment_failed event, signed with stripe.webhook.secret like Stripe does.
+ * With stripe.fake.auto-pay-ms >= 0 intents are paid on their own after that delay, so a load test only
+ * has to create bookings. Latency, API errors, rate limits and duplicate webhook deliveries can be injected.
+ *
+ * Responses are delayed on a scheduler instead of sleeping, so slow responses do not hold server threads.
+ */
+@Component
+@ConditionalOnProperty(name = "stripe.fake.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class FakeStripeServer {
+
+    private static final String DECLINED_PAYMENT_METHOD = "pm_card_chargeDeclined";
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${stripe.fake.port:12111}")
+    private int port;
+    @Value("${stripe.fake.threads:16}")
+    private int threads;
+    @Value("${stripe.fake.latency-ms:50}")
+    private long latencyMs;
+    @Value("${stripe.fake.latency-jitter-ms:50}")
+    private long latencyJitterMs;
+    // share of API calls answered with a Stripe api_error (500) or a rate limit (429)
+    @Value("${stripe.fake.error-rate:0}")
+    private double errorRate;
+    @Value("${stripe.fake.rate-limit-rate:0}")
+    private double rateLimitRate;
+    // -1 waits for an explicit confirm call
+    @Value("${stripe.fake.auto-pay-ms:-1}")
+    private long autoPayMs;
+    @Value("${stripe.fake.payment-failure-rate:0}")
+    private double paymentFailureRate;
+    // share of webhook events delivered twice, like Stripe occasionally does
+    @Value("${stripe.fake.webhook-duplicate-rate:0}")
+    private double webhookDuplicateRate;
+    @Value("${stripe.fake.webhook-url:http://localhost:${server.port:8080}/stripe/webhook}")
+    private String webhookUrl;
+    @Value("${stripe.webhook.secret:}")
+    private String webhookSecret;
+    @Value("${stripe.fake.max-intents:1000000}")
+    private int maxIntents;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private ScheduledExecutorService scheduler;
+    private HttpClient webhookClient;
+
+    private TtlCache<String, Map<String, Object>> intents;
+    private TtlCache<String, String> responsesByIdempotencyKey;
+
+    private record Reply(int status, String body) {
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        intents = new TtlCache<>(maxIntents, 1, TimeUnit.DAYS);
+        responsesByIdempotencyKey = new TtlCache<>(maxIntents, 1, TimeUnit.DAYS);
+        serverExecutor = Executors.newFixedThreadPool(threads, daemon("fake-stripe"));
+        scheduler = Executors.newScheduledThreadPool(2, daemon("fake-stripe-timer"));
+        webhookClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).executor(serverExecutor).build();
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        server.setExecutor(serverExecutor);
+        server.createContext("/v1/payment_intents", this::handle);
+        server.createContext("/v1/refunds", this::handle);
+        server.start();
+
+        Stripe.overrideApiBase("http://localhost:" + server.getAddress().getPort());
+        log.warn("Fake Stripe API listening on port {}, webhooks go to {}", server.getAddress().getPort(), webhookUrl);
+    }
+
+    @PreDestroy
+    void stop() {
+        Stripe.overrideApiBase(Stripe.LIVE_API_BASE);
+        server.stop(0);
+        scheduler.shutdownNow();
+        serverExecutor.shutdownNow();
+    }
+
+    // Private Helper Methods
+
+    private void handle(HttpExchange exchange) {
+        Reply reply;
+        try {
+            reply = route(exchange);
+        } catch (Exception e) {
+            log.warn("Fake Stripe failed on {} {}", exchange.getRequestMethod(), exchange.getRequestURI(), e);
+            reply = error(500, "api_error", null, e.getMessage());
+        }
+        Reply response = reply;
+        long delay = latencyMs + (latencyJitterMs > 0 ? ThreadLocalRandom.current().nextLong(latencyJitterMs + 1) : 0);
+        scheduler.schedule(() -> send(exchange, response), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private Reply route(HttpExchange exchange) throws IOException {
+        double roll = ThreadLocalRandom.current().nextDouble();
+        if (roll < rateLimitRate) {
+            return error(429, "invalid_request_error", "rate_limit", "Too many requests (injected)");
+        }
+        if (roll < rateLimitRate + errorRate) {
+            return error(500, "api_error", null, "Stripe is unavailable (injected)");
+        }
+
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getPath().split("/"); // "", "v1", resource, id, action
+        Map<String, String> form = readForm(exchange.getRequestBody());
+        String idempotencyKey = exchange.getRequestHeaders().getFirst("Idempotency-Key");
+
+        if (!"POST".equals(method) || idempotencyKey == null) {
+            return dispatch(method, path, form);
+        }
+        // like Stripe, a repeated key returns the first successful response
+        synchronized (responsesByIdempotencyKey) {
+            String previous = responsesByIdempotencyKey.get(idempotencyKey);
+            if (previous != null) {
+                return new Reply(200, previous);
+            }
+            Reply reply = dispatch(method, path, form);
+            if (reply.status() == 200) {
+                responsesByIdempotencyKey.put(idempotencyKey, reply.body());
+            }
+            return reply;
+        }
+    }
+
+    private Reply dispatch(String method, String[] path, Map<String, String> form) throws JsonProcessingException {
+        if ("refunds".equals(path[2])) {
+            return "POST".equals(method) && path.length == 3
+                    ? refund(form)
+                    : error(404, "invalid_request_error", null, "Unrecognized request URL");
+        }
+        if ("POST".equals(method) && path.length == 3) {
+            return new Reply(200, json(newIntent(form)));
+        }
+        Map<String, Object> intent = path.length > 3 ? intents.get(path[3]) : null;
+        if (intent == null) {
+            return error(404, "invalid_request_error", "resource_missing", "No such payment_intent");
+        }
+        if ("GET".equals(method) && path.length == 4) {
+            synchronized (intent) {
+                return new Reply(200, json(intent));
+            }
+        }
+        if ("POST".equals(method) && path.length == 5 && "confirm".equals(path[4])) {
+            boolean declined = DECLINED_PAYMENT_METHOD.equals(form.get("payment_method"));
+            return new Reply(200, json(pay(intent, !declined)));
+        }
+        if ("POST".equals(method) && path.length == 5 && "cancel".equals(path[4])) {
+            synchronized (intent) {
+                if ("succeeded".equals(intent.get("status")) || "canceled".equals(intent.get("status"))) {
+                    return error(400, "invalid_request_error", "payment_intent_unexpected_state",
+                            "PaymentIntent has status " + intent.get("status"));
+                }
+                intent.put("status", "canceled");
+                return new Reply(200, json(intent));
+            }
+        }
+        return error(404, "invalid_request_error", null, "Unrecognized request URL");
+    }
+
+    private Reply refund(Map<String, String> form) throws JsonProcessingException {
+        Map<String, Object> intent = intents.get(form.getOrDefault("payment_intent", ""));
+        if (intent == null) {
+            return error(404, "invalid_request_error", "resource_missing", "No such payment_intent");
+        }
+        synchronized (intent) {
+            if ("refunded".equals(intent.get("refund_status"))) {
+                return error(400, "invalid_request_error", "charge_already_refunded", "Charge has already been refunded");
+            }
+            if (!"succeeded".equals(intent.get("status"))) {
+                return error(400, "invalid_request_error", "charge_not_refundable", "PaymentIntent has no successful charge");
+            }
+            intent.put("refund_status", "refunded");
+        }
+        Map<String, Object> refund = new LinkedHashMap<>();
+        refund.put("id", "re_fake_" + UUID.randomUUID().toString().replace("-", ""));
+        refund.put("object", "refund");
+        refund.put("amount", intent.get("amount"));
+        refund.put("currency", intent.get("currency"));
+        refund.put("payment_intent", intent.get("id"));
+        refund.put("status", "succeeded");
+        refund.put("created", System.currentTimeMillis() / 1000);
+        return new Reply(200, json(refund));
+    }
+
+    private Map<String, Object> newIntent(Map<String, String> form) {
+        String id = "pi_fake_" + UUID.randomUUID().toString().replace("-", "");
+        Map<String, String> metadata = new HashMap<>();
+        form.forEach((key, value) -> {
+            if (key.startsWith("metadata[") && key.endsWith("]")) {
+                metadata.put(key.substring(9, key.length() - 1), value);
+            }
+        });
+
+        Map<String, Object> intent = new LinkedHashMap<>();
+        intent.put("id", id);
+        intent.put("object", "payment_intent");
+        intent.put("amount", Long.parseLong(form.getOrDefault("amount", "0")));
+        intent.put("currency", form.getOrDefault("currency", "eur"));
+        intent.put("status", "requires_payment_method");
+        intent.put("client_secret", id + "_secret_" + UUID.randomUUID().toString().substring(0, 8));
+        intent.put("metadata", metadata);
+        intent.put("created", System.currentTimeMillis() / 1000);
+        intent.put("livemode", false);
+        intents.put(id, intent);
+        Map<String, Object> created = new LinkedHashMap<>(intent);
+
+        if (autoPayMs >= 0) {
+            scheduler.schedule(() -> pay(intent, ThreadLocalRandom.current().nextDouble() >= paymentFailureRate),
+                    autoPayMs, TimeUnit.MILLISECONDS);
+        }
+        return created;
+    }
+
+    private Map<String, Object> pay(Map<String, Object> intent, boolean succeeded) {
+        Map<String, Object> paid;
+        synchronized (intent) {
+            intent.put("status", succeeded ? "succeeded" : "requires_payment_method");
+            paid = new LinkedHashMap<>(intent);
+        }
+        sendWebhook(succeeded ? StripeWebhookProcessor.PAYMENT_SUCCEEDED : StripeWebhookProcessor.PAYMENT_FAILED, paid);
+        return paid;
+    }
+
+    private void sendWebhook(String type, Map<String, Object> intent) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("id", "evt_fake_" + UUID.randomUUID().toString().replace("-", ""));
+        event.put("object", "event");
+        event.put("api_version", Stripe.API_VERSION);
+        event.put("created", System.currentTimeMillis() / 1000);
+        event.put("type", type);
+        event.put("livemode", false);
+        event.put("data", Map.of("object", intent));
+
+        String payload;
+        try {
+            payload = json(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+        int deliveries = ThreadLocalRandom.current().nextDouble() < webhookDuplicateRate ? 2 : 1;
+        for (int i = 0; i < deliveries; i++) {
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(webhookUrl))
+                    .timeout(Duration.ofSeconds(10))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(payload));
+            if (!webhookSecret.isEmpty()) {
+                request.header("Stripe-Signature", sign(payload));
+            }
+            webhookClient.sendAsync(request.build(), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, e) -> {
+                        if (e != null || response.statusCode() != 200) {
+                            // Stripe would redeliver, a load test should notice instead
+                            log.warn("Fake Stripe webhook {} not accepted: {}", event.get("id"),
+                                    e != null ? e.getMessage() : "HTTP " + response.statusCode());
+                        }
+                    });
+        }
+    }
+
+    // Same scheme as Stripe: t=<unix seconds>,v1=<hex HMAC-SHA256 of "t.payload">
+    private String sign(String payload) {
+        long timestamp = System.currentTimeMillis() / 1000;
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(webhookSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            byte[] signature = mac.doFinal((timestamp + "." + payload).getBytes(StandardCharsets.UTF_8));
+            return "t=" + timestamp + ",v1=" + HexFormat.of().formatHex(signature);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void send(HttpExchange exchange, Reply reply) {
+        byte[] body = reply.body().getBytes(StandardCharsets.UTF_8);
+        try (exchange; OutputStream out = exchange.getResponseBody()) {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.getResponseHeaders().set("Request-Id", "req_fake_" + UUID.randomUUID().toString().substring(0, 12));
+            exchange.sendResponseHeaders(reply.status(), body.length);
+            out.write(body);
+        } catch (IOException e) {
+            // the client gave up waiting (read timeout)
+            log.debug("Fake Stripe could not send a response: {}", e.getMessage());
+        }
+    }
+
+    private Reply error(int status, String type, String code, String message) {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("type", type);
+        error.put("code", code);
+        error.put("message", String.valueOf(message));
+        try {
+            return new Reply(status, json(Map.of("error", error)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String json(Object value) throws JsonProcessingException {
+        return objectMapper.writeValueAsString(value);
+    }
+
+    private static Map<String, String> readForm(InputStream body) throws IOException {
+        String form = new String(body.readAllBytes(), StandardCharsets.UTF_8);
+        Map<String, String> fields = new HashMap<>();
+        for (String pair : form.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            fields.put(key, value);
+        }
+        return fields;
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.demo.service.payment;
 
-import com.stripe.model.PaymentIntent;
+import java.time.LocalDateTime;
+import java.util.Collection;
 
 public interface IPaymentService {
 
@@ -10,13 +11,24 @@ public interface IPaymentService {
     String createPaymentIntentForBooking(Long bookingId, String currency);
 
     /**
-     * Handle successful payment (called from webhook).
+     * Refund the payment of a cancelled booking and return the refund id.
      */
-    void handlePaymentSucceeded(PaymentIntent paymentIntent);
+    String refundPayment(Long bookingId, String paymentIntentId);
 
     /**
-     * Handle failed payment (called from webhook).
+     * Cancel the unpaid PaymentIntent of a cancelled booking.
      */
-    void handlePaymentFailed(PaymentIntent paymentIntent);
+    void cancelPaymentIntent(Long bookingId, String paymentIntentId);
+
+    /**
+     * Confirm the bookings whose payment succeeded (called for a batch of webhook events).
+     * @return number of bookings confirmed
+     */
+    int confirmPaidBookings(Collection<Long> bookingIds, LocalDateTime now);
+
+    /**
+     * Handle failed payments (called for a batch of webhook events).
+     */
+    void recordFailedPayments(Collection<Long> bookingIds);
 }
 
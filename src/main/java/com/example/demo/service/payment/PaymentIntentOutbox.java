@@ -0,0 +1,194 @@
+package com.example.demo.service.payment;
+
+import com.example.demo.enums.PaymentOutboxStatus;
+import com.example.demo.exeptions.ActionNotAllowedException;
+import com.example.demo.exeptions.PaymentGatewayException;
+import com.example.demo.exeptions.ResourceNotFoundException;
+import com.example.demo.model.PaymentOutbox;
+import com.example.demo.repository.PaymentOutboxRepository;
+import com.example.demo.service.cluster.LeaderLease;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates Stripe PaymentIntents for new bookings outside the booking transaction (transactional outbox).
+ *
+ * BookingService writes a payment_outbox row in the booking's transaction. After commit the row is
+ * handed to a small worker pool on the same node right away. The leader node also polls for rows
+ * that are due (new ones a crashed node never sent, and retries). A worker claims a row with a
+ * conditional update before calling Stripe, so a row is worked on by one worker at a time.
+ * A claim that is never released (node died mid call) expires and the row is picked up again.
+ *
+ * Stripe calls have connect and read timeouts and run with the idempotency key booking-{id}-intent,
+ * so a repeated attempt returns the PaymentIntent created before. Retryable failures back off
+ * exponentially up to payments.outbox.max-attempts. Clients read the client secret from
+ * PaymentIntentWaiters.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentIntentOutbox {
+
+    // longer than one Stripe call with all its network retries
+    private static final long CLAIM_SECONDS = 60;
+    private static final long MAX_BACKOFF_SECONDS = 300;
+
+    private final PaymentOutboxRepository outboxRepository;
+    private final PaymentService paymentService;
+    private final PaymentIntentWaiters waiters;
+    private final LeaderLease leaderLease;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${payments.outbox.concurrency:8}")
+    private int concurrency;
+    @Value("${payments.outbox.queue-capacity:200}")
+    private int queueCapacity;
+    @Value("${payments.outbox.max-attempts:8}")
+    private int maxAttempts;
+    @Value("${payments.outbox.batch-size:50}")
+    private int batchSize;
+
+    private ThreadPoolExecutor executor;
+    // submit() also runs in afterCommit, where the finished booking transaction is still bound
+    // and a plain template would join it instead of starting its own
+    private TransactionTemplate ownTransaction;
+
+    @PostConstruct
+    void start() {
+        ownTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        ownTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(concurrency, concurrency, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "payment-intents-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdown();
+    }
+
+    /**
+     * Requests a PaymentIntent for the booking. Must run in the booking's transaction,
+     * the intent is created once that transaction has committed.
+     */
+    public void enqueue(Long bookingId, String currency) {
+        Long outboxId = outboxRepository.save(new PaymentOutbox(bookingId, currency, LocalDateTime.now())).getId();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            submit(outboxId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                submit(outboxId);
+            }
+        });
+    }
+
+    /**
+     * Picks up due rows that were not handed to a worker (node crash, full pool) and retries.
+     */
+    @Scheduled(fixedDelayString = "${payments.outbox.poll-ms:2000}")
+    public void submitDue() {
+        if (!leaderLease.isLeader()) {
+            return;
+        }
+        int room = Math.min(batchSize, executor.getQueue().remainingCapacity());
+        if (room == 0) {
+            return;
+        }
+        try {
+            List<Long> due = outboxRepository.findDueIds(PaymentOutboxStatus.PENDING, LocalDateTime.now(), Limit.of(room));
+            due.forEach(this::submit);
+        } catch (RuntimeException e) {
+            log.warn("Payment outbox poll failed: {}", e.getMessage());
+        }
+    }
+
+    // Private Helper Methods
+
+    private void submit(Long outboxId) {
+        LocalDateTime now = LocalDateTime.now();
+        Integer claimed = ownTransaction.execute(status -> outboxRepository.claim(outboxId, now, now.plusSeconds(CLAIM_SECONDS)));
+        if (claimed == null || claimed == 0) {
+            return; // done or taken by another worker
+        }
+        try {
+            executor.execute(() -> process(outboxId));
+        } catch (RejectedExecutionException e) {
+            // pool is full, the leader poll takes it later
+            ownTransaction.executeWithoutResult(status -> outboxRepository.release(outboxId));
+        }
+    }
+
+    private void process(Long outboxId) {
+        PaymentOutbox row = outboxRepository.findById(outboxId).orElse(null);
+        if (row == null) {
+            return;
+        }
+        try {
+            String clientSecret = paymentService.createPaymentIntentForBooking(row.getBookingId(), row.getCurrency());
+            transactionTemplate.executeWithoutResult(status -> outboxRepository.markSent(outboxId, clientSecret));
+        } catch (ResourceNotFoundException | ActionNotAllowedException e) {
+            // booking deleted or no longer pending, nothing to pay
+            fail(row, e.getMessage());
+        } catch (PaymentGatewayException e) {
+            if (e.isRetryable() && row.getAttempts() + 1 < maxAttempts) {
+                retry(row, e.getMessage());
+                return;
+            }
+            fail(row, e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("Unexpected error creating the PaymentIntent of booking {}", row.getBookingId(), e);
+            if (row.getAttempts() + 1 < maxAttempts) {
+                retry(row, e.getMessage());
+                return;
+            }
+            fail(row, e.getMessage());
+        }
+        waiters.complete(row.getBookingId());
+    }
+
+    private void retry(PaymentOutbox row, String error) {
+        // 2, 4, 8 ... seconds with some jitter, so retries of many rows do not arrive together
+        long backoffMillis = Math.min(MAX_BACKOFF_SECONDS, 1L << Math.min(row.getAttempts() + 1, 16)) * 1000
+                + ThreadLocalRandom.current().nextLong(1000);
+        LocalDateTime next = LocalDateTime.now().plusNanos(backoffMillis * 1_000_000);
+        transactionTemplate.executeWithoutResult(status -> outboxRepository.markRetry(row.getId(), truncate(error), next));
+        log.warn("PaymentIntent of booking {} failed (attempt {}), retrying: {}", row.getBookingId(), row.getAttempts() + 1, error);
+    }
+
+    private void fail(PaymentOutbox row, String error) {
+        transactionTemplate.executeWithoutResult(status -> outboxRepository.markFailed(row.getId(), truncate(error)));
+        log.warn("PaymentIntent of booking {} given up after {} attempt(s): {}", row.getBookingId(), row.getAttempts() + 1, error);
+    }
+
+    private static String truncate(String error) {
+        return error == null || error.length() <= 500 ? error : error.substring(0, 500);
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.demo.service.payment;
+
+import com.example.demo.exeptions.ActionNotAllowedException;
+import com.example.demo.exeptions.ResourceNotFoundException;
+import com.example.demo.enums.PaymentOutboxStatus;
+import com.example.demo.repository.BookingRepository;
+import com.example.demo.repository.PaymentOutboxRepository;
+import com.example.demo.responseDtos.PaymentIntentStatusDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Lets clients wait for the PaymentIntent of their booking (long poll) without holding a request thread.
+ *
+ * A waiting request is answered as soon as a worker on this node finishes the booking's outbox row.
+ * If the row is finished on another node, the request is answered with the current state when its
+ * wait time runs out, and the client simply asks again.
+ */
+@Component
+@RequiredArgsConstructor
+public class PaymentIntentWaiters {
+
+    public static final long MAX_WAIT_MS = 25_000;
+
+    private final PaymentOutboxRepository outboxRepository;
+    private final BookingRepository bookingRepository;
+
+    private final Map<Long, Set<Runnable>> waiting = new ConcurrentHashMap<>();
+
+    /**
+     * Current state of the booking's PaymentIntent.
+     */
+    public PaymentIntentStatusDto status(Long bookingId) {
+        return outboxRepository.findByBookingId(bookingId)
+                .map(row -> new PaymentIntentStatusDto(bookingId, row.getStatus().name(), row.getClientSecret(), row.getLastError()))
+                .orElseGet(() -> new PaymentIntentStatusDto(bookingId, "NONE", null, null));
+    }
+
+    /**
+     * Answers with the booking's PaymentIntent state once it is no longer pending, or after waitMs.
+     * @throws ResourceNotFoundException if the booking does not exist
+     * @throws ActionNotAllowedException if the booking belongs to someone else or waitMs is out of range
+     */
+    public <R> DeferredResult<R> await(Long bookingId, Long renterId, long waitMs, Function<PaymentIntentStatusDto, R> toResult) {
+        if (waitMs < 0 || waitMs > MAX_WAIT_MS) {
+            throw new ActionNotAllowedException("waitMs must be between 0 and " + MAX_WAIT_MS);
+        }
+        Long bookingRenterId = bookingRepository.findRenterIdById(bookingId)
+                .orElseThrow(() -> new ResourceNotFoundException("Booking not found"));
+        if (!bookingRenterId.equals(renterId)) {
+            throw new ActionNotAllowedException("Only the renter can pay for their booking");
+        }
+
+        DeferredResult<R> result = new DeferredResult<>(Math.max(waitMs, 1));
+        PaymentIntentStatusDto current = status(bookingId);
+        if (waitMs == 0 || !isPending(current)) {
+            result.setResult(toResult.apply(current));
+            return result;
+        }
+
+        Runnable answer = () -> result.setResult(toResult.apply(status(bookingId)));
+        waiting.computeIfAbsent(bookingId, id -> ConcurrentHashMap.newKeySet()).add(answer);
+        result.onTimeout(answer);
+        result.onCompletion(() -> remove(bookingId, answer));
+
+        // finished between the first read and the registration
+        PaymentIntentStatusDto again = status(bookingId);
+        if (!isPending(again)) {
+            result.setResult(toResult.apply(again));
+        }
+        return result;
+    }
+
+    /**
+     * Answers everyone waiting for the booking, called when its outbox row is finished.
+     */
+    public void complete(Long bookingId) {
+        Set<Runnable> answers = waiting.remove(bookingId);
+        if (answers != null) {
+            answers.forEach(Runnable::run);
+        }
+    }
+
+    // Private Helper Methods
+
+    private void remove(Long bookingId, Runnable answer) {
+        waiting.computeIfPresent(bookingId, (id, answers) -> {
+            answers.remove(answer);
+            return answers.isEmpty() ? null : answers;
+        });
+    }
+
+    private static boolean isPending(PaymentIntentStatusDto status) {
+        return PaymentOutboxStatus.PENDING.name().equals(status.getStatus());
+    }
+}
@@ -1,40 +1,82 @@
 package com.example.demo.service.payment;
 
-import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.example.demo.enums.BookingStatus;
+import com.example.demo.exeptions.ActionNotAllowedException;
 import com.example.demo.exeptions.ResourceNotFoundException;
 import com.example.demo.model.Booking;
 import com.example.demo.repository.BookingRepository;
-import com.stripe.exception.StripeException;
+import com.example.demo.service.booking.BookingDeadlineQueue;
+import com.example.demo.service.pricing.PricingEngine;
 import com.stripe.model.PaymentIntent;
+import com.stripe.model.Refund;
+import com.stripe.net.RequestOptions;
+import com.stripe.param.PaymentIntentCancelParams;
 import com.stripe.param.PaymentIntentCreateParams;
+import com.stripe.param.RefundCreateParams;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
 @Service
 @RequiredArgsConstructor
 @Transactional
+@Slf4j
 public class PaymentService implements IPaymentService {
 
     private final BookingRepository bookingRepository;
-
+    private final BookingDeadlineQueue deadlineQueue;
+    private final TransactionTemplate transactionTemplate;
+    private final StripeCallGuard stripeCalls;
+    private final RefundQueue refundQueue;
+    private final PricingEngine pricingEngine;
+
+    @Value("${stripe.timeouts.connect-ms:2000}")
+    private int connectTimeoutMs;
+    @Value("${stripe.timeouts.read-ms:10000}")
+    private int readTimeoutMs;
+    @Value("${stripe.max-network-retries:1}")
+    private int maxNetworkRetries;
+
+    /**
+     * Runs outside any transaction, so no database connection is held during the Stripe call.
+     * The idempotency key makes repeated calls for a booking return the same PaymentIntent.
+     * Bookings are priced in the pricing currency, another currency is rejected instead of charging
+     * the same minor amount in it. A missing currency means the pricing currency.
+     */
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public String createPaymentIntentForBooking(Long bookingId, String currency) {
         Booking booking = bookingRepository.findById(bookingId)
                 .orElseThrow(() -> new ResourceNotFoundException("Booking not found"));
+        if (booking.getStatus() != BookingStatus.PENDING) {
+            throw new ActionNotAllowedException("Booking " + bookingId + " is not awaiting payment");
+        }
+        String chargedCurrency = (currency == null ? pricingEngine.getCurrency() : currency).toLowerCase(Locale.ROOT);
+        if (!chargedCurrency.equalsIgnoreCase(pricingEngine.getCurrency())) {
+            throw new ActionNotAllowedException("Booking " + bookingId + " is priced in " + pricingEngine.getCurrency()
+                    + ", not in " + currency);
+        }
 
-        // Convert totalAmount (double) to minor units (e.g. cents)
-        BigDecimal total = BigDecimal.valueOf(booking.getTotalAmount());
-        long amountInMinorUnits = total.movePointRight(2).longValueExact(); // 10.50 -> 1050
+        // minor units (e.g. cents), older bookings only have the decimal amount
+        long amountInMinorUnits = booking.getTotalAmountMinor() != null
+                ? booking.getTotalAmountMinor()
+                : PricingEngine.toMinor(booking.getTotalAmount());
 
         PaymentIntentCreateParams params = PaymentIntentCreateParams
                 .builder()
                 .setAmount(amountInMinorUnits)
-                .setCurrency(currency)
+                .setCurrency(chargedCurrency)
                 .setAutomaticPaymentMethods(
                         PaymentIntentCreateParams.AutomaticPaymentMethods
                                 .builder()
@@ -44,54 +86,85 @@ public class PaymentService implements IPaymentService {
                 .putMetadata("bookingId", booking.getId().toString())
                 .build();
 
-        try {
-            PaymentIntent paymentIntent = PaymentIntent.create(params);
+        // with the currency in the key a retry never reuses a key for different parameters
+        RequestOptions options = requestOptions("booking-" + bookingId + "-intent-" + chargedCurrency);
 
-            // store PaymentIntent id on booking
-            booking.setStripePaymentIntentId(paymentIntent.getId());
-            bookingRepository.save(booking);
+        // bounded, timed and behind the circuit breaker, throws PaymentGatewayException
+        PaymentIntent paymentIntent = stripeCalls.call("payment_intent.create", () -> PaymentIntent.create(params, options));
 
-            return paymentIntent.getClientSecret();
-        } catch (StripeException e) {
-            throw new RuntimeException("Failed to create PaymentIntent", e);
-        }
+        // store PaymentIntent id on booking
+        transactionTemplate.executeWithoutResult(status ->
+                bookingRepository.setStripePaymentIntentId(bookingId, paymentIntent.getId(), LocalDateTime.now()));
+
+        return paymentIntent.getClientSecret();
     }
 
+    /**
+     * Refunds the booking's payment in full.
+     * @return the Stripe refund id
+     * @throws PaymentGatewayException when Stripe refused or could not be reached
+     */
     @Override
-    public void handlePaymentSucceeded(PaymentIntent paymentIntent) {
-        String bookingIdStr = paymentIntent.getMetadata().get("bookingId");
-        if (bookingIdStr == null) {
-            System.out.println("⚠️ No bookingId in PaymentIntent metadata.");
-            return;
-        }
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public String refundPayment(Long bookingId, String paymentIntentId) {
+        RefundCreateParams params = RefundCreateParams.builder()
+                .setPaymentIntent(paymentIntentId)
+                .putMetadata("bookingId", bookingId.toString())
+                .build();
+        RequestOptions options = requestOptions("booking-" + bookingId + "-refund");
+        return stripeCalls.call("refund.create", () -> Refund.create(params, options)).getId();
+    }
 
-        Long bookingId = Long.valueOf(bookingIdStr);
-
-        bookingRepository.findById(bookingId).ifPresent(booking -> {
-            if (booking.getStatus() == BookingStatus.PENDING) {
-                booking.setStatus(BookingStatus.CONFIRMED);
-                bookingRepository.save(booking);
-                System.out.println("✅ Booking " + bookingId + " marked as CONFIRMED.");
-            } else {
-                System.out.println("ℹ️ Booking " + bookingId + " was not PENDING (status: " + booking.getStatus() + ")");
-            }
-        });
+    /**
+     * Cancels the booking's unpaid PaymentIntent, so it cannot be paid anymore.
+     * @throws PaymentGatewayException when Stripe refused or could not be reached
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void cancelPaymentIntent(Long bookingId, String paymentIntentId) {
+        PaymentIntent paymentIntent = new PaymentIntent();
+        paymentIntent.setId(paymentIntentId);
+        RequestOptions options = requestOptions("booking-" + bookingId + "-cancel-intent");
+        stripeCalls.call("payment_intent.cancel", () -> paymentIntent.cancel(PaymentIntentCancelParams.builder().build(), options));
     }
 
+    /**
+     * PENDING -> CONFIRMED for the given paid bookings in one statement.
+     * Bookings that are no longer pending (already confirmed by a redelivered event) are left alone,
+     * cancelled ones are refunded.
+     */
     @Override
-    public void handlePaymentFailed(PaymentIntent paymentIntent) {
-        String bookingIdStr = paymentIntent.getMetadata().get("bookingId");
-        if (bookingIdStr == null) {
-            System.out.println("⚠️ No bookingId in PaymentIntent metadata.");
-            return;
+    public int confirmPaidBookings(Collection<Long> bookingIds, LocalDateTime now) {
+        int confirmed = bookingRepository.updateStatus(bookingIds, BookingStatus.PENDING, BookingStatus.CONFIRMED, now);
+        if (confirmed < bookingIds.size()) {
+            // paid after the booking was cancelled, give the money back
+            refundQueue.request(bookingIds, List.of(BookingStatus.CANCELLED), now);
+        }
+        if (confirmed > 0) {
+            // paid late (close to start), the start deadline may already have passed
+            bookingRepository.findSlotsByIdIn(bookingIds).stream()
+                    .filter(slot -> slot.getStatus() == BookingStatus.CONFIRMED)
+                    .forEach(deadlineQueue::schedule);
+            log.info("{} paid booking(s) confirmed", confirmed);
         }
+        return confirmed;
+    }
+
+    @Override
+    public void recordFailedPayments(Collection<Long> bookingIds) {
+        // You could add a FAILED status if you want; for now the booking stays PENDING
+        // until the renter retries the payment or the payment timeout cancels it.
+        log.info("Payment failed for booking(s) {}", bookingIds);
+    }
 
-        Long bookingId = Long.valueOf(bookingIdStr);
+    // Private Helper Methods
 
-        bookingRepository.findById(bookingId).ifPresent(booking -> {
-            // You could add a FAILED status if you want; for now just log.
-            System.out.println("❌ Payment failed for booking " + bookingId);
-        });
+    private RequestOptions requestOptions(String idempotencyKey) {
+        return RequestOptions.builder()
+                .setIdempotencyKey(idempotencyKey)
+                .setConnectTimeout(connectTimeoutMs)
+                .setReadTimeout(readTimeoutMs)
+                .setMaxNetworkRetries(maxNetworkRetries)
+                .build();
     }
 }
-
@@ -0,0 +1,46 @@
+package com.example.demo.service.payment;
+
+import com.example.demo.enums.BookingStatus;
+import com.example.demo.repository.BookingRepository;
+import com.example.demo.repository.PaymentRefundRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Queues refunds for bookings that are being cancelled, RefundWorker sends them to Stripe later.
+ *
+ * Called in the cancelling transaction before the status change, so the refunds commit or roll back
+ * together with the cancellation, and a cancellation wave costs two statements, no Stripe calls.
+ * Paid bookings get a refund, unpaid ones get their PaymentIntent cancelled.
+ */
+@Component
+@RequiredArgsConstructor
+public class RefundQueue {
+
+    private final PaymentRefundRepository refundRepository;
+    private final BookingRepository bookingRepository;
+
+    /**
+     * Queues a refund for every given booking that is in one of the statuses and has a PaymentIntent.
+     * Bookings that end up not cancelled are skipped by RefundWorker.
+     * @return number of refunds queued
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public int request(Collection<Long> bookingIds, Collection<BookingStatus> statuses, LocalDateTime now) {
+        if (bookingIds.isEmpty()) {
+            return 0;
+        }
+        List<String> statusNames = statuses.stream().map(Enum::name).toList();
+        int queued = refundRepository.insertForBookings(bookingIds, statusNames, now);
+        if (queued > 0) {
+            bookingRepository.markRefundPending(bookingIds, statuses);
+        }
+        return queued;
+    }
+}
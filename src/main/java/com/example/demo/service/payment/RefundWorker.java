@@ -0,0 +1,247 @@
+package com.example.demo.service.payment;
+
+import com.example.demo.enums.BookingStatus;
+import com.example.demo.enums.RefundAction;
+import com.example.demo.enums.RefundStatus;
+import com.example.demo.exeptions.LeadershipLostException;
+import com.example.demo.exeptions.PaymentGatewayException;
+import com.example.demo.model.PaymentRefund;
+import com.example.demo.repository.BookingRepository;
+import com.example.demo.repository.PaymentRefundRepository;
+import com.example.demo.service.cluster.LeaderLease;
+import com.stripe.exception.StripeException;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends queued refunds and PaymentIntent cancellations to Stripe.
+ *
+ * Runs on its own thread on the leader node, so a cancellation wave never holds request threads or
+ * the scheduler. Due refunds are taken in batches, calls start at most payments.refunds.max-per-second
+ * and run on a few threads. Every call carries an idempotency key per booking, so a repeated
+ * attempt cannot refund twice. Retryable failures back off exponentially, the outcome is written to
+ * the refund row and to Booking.refundStatus, one transaction per batch.
+ *
+ * A refund whose booking is not cancelled (the cancelling update did not match) is dropped unsent.
+ * Cancelling a PaymentIntent that was paid in the meantime turns into a refund.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RefundWorker {
+
+    private static final long MAX_BACKOFF_SECONDS = 3600;
+
+    private final PaymentRefundRepository refundRepository;
+    private final BookingRepository bookingRepository;
+    private final PaymentService paymentService;
+    private final LeaderLease leaderLease;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${payments.refunds.batch-size:100}")
+    private int batchSize;
+    @Value("${payments.refunds.concurrency:4}")
+    private int concurrency;
+    @Value("${payments.refunds.max-per-second:20}")
+    private double maxPerSecond;
+    @Value("${payments.refunds.max-attempts:10}")
+    private int maxAttempts;
+    @Value("${payments.refunds.poll-ms:5000}")
+    private long pollMs;
+
+    private ExecutorService executor;
+    private volatile Thread worker;
+    private long nextCallNanos;
+
+    // Outcome of one attempt, status null means try again later
+    private record Outcome(PaymentRefund refund, RefundStatus status, String reference, String error) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "refund-calls-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        worker = new Thread(this::run, "refunds");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (worker != null) {
+            worker.interrupt();
+            executor.shutdownNow();
+        }
+    }
+
+    // Private Helper Methods
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                OptionalLong token = leaderLease.currentToken();
+                int processed = token.isPresent() ? processBatch(token.getAsLong()) : 0;
+                if (processed < batchSize) {
+                    Thread.sleep(pollMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (LeadershipLostException e) {
+                log.warn("Refund batch stopped: {}", e.getMessage());
+            } catch (RuntimeException e) {
+                // the batch is retried, Stripe sees the same idempotency keys
+                log.error("Refund batch failed", e);
+                sleepQuietly();
+            }
+        }
+    }
+
+    private int processBatch(long token) throws InterruptedException {
+        List<PaymentRefund> due = refundRepository.findDue(LocalDateTime.now(), Limit.of(batchSize));
+        if (due.isEmpty()) {
+            return 0;
+        }
+
+        Set<Long> cancelled = new HashSet<>(bookingRepository.findIdsByIdInAndStatus(
+                due.stream().map(PaymentRefund::getBookingId).toList(), BookingStatus.CANCELLED));
+        List<PaymentRefund> skipped = new ArrayList<>();
+        List<Future<Outcome>> calls = new ArrayList<>();
+        for (PaymentRefund refund : due) {
+            if (!cancelled.contains(refund.getBookingId())) {
+                skipped.add(refund);
+                continue;
+            }
+            awaitRateLimit();
+            calls.add(executor.submit(() -> attempt(refund)));
+        }
+
+        List<Outcome> outcomes = new ArrayList<>(calls.size());
+        for (Future<Outcome> call : calls) {
+            try {
+                outcomes.add(call.get());
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            leaderLease.fence(token);
+            apply(outcomes, skipped);
+        });
+        return due.size();
+    }
+
+    private Outcome attempt(PaymentRefund refund) {
+        Long bookingId = refund.getBookingId();
+        try {
+            if (refund.getAction() == RefundAction.CANCEL_INTENT) {
+                try {
+                    paymentService.cancelPaymentIntent(bookingId, refund.getPaymentIntentId());
+                    return new Outcome(refund, RefundStatus.INTENT_CANCELLED, refund.getPaymentIntentId(), null);
+                } catch (PaymentGatewayException e) {
+                    if (!"payment_intent_unexpected_state".equals(stripeCode(e))) {
+                        throw e;
+                    }
+                    // paid after all, give the money back instead
+                }
+            }
+            String refundId = paymentService.refundPayment(bookingId, refund.getPaymentIntentId());
+            return new Outcome(refund, RefundStatus.REFUNDED, refundId, null);
+        } catch (PaymentGatewayException e) {
+            if ("charge_already_refunded".equals(stripeCode(e))) {
+                return new Outcome(refund, RefundStatus.REFUNDED, null, null);
+            }
+            if (e.isRetryable() && refund.getAttempts() + 1 < maxAttempts) {
+                return new Outcome(refund, null, null, e.getMessage());
+            }
+            log.warn("Refund of booking {} failed: {}", bookingId, e.getMessage());
+            return new Outcome(refund, RefundStatus.FAILED, null, e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("Unexpected error refunding booking {}", bookingId, e);
+            return new Outcome(refund, refund.getAttempts() + 1 < maxAttempts ? null : RefundStatus.FAILED, null, e.getMessage());
+        }
+    }
+
+    private void apply(List<Outcome> outcomes, List<PaymentRefund> skipped) {
+        LocalDateTime now = LocalDateTime.now();
+        Map<RefundStatus, List<Long>> bookingsByStatus = new EnumMap<>(RefundStatus.class);
+        for (Outcome outcome : outcomes) {
+            PaymentRefund refund = outcome.refund();
+            if (outcome.status() == null) {
+                refundRepository.markRetry(refund.getId(), truncate(outcome.error()), now.plusSeconds(backoffSeconds(refund.getAttempts())));
+                continue;
+            }
+            refundRepository.markCompleted(refund.getId(), outcome.status(), outcome.reference(), truncate(outcome.error()), now);
+            bookingsByStatus.computeIfAbsent(outcome.status(), status -> new ArrayList<>()).add(refund.getBookingId());
+        }
+        bookingsByStatus.forEach((status, bookingIds) -> bookingRepository.updateRefundStatus(bookingIds, status));
+
+        if (!skipped.isEmpty()) {
+            // booking was not cancelled after all, nothing to give back
+            refundRepository.deleteAllByIdInBatch(skipped.stream().map(PaymentRefund::getId).toList());
+            bookingRepository.updateRefundStatus(skipped.stream().map(PaymentRefund::getBookingId).toList(), null);
+        }
+        int completed = bookingsByStatus.values().stream().mapToInt(List::size).sum();
+        log.info("Refund batch: {} completed, {} to retry, {} skipped", completed, outcomes.size() - completed, skipped.size());
+    }
+
+    // Spaces the call starts evenly, at most maxPerSecond
+    private void awaitRateLimit() throws InterruptedException {
+        long interval = (long) (1_000_000_000L / maxPerSecond);
+        long now = System.nanoTime();
+        long start = Math.max(now, nextCallNanos);
+        nextCallNanos = start + interval;
+        long waitNanos = start - now;
+        if (waitNanos > 0) {
+            Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+        }
+    }
+
+    // 30 s, 1 min, 2 min ... capped at an hour, with some jitter
+    private static long backoffSeconds(int attempts) {
+        long base = Math.min(MAX_BACKOFF_SECONDS, 30L << Math.min(attempts, 12));
+        return base + ThreadLocalRandom.current().nextLong(base / 4 + 1);
+    }
+
+    private static String stripeCode(PaymentGatewayException e) {
+        return e.getCause() instanceof StripeException stripeException ? stripeException.getCode() : null;
+    }
+
+    private static String truncate(String error) {
+        return error == null || error.length() <= 500 ? error : error.substring(0, 500);
+    }
+
+    private void sleepQuietly() {
+        try {
+            Thread.sleep(pollMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.demo.service.payment;
+
+import com.example.demo.exeptions.PaymentGatewayException;
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.ApiException;
+import com.stripe.exception.RateLimitException;
+import com.stripe.exception.StripeException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs every outbound Stripe call on a small dedicated pool (bulkhead) with a per-call timeout,
+ * behind a circuit breaker.
+ *
+ * At most threads + queue-capacity calls run or wait at once, further callers are refused right away,
+ * so a slow Stripe can block no more than that many request or worker threads. The breaker counts
+ * timeouts, connection problems, rate limits and Stripe side errors, once too many calls fail it
+ * refuses calls until a half-open probe succeeds again. Refused calls throw a retryable
+ * PaymentGatewayException, the payment outbox retries them later.
+ *
+ * Metrics:
+ * - stripe.calls{operation, outcome}: call latency with p50/p95/p99
+ * - stripe.calls.refused{reason}: calls refused by the open breaker or the full bulkhead
+ * - stripe.circuit.state: 0 closed, 1 half-open, 2 open
+ */
+@Component
+@Slf4j
+public class StripeCallGuard {
+
+    @FunctionalInterface
+    public interface StripeCall<T> {
+        T call() throws StripeException;
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final CircuitBreaker breaker;
+    private final MeterRegistry meterRegistry;
+    private final long callTimeoutMs;
+    private final Counter refusedByBreaker;
+    private final Counter refusedByBulkhead;
+
+    public StripeCallGuard(MeterRegistry meterRegistry,
+                           @Value("${stripe.bulkhead.threads:16}") int threads,
+                           @Value("${stripe.bulkhead.queue-capacity:32}") int queueCapacity,
+                           @Value("${stripe.bulkhead.call-timeout-ms:8000}") long callTimeoutMs,
+                           @Value("${stripe.circuit.window-size:50}") int windowSize,
+                           @Value("${stripe.circuit.minimum-calls:20}") int minimumCalls,
+                           @Value("${stripe.circuit.failure-rate-threshold:0.5}") double failureRateThreshold,
+                           @Value("${stripe.circuit.open-ms:30000}") long openMs,
+                           @Value("${stripe.circuit.half-open-probes:3}") int halfOpenProbes) {
+        this.meterRegistry = meterRegistry;
+        this.callTimeoutMs = callTimeoutMs;
+        this.breaker = new CircuitBreaker("stripe", windowSize, minimumCalls, failureRateThreshold,
+                TimeUnit.MILLISECONDS.toNanos(openMs), halfOpenProbes);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "stripe-calls-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+
+        this.refusedByBreaker = Counter.builder("stripe.calls.refused").tag("reason", "circuit-open").register(meterRegistry);
+        this.refusedByBulkhead = Counter.builder("stripe.calls.refused").tag("reason", "bulkhead-full").register(meterRegistry);
+        Gauge.builder("stripe.circuit.state", breaker, b -> b.getState().ordinal()).register(meterRegistry);
+        Gauge.builder("stripe.circuit.failure.rate", breaker, CircuitBreaker::getFailureRate).register(meterRegistry);
+        Gauge.builder("stripe.bulkhead.active", executor, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return breaker.getState();
+    }
+
+    /**
+     * Runs the Stripe call on the bulkhead and waits at most the call timeout for it.
+     * @throws PaymentGatewayException when the call failed, timed out or was refused
+     */
+    public <T> T call(String operation, StripeCall<T> call) {
+        if (!breaker.tryAcquire()) {
+            refusedByBreaker.increment();
+            throw new PaymentGatewayException("Stripe calls are suspended after repeated failures", true, null);
+        }
+
+        long started = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(call::call);
+        } catch (RejectedExecutionException e) {
+            // not Stripe's fault, does not count for the breaker
+            breaker.release();
+            refusedByBulkhead.increment();
+            throw new PaymentGatewayException("Too many Stripe calls in flight", true, e);
+        }
+
+        try {
+            T result = future.get(callTimeoutMs, TimeUnit.MILLISECONDS);
+            breaker.onSuccess();
+            record(operation, "success", started);
+            return result;
+        } catch (TimeoutException e) {
+            // the pool thread finishes once the SDK's own read timeout fires
+            future.cancel(true);
+            breaker.onFailure();
+            record(operation, "timeout", started);
+            throw new PaymentGatewayException("Stripe call " + operation + " timed out after " + callTimeoutMs + " ms", true, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            breaker.release();
+            throw new PaymentGatewayException("Interrupted while waiting for Stripe", true, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            // network problems, rate limits and Stripe side errors can go away, bad requests do not
+            boolean retryable = cause instanceof ApiConnectionException || cause instanceof RateLimitException
+                    || cause instanceof ApiException;
+            if (retryable || !(cause instanceof StripeException)) {
+                breaker.onFailure();
+            } else {
+                breaker.onSuccess(); // Stripe answered, the request itself was wrong
+            }
+            record(operation, "error", started);
+            throw new PaymentGatewayException("Stripe call " + operation + " failed: " + cause.getMessage(), retryable, cause);
+        }
+    }
+
+    // Private Helper Methods
+
+    private void record(String operation, String outcome, long startedNanos) {
+        Timer.builder("stripe.calls")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry)
+                .record(System.nanoTime() - startedNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.demo.service.payment;
+
+import com.example.demo.repository.StripeWebhookEventRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Durably records verified Stripe webhook events, so the webhook can be acknowledged before it is applied.
+ *
+ * Events arriving at the same time are written together (group commit): one writer thread takes
+ * whatever is queued, inserts it in one transaction and completes the callers' futures after commit.
+ * Under load many events share one commit instead of each request paying for its own.
+ * Redelivered events are dropped by the unique Stripe event id. StripeWebhookProcessor applies them.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StripeWebhookInbox {
+
+    private final StripeWebhookEventRepository eventRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${payments.webhooks.queue-capacity:10000}")
+    private int queueCapacity;
+    @Value("${payments.webhooks.insert-batch-size:500}")
+    private int insertBatchSize;
+
+    private BlockingQueue<Pending> queue;
+    private volatile Thread writer;
+
+    public record ReceivedEvent(String eventId, String type, Long bookingId, String paymentIntentId) {
+    }
+
+    private record Pending(ReceivedEvent event, LocalDateTime receivedAt, CompletableFuture<Void> recorded) {
+    }
+
+    @PostConstruct
+    void start() {
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        writer = new Thread(this::run, "stripe-webhook-inbox");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        writer.interrupt();
+    }
+
+    /**
+     * Queues the event for the next group commit.
+     * @return completes once the event is committed, fails when it could not be stored
+     */
+    public CompletableFuture<Void> record(ReceivedEvent event) {
+        CompletableFuture<Void> recorded = new CompletableFuture<>();
+        if (!queue.offer(new Pending(event, LocalDateTime.now(), recorded))) {
+            recorded.completeExceptionally(new RejectedExecutionException("Webhook inbox is full"));
+        }
+        return recorded;
+    }
+
+    // Private Helper Methods
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, insertBatchSize - 1);
+                transactionTemplate.executeWithoutResult(status -> {
+                    for (Pending pending : batch) {
+                        ReceivedEvent event = pending.event();
+                        eventRepository.insertIfAbsent(event.eventId(), event.type(), event.bookingId(),
+                                event.paymentIntentId(), pending.receivedAt());
+                    }
+                });
+                batch.forEach(pending -> pending.recorded().complete(null));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                // Stripe gets an error and redelivers these events later
+                log.error("Failed to record {} Stripe webhook event(s)", batch.size(), e);
+                batch.forEach(pending -> pending.recorded().completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+        queue.forEach(pending -> pending.recorded().completeExceptionally(new RejectedExecutionException("Shutting down")));
+    }
+}
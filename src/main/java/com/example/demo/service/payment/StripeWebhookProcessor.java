@@ -0,0 +1,122 @@
+package com.example.demo.service.payment;
+
+import com.example.demo.exeptions.LeadershipLostException;
+import com.example.demo.model.StripeWebhookEvent;
+import com.example.demo.repository.StripeWebhookEventRepository;
+import com.example.demo.service.cluster.LeaderLease;
+import com.example.demo.service.concurrency.ConflictRetry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.Set;
+
+/**
+ * Applies recorded Stripe webhook events to their bookings in batches.
+ *
+ * Every batch is one transaction: all paid bookings of the batch are confirmed with one UPDATE,
+ * failed payments are handled together, and the events are marked processed in the same transaction,
+ * so a batch is applied completely or not at all. Applying an event twice does nothing, the UPDATE
+ * only touches bookings that are still PENDING.
+ *
+ * Only the node holding the LeaderLease drains the events, every batch checks the fencing token.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StripeWebhookProcessor {
+
+    public static final String PAYMENT_SUCCEEDED = "payment_intent.succeeded";
+    public static final String PAYMENT_FAILED = "payment_intent.payment_failed";
+
+    private final StripeWebhookEventRepository eventRepository;
+    private final PaymentService paymentService;
+    private final LeaderLease leaderLease;
+    private final TransactionTemplate transactionTemplate;
+    private final ConflictRetry conflictRetry;
+
+    @Value("${payments.webhooks.batch-size:500}")
+    private int batchSize;
+    // Stripe redelivers an event for up to 3 days
+    @Value("${payments.webhooks.retention-days:7}")
+    private long retentionDays;
+
+    @Scheduled(fixedDelayString = "${payments.webhooks.poll-ms:200}")
+    public void applyRecordedEvents() {
+        OptionalLong token = leaderLease.currentToken();
+        if (token.isEmpty()) {
+            return;
+        }
+        try {
+            Integer applied;
+            do {
+                // a confirmation racing a cancellation or a transition is retried right away
+                applied = conflictRetry.execute("StripeWebhookProcessor.applyBatch",
+                        () -> transactionTemplate.execute(status -> applyBatch(token.getAsLong())));
+            } while (applied != null && applied == batchSize);
+        } catch (LeadershipLostException e) {
+            log.warn("Stripe webhook processing stopped: {}", e.getMessage());
+        } catch (RuntimeException e) {
+            // the batch rolled back and is retried on the next run
+            log.error("Failed to apply Stripe webhook events", e);
+        }
+    }
+
+    @Scheduled(fixedRate = 3_600_000) // hourly
+    public void purgeProcessedEvents() {
+        if (!leaderLease.isLeader()) {
+            return;
+        }
+        Integer purged = transactionTemplate.execute(status ->
+                eventRepository.deleteProcessedBefore(LocalDateTime.now().minusDays(retentionDays)));
+        if (purged != null && purged > 0) {
+            log.info("Purged {} processed Stripe webhook event(s)", purged);
+        }
+    }
+
+    // Private Helper Methods
+
+    private int applyBatch(long token) {
+        leaderLease.fence(token);
+        List<StripeWebhookEvent> events = eventRepository.findUnprocessed(Limit.of(batchSize));
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        Set<Long> paid = new HashSet<>();
+        Set<Long> failed = new HashSet<>();
+        List<Long> eventIds = new ArrayList<>(events.size());
+        for (StripeWebhookEvent event : events) {
+            eventIds.add(event.getId());
+            if (event.getBookingId() == null) {
+                continue;
+            }
+            switch (event.getType()) {
+                case PAYMENT_SUCCEEDED -> paid.add(event.getBookingId());
+                case PAYMENT_FAILED -> failed.add(event.getBookingId());
+                default -> log.debug("Ignoring Stripe event {} of type {}", event.getEventId(), event.getType());
+            }
+        }
+        // a failed attempt followed by a successful one is a paid booking
+        failed.removeAll(paid);
+
+        LocalDateTime now = LocalDateTime.now();
+        if (!paid.isEmpty()) {
+            paymentService.confirmPaidBookings(paid, now);
+        }
+        if (!failed.isEmpty()) {
+            paymentService.recordFailedPayments(failed);
+        }
+        eventRepository.markProcessed(eventIds, now);
+        return events.size();
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.demo.service.payout;
+
+import java.util.List;
+
+/**
+ * Sends money to spot owners. Implementations take a whole settlement batch in one call,
+ * so a settlement run makes one remote call per batch and not one per payout.
+ *
+ * The idempotency key is the same every time a payout is retried, a provider must not pay it twice.
+ */
+public interface PayoutProvider {
+
+    record PayoutInstruction(long payoutId, long ownerId, long amountMinor, String currency, String idempotencyKey) {
+    }
+
+    /**
+     * @param paid false when the provider rejected the payout, error then says why
+     */
+    record PayoutResult(long payoutId, boolean paid, String reference, String error) {
+    }
+
+    /**
+     * @return one result per instruction, a missing result counts as not paid
+     */
+    List<PayoutResult> payOut(List<PayoutInstruction> instructions);
+}
@@ -0,0 +1,136 @@
+package com.example.demo.service.payout;
+
+import com.example.demo.enums.PayoutStatus;
+import com.example.demo.exeptions.LeadershipLostException;
+import com.example.demo.model.OwnerPayout;
+import com.example.demo.repository.OwnerLedgerEntryRepository;
+import com.example.demo.repository.OwnerPayoutRepository;
+import com.example.demo.service.cluster.LeaderLease;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/*
+    Pays spot owners what they earned with completed bookings.
+
+    1. Settle: all unsettled ledger entries up to the current highest entry id are summed per owner
+       into one PENDING payout (INSERT ... SELECT ... GROUP BY) and linked to it (UPDATE ... JOIN),
+       both in one transaction. Entries written meanwhile have higher ids and wait for the next run.
+    2. Pay: pending payouts are handed to the PayoutProvider in batches, one call per batch,
+       and the results are written back. A payout the provider rejects stays pending for the next
+       run until payouts.max-attempts, the provider sees the same idempotency key every time.
+
+    Only the node holding the LeaderLease runs the job, every write checks the fencing token.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PayoutSettlementJob {
+
+    private final OwnerLedgerEntryRepository ledgerRepository;
+    private final OwnerPayoutRepository payoutRepository;
+    private final PayoutProvider payoutProvider;
+    private final LeaderLease leaderLease;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${payouts.batch-size:500}")
+    private int batchSize;
+    @Value("${payouts.max-attempts:5}")
+    private int maxAttempts;
+
+    @Scheduled(cron = "${payouts.settlement.cron:0 0 3 * * *}")
+    public void settleAndPay() {
+        OptionalLong token = leaderLease.currentToken();
+        if (token.isEmpty()) {
+            return; // another node is the leader
+        }
+        try {
+            settle(token.getAsLong());
+            payPending(token.getAsLong());
+        } catch (LeadershipLostException e) {
+            log.warn("Payout settlement stopped: {}", e.getMessage());
+        }
+    }
+
+    // Private Helper Methods
+
+    private void settle(long token) {
+        LocalDateTime now = LocalDateTime.now();
+        transactionTemplate.executeWithoutResult(status -> {
+            leaderLease.fence(token);
+            Long maxEntryId = ledgerRepository.findMaxUnsettledId();
+            if (maxEntryId == null) {
+                return;
+            }
+            int created = payoutRepository.createPayoutsUpTo(maxEntryId, now);
+            int linked = ledgerRepository.linkToPayouts(maxEntryId);
+            log.info("Settled {} ledger entries into {} payout(s)", linked, created);
+        });
+    }
+
+    private void payPending(long token) {
+        int paid = 0;
+        int failed = 0;
+        long afterId = 0;
+        List<OwnerPayout> batch;
+        do {
+            batch = payoutRepository.findByStatusAfterId(PayoutStatus.PENDING, afterId, Limit.of(batchSize));
+            if (batch.isEmpty()) {
+                break;
+            }
+            List<PayoutProvider.PayoutInstruction> instructions = batch.stream()
+                    .map(payout -> new PayoutProvider.PayoutInstruction(payout.getId(), payout.getOwnerId(),
+                            payout.getAmountMinor(), payout.getCurrency(), "payout-" + payout.getId()))
+                    .toList();
+
+            // no transaction or connection held during the remote call
+            Map<Long, PayoutProvider.PayoutResult> results;
+            try {
+                results = payoutProvider.payOut(instructions).stream()
+                        .collect(Collectors.toMap(PayoutProvider.PayoutResult::payoutId, Function.identity(), (a, b) -> a));
+            } catch (RuntimeException e) {
+                log.error("Payout provider failed for {} payout(s), retrying next run", instructions.size(), e);
+                results = Map.of();
+            }
+
+            Map<Long, PayoutProvider.PayoutResult> batchResults = results;
+            LocalDateTime now = LocalDateTime.now();
+            int[] counts = transactionTemplate.execute(status -> {
+                leaderLease.fence(token);
+                int batchPaid = 0;
+                for (PayoutProvider.PayoutInstruction instruction : instructions) {
+                    PayoutProvider.PayoutResult result = batchResults.get(instruction.payoutId());
+                    if (result != null && result.paid()) {
+                        batchPaid += payoutRepository.markPaid(instruction.payoutId(), result.reference(), now);
+                    } else {
+                        String error = result == null ? "No result from payout provider" : result.error();
+                        payoutRepository.markAttemptFailed(instruction.payoutId(), truncate(error), maxAttempts);
+                    }
+                }
+                return new int[]{batchPaid, instructions.size() - batchPaid};
+            });
+            paid += counts[0];
+            failed += counts[1];
+            afterId = batch.get(batch.size() - 1).getId();
+        } while (batch.size() == batchSize);
+
+        if (paid > 0 || failed > 0) {
+            log.info("Payout run: {} paid, {} not paid", paid, failed);
+        }
+    }
+
+    private static String truncate(String error) {
+        return error == null || error.length() <= 500 ? error : error.substring(0, 500);
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.demo.service.payout;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Payout provider for local runs and tests, pays everything without moving money.
+ * Active unless payouts.provider names another implementation.
+ */
+@Component
+@ConditionalOnProperty(name = "payouts.provider", havingValue = "stub", matchIfMissing = true)
+@Slf4j
+public class StubPayoutProvider implements PayoutProvider {
+
+    @Override
+    public List<PayoutResult> payOut(List<PayoutInstruction> instructions) {
+        long total = instructions.stream().mapToLong(PayoutInstruction::amountMinor).sum();
+        log.info("Stub payout of {} payout(s), {} minor units in total", instructions.size(), total);
+        return instructions.stream()
+                .map(instruction -> new PayoutResult(instruction.payoutId(), true, "stub_" + instruction.idempotencyKey(), null))
+                .toList();
+    }
+}
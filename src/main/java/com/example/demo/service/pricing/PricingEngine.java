@@ -0,0 +1,144 @@
+package com.example.demo.service.pricing;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Prices a parking time window in integer minor units (cents). No floating point, no allocation,
+ * so it can price hundreds of spots per request.
+ *
+ * Tariff rules (pricing.* properties):
+ * - The duration is rounded to whole billing increments (UP, DOWN or NEAREST), at least minimum-minutes.
+ * - The window is split into 24 hour blocks from its start. Every full block costs pricePerDay, the
+ *   remaining partial block costs pricePerHour / 60 per minute: days x daily + remaining hours x hourly.
+ * - Minutes on Saturdays and Sundays cost weekend-rate-percent of the weekday rate, in both kinds of block.
+ * - With day-cap the partial block costs at most pricePerDay (weighted with the weekend rate like the
+ *   minutes). A spot without a day price has no cap.
+ * The result is rounded half up to a whole minor unit once per block.
+ *
+ * Times are wall clock times, a weekend day runs from Saturday 00:00 to Monday 00:00.
+ */
+@Component
+public class PricingEngine {
+
+    public enum Rounding {
+        UP,
+        DOWN,
+        NEAREST
+    }
+
+    private static final long MINUTES_PER_DAY = 24 * 60;
+    // 1970-01-01 was a Thursday, Monday = 0
+    private static final int EPOCH_DAY_OF_WEEK = 3;
+
+    private final long incrementMinutes;
+    private final Rounding rounding;
+    private final long minimumMinutes;
+    private final boolean dayCap;
+    private final long weekendRatePercent;
+    private final String currency;
+
+    public PricingEngine(@Value("${pricing.billing-increment-minutes:60}") long incrementMinutes,
+                         @Value("${pricing.partial-increment-rounding:DOWN}") Rounding rounding,
+                         @Value("${pricing.minimum-minutes:60}") long minimumMinutes,
+                         @Value("${pricing.day-cap:false}") boolean dayCap,
+                         @Value("${pricing.weekend-rate-percent:100}") long weekendRatePercent,
+                         @Value("${pricing.currency:eur}") String currency) {
+        if (incrementMinutes <= 0 || minimumMinutes < 0 || weekendRatePercent < 0) {
+            throw new IllegalArgumentException("Invalid pricing configuration");
+        }
+        this.incrementMinutes = incrementMinutes;
+        this.rounding = rounding;
+        this.minimumMinutes = minimumMinutes;
+        this.dayCap = dayCap;
+        this.weekendRatePercent = weekendRatePercent;
+        this.currency = currency;
+    }
+
+    // currency of all prices, spots and bookings do not store one
+    public String getCurrency() {
+        return currency;
+    }
+
+    /**
+     * Converts a decimal amount as stored on the spots (e.g. 2.5) to minor units (250).
+     */
+    public static long toMinor(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    public static double toMajor(long amountMinor) {
+        return amountMinor / 100.0;
+    }
+
+    /**
+     * @return the price of parking from start to end, in minor units
+     */
+    public long quote(long pricePerHourMinor, long pricePerDayMinor, LocalDateTime start, LocalDateTime end) {
+        long startMinute = Math.floorDiv(start.toEpochSecond(ZoneOffset.UTC), 60);
+        long endMinute = Math.floorDiv(end.toEpochSecond(ZoneOffset.UTC), 60);
+        return quote(pricePerHourMinor, pricePerDayMinor, startMinute, endMinute);
+    }
+
+    /**
+     * Same as above with the window given as wall clock minutes since 1970-01-01T00:00.
+     */
+    public long quote(long pricePerHourMinor, long pricePerDayMinor, long startMinute, long endMinute) {
+        long billedMinutes = Math.max(billableMinutes(endMinute - startMinute), minimumMinutes);
+        long total = 0;
+        for (long blockStart = startMinute, billedEnd = startMinute + billedMinutes; blockStart < billedEnd; blockStart += MINUTES_PER_DAY) {
+            long blockEnd = Math.min(blockStart + MINUTES_PER_DAY, billedEnd);
+            long minutes = blockEnd - blockStart;
+            long weekendMinutes = weekendMinutes(blockStart, blockEnd);
+            // minutes weighted with the rate in percent
+            long weightedMinutes = (minutes - weekendMinutes) * 100 + weekendMinutes * weekendRatePercent;
+
+            if (minutes == MINUTES_PER_DAY) {
+                total += divideHalfUp(pricePerDayMinor * weightedMinutes, MINUTES_PER_DAY * 100);
+                continue;
+            }
+            long blockPrice = divideHalfUp(pricePerHourMinor * weightedMinutes, 60 * 100);
+            if (dayCap && pricePerDayMinor > 0) {
+                long cap = divideHalfUp(pricePerDayMinor * weightedMinutes, minutes * 100);
+                blockPrice = Math.min(blockPrice, cap);
+            }
+            total += blockPrice;
+        }
+        return total;
+    }
+
+    // Private Helper Methods
+
+    private long billableMinutes(long minutes) {
+        long whole = minutes / incrementMinutes;
+        long rest = minutes % incrementMinutes;
+        boolean roundUp = switch (rounding) {
+            case UP -> rest > 0;
+            case DOWN -> false;
+            case NEAREST -> rest * 2 >= incrementMinutes;
+        };
+        return (roundUp ? whole + 1 : whole) * incrementMinutes;
+    }
+
+    // Minutes of [from, to) that fall on a Saturday or Sunday, the range spans at most two days
+    private static long weekendMinutes(long from, long to) {
+        long weekend = 0;
+        long minute = from;
+        while (minute < to) {
+            long day = Math.floorDiv(minute, MINUTES_PER_DAY);
+            long dayEnd = Math.min((day + 1) * MINUTES_PER_DAY, to);
+            if (Math.floorMod(day + EPOCH_DAY_OF_WEEK, 7) >= 5) {
+                weekend += dayEnd - minute;
+            }
+            minute = dayEnd;
+        }
+        return weekend;
+    }
+
+    private static long divideHalfUp(long dividend, long divisor) {
+        return (dividend + divisor / 2) / divisor;
+    }
+}
@@ -3,6 +3,8 @@ package com.example.demo.service.user;
 import com.example.demo.responseDtos.UserResponseDto;
 import com.example.demo.requests.user.CreateUserRequest;
 
+import java.util.Collection;
+
 public interface IUserService {
 
     //Gets a user by provided id from the database
@@ -20,4 +22,12 @@ public interface IUserService {
     // Throws ResourceNotFoundException if the user is not found
     void deleteUserById(Long userId);
 
+    // Sets a new password, the tokens issued so far stop working
+    // Throws ResourceNotFoundException if the user is not found
+    void changePassword(Long userId, String newPassword);
+
+    // Replaces the roles of the user (names like ROLE_USER), the tokens issued so far stop working
+    // Throws ResourceNotFoundException if the user or one of the roles is not found
+    void changeRoles(Long userId, Collection<String> roleNames);
+
 }
@@ -0,0 +1,16 @@
+package com.example.demo.service.user;
+
+import com.example.demo.model.Role;
+import com.example.demo.model.User;
+
+import java.util.List;
+
+/**
+ * The few user fields most requests need: who the user is and which roles they have.
+ */
+public record UserIdentity(Long id, String email, List<String> roles) {
+
+    public static UserIdentity of(User user) {
+        return new UserIdentity(user.getId(), user.getEmail(), user.getRoles().stream().map(Role::getName).toList());
+    }
+}
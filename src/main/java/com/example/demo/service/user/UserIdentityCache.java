@@ -0,0 +1,99 @@
+package com.example.demo.service.user;
+
+import com.example.demo.cache.TtlCache;
+import com.example.demo.exeptions.ResourceNotFoundException;
+import com.example.demo.model.User;
+import com.example.demo.repository.UserRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded cache of user identities (id, email, role names), looked up by email or by id.
+ * Services resolve the current user here instead of querying the users table on every call.
+ *
+ * Entries live for users.identity-cache.ttl-seconds and are invalidated when a user is created or deleted
+ * on this node. Other nodes see a deletion once the entry expires, their TokenRevocations reject the
+ * deleted user's requests sooner than that.
+ *
+ * Hit and miss counts are published as users.identity.cache.requests{key, result}.
+ */
+@Component
+public class UserIdentityCache {
+
+    private final UserRepository userRepository;
+    private final TtlCache<String, UserIdentity> byEmail;
+    private final TtlCache<Long, UserIdentity> byId;
+
+    public UserIdentityCache(UserRepository userRepository,
+                             MeterRegistry meterRegistry,
+                             @Value("${users.identity-cache.max-size:10000}") int maxSize,
+                             @Value("${users.identity-cache.ttl-seconds:60}") long ttlSeconds) {
+        this.userRepository = userRepository;
+        this.byEmail = new TtlCache<>(maxSize, ttlSeconds, TimeUnit.SECONDS);
+        this.byId = new TtlCache<>(maxSize, ttlSeconds, TimeUnit.SECONDS);
+        registerMetrics(meterRegistry, "email", byEmail);
+        registerMetrics(meterRegistry, "id", byId);
+    }
+
+    public Optional<UserIdentity> findByEmail(String email) {
+        return Optional.ofNullable(byEmail.computeIfAbsent(email, key -> load(userRepository.findByEmail(key))));
+    }
+
+    public Optional<UserIdentity> findById(Long id) {
+        return Optional.ofNullable(byId.computeIfAbsent(id, key -> load(userRepository.findById(key).orElse(null))));
+    }
+
+    /**
+     * @throws ResourceNotFoundException if there is no user with the email
+     */
+    public UserIdentity requireByEmail(String email) {
+        return findByEmail(email).orElseThrow(() -> new ResourceNotFoundException("User not found"));
+    }
+
+    // Caches a user that was loaded anyway, e.g. on login
+    public void put(User user) {
+        UserIdentity identity = UserIdentity.of(user);
+        byEmail.put(identity.email(), identity);
+        byId.put(identity.id(), identity);
+    }
+
+    public void invalidate(Long id, String email) {
+        if (id != null) {
+            byId.invalidate(id);
+        }
+        if (email != null) {
+            byEmail.invalidate(email);
+        }
+    }
+
+    // Private Helper Methods
+
+    private UserIdentity load(User user) {
+        if (user == null) {
+            return null;
+        }
+        UserIdentity identity = UserIdentity.of(user);
+        // fill the other key too, the next lookup by it is free
+        byEmail.put(identity.email(), identity);
+        byId.put(identity.id(), identity);
+        return identity;
+    }
+
+    private static void registerMetrics(MeterRegistry registry, String key, TtlCache<?, ?> cache) {
+        FunctionCounter.builder("users.identity.cache.requests", cache, TtlCache::hitCount)
+                .tag("key", key).tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("users.identity.cache.requests", cache, TtlCache::missCount)
+                .tag("key", key).tag("result", "miss")
+                .register(registry);
+        Gauge.builder("users.identity.cache.size", cache, TtlCache::size)
+                .tag("key", key)
+                .register(registry);
+    }
+}
@@ -3,31 +3,42 @@ package com.example.demo.service.user;
 import com.example.demo.responseDtos.UserResponseDto;
 import com.example.demo.exeptions.AlreadyExistsException;
 import com.example.demo.exeptions.ResourceNotFoundException;
+import com.example.demo.model.Role;
 import com.example.demo.model.User;
+import com.example.demo.repository.RoleRepository;
 import com.example.demo.repository.UserRepository;
 import com.example.demo.requests.user.CreateUserRequest;
+import com.example.demo.security.jwt.TokenRevocations;
 import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 public class UserService implements IUserService {
 
     private final UserRepository userRepository;
-    private final ModelMapper modelMapper;
+    private final RoleRepository roleRepository;
     private final PasswordEncoder passwordEncoder;
+    private final TokenRevocations tokenRevocations;
+    private final UserIdentityCache userIdentityCache;
 
     @Override
     public UserResponseDto getUserById(Long userId) {
 
-        User user = userRepository.findById(userId)
+        UserIdentity user = userIdentityCache.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found"));
 
-        return convertUserToDto(user);
+        UserResponseDto dto = new UserResponseDto();
+        dto.setId(user.id());
+        dto.setEmail(user.email());
+        return dto;
     }
 
     @Override
@@ -42,21 +53,59 @@ public class UserService implements IUserService {
                     return userRepository.save(user); // save user
 
                 }).orElseThrow(() -> new AlreadyExistsException(request.getEmail() + " already exists"));
+        userIdentityCache.invalidate(usr.getId(), usr.getEmail());
 
         return convertUserToDto(usr);
     }
 
     @Override
     public void deleteUserById(Long userId) {
-        userRepository.findById(userId).ifPresentOrElse(userRepository::delete,
+        userRepository.findById(userId).ifPresentOrElse(user -> {
+                    userRepository.delete(user);
+                    userIdentityCache.invalidate(user.getId(), user.getEmail());
+                    // tokens are not checked against the database, reject the ones already issued
+                    tokenRevocations.revokeTokensOf(userId);
+                },
                 () -> {
                     throw new ResourceNotFoundException("User not found");
                 });
     }
 
+    // Password and roles only change through the two methods below. Tokens carry the roles and are
+    // not checked against the database, so the ones already issued are revoked on every change.
+    @Override
+    @Transactional
+    public void changePassword(Long userId, String newPassword) {
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        user.setPassword(passwordEncoder.encode(newPassword));
+        userRepository.save(user);
+        tokenRevocations.revokeTokensOf(userId);
+    }
+
+    @Override
+    @Transactional
+    public void changeRoles(Long userId, Collection<String> roleNames) {
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        Set<Role> roles = new HashSet<>();
+        for (String roleName : roleNames) {
+            roles.add(roleRepository.findByName(roleName)
+                    .orElseThrow(() -> new ResourceNotFoundException("Role " + roleName + " not found")));
+        }
+        user.setRoles(roles);
+        userRepository.save(user);
+        // cached identities carry the roles as well
+        userIdentityCache.invalidate(user.getId(), user.getEmail());
+        tokenRevocations.revokeTokensOf(userId);
+    }
+
     //Helper method to convert user data into save dto data
     //to send to the frontend.
     private UserResponseDto convertUserToDto(User user) {
-        return modelMapper.map(user, UserResponseDto.class);
+        UserResponseDto dto = new UserResponseDto();
+        dto.setId(user.getId());
+        dto.setEmail(user.getEmail());
+        return dto;
     }
 }
@@ -3,14 +3,14 @@ package com.example.demo.service.vehicle;
 import com.example.demo.responseDtos.VehicleResponseDto;
 import com.example.demo.exeptions.ActionNotAllowedException;
 import com.example.demo.exeptions.ResourceNotFoundException;
-import com.example.demo.model.User;
 import com.example.demo.model.Vehicle;
 import com.example.demo.repository.UserRepository;
 import com.example.demo.repository.VehicleRepository;
 import com.example.demo.requests.vehicle.VehicleRequest;
 import com.example.demo.security.user.AppUserDetails;
+import com.example.demo.service.user.UserIdentity;
+import com.example.demo.service.user.UserIdentityCache;
 import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -21,16 +21,13 @@ public class VehicleService implements IVehicleService {
 
     private final VehicleRepository vehicleRepository;
     private final UserRepository userRepository;
-    private final ModelMapper modelMapper;
+    private final UserIdentityCache userIdentityCache;
 
     @Override
     public VehicleResponseDto createVehicle(VehicleRequest request, AppUserDetails userDetails) {
         Vehicle vehicle = createVehicle(request);
-        User currentUser = userRepository.findByEmail(userDetails.getUsername());
-        if (currentUser == null) {
-            throw new ResourceNotFoundException("User not found");
-        }
-        vehicle.setCreatedBy(currentUser);
+        UserIdentity currentUser = userIdentityCache.requireByEmail(userDetails.getUsername());
+        vehicle.setCreatedBy(userRepository.getReferenceById(currentUser.id()));
         vehicleRepository.save(vehicle);
         return convertToDto(vehicle);
     }
@@ -49,11 +46,8 @@ public class VehicleService implements IVehicleService {
     public VehicleResponseDto updateVehicle(VehicleRequest request, AppUserDetails userDetails, Long vehicleId) {
         Vehicle existingVehicle = vehicleRepository.findById(vehicleId)
                 .orElseThrow(() -> new ResourceNotFoundException("Vehicle not found"));
-        User currentUser = userRepository.findByEmail(userDetails.getUsername());
-        if (currentUser == null) {
-            throw new ResourceNotFoundException("User not found");
-        }
-        if(!existingVehicle.getCreatedBy().equals(currentUser)) {
+        UserIdentity currentUser = userIdentityCache.requireByEmail(userDetails.getUsername());
+        if(!existingVehicle.getCreatedBy().getId().equals(currentUser.id())) {
             throw new ActionNotAllowedException("This is not current users vehicle");
         }
         updateExistingVehicle(request,existingVehicle);
@@ -70,13 +64,10 @@ public class VehicleService implements IVehicleService {
 
     @Override
     public void deleteVehicle(AppUserDetails userDetails, Long vehicleId) {
-        User currentUser = userRepository.findByEmail(userDetails.getUsername());
-        if (currentUser == null) {
-            throw new ResourceNotFoundException("User not found");
-        }
+        UserIdentity currentUser = userIdentityCache.requireByEmail(userDetails.getUsername());
 
         Vehicle existingVehicle = vehicleRepository.findById(vehicleId).orElseThrow(() -> new ResourceNotFoundException("Vehicle not found"));
-        if(!existingVehicle.getCreatedBy().equals(currentUser)) {
+        if(!existingVehicle.getCreatedBy().getId().equals(currentUser.id())) {
             throw new ActionNotAllowedException("This is not current users vehicle");
         }
         vehicleRepository.delete(existingVehicle);
@@ -84,17 +75,20 @@ public class VehicleService implements IVehicleService {
 
     @Override
     public List<VehicleResponseDto> fetchVehiclesCreatedByActiveUser(AppUserDetails userDetails) {
-        User currentUser = userRepository.findByEmail(userDetails.getUsername());
-        if (currentUser == null) {
-            throw new ResourceNotFoundException("User not found");
-        }
-        List<Vehicle> vehicles = vehicleRepository.findByCreatedBy(currentUser);
+        UserIdentity currentUser = userIdentityCache.requireByEmail(userDetails.getUsername());
+        List<Vehicle> vehicles = vehicleRepository.findByCreatedBy(userRepository.getReferenceById(currentUser.id()));
         return getConvertedVehicles(vehicles);
     }
 
     /////// DTO CONVERTER METHODS /////////
     private VehicleResponseDto convertToDto(Vehicle vehicle){
-        return modelMapper.map(vehicle, VehicleResponseDto.class);
+        VehicleResponseDto dto = new VehicleResponseDto();
+        dto.setModel(vehicle.getModel());
+        dto.setColor(vehicle.getColor());
+        dto.setPlate(vehicle.getPlate());
+        dto.setLength_cm(vehicle.getLength_cm());
+        dto.setWidth_cm(vehicle.getWidth_cm());
+        return dto;
     }
 
     private List<VehicleResponseDto> getConvertedVehicles(List<Vehicle> vehicles){
@@ -0,0 +1,185 @@
+-- Baseline: the schema as hibernate ddl-auto=update created it.
+-- Databases created that way are baselined at this version (spring.flyway.baseline-on-migrate) and skip it.
+-- Column types are the ones Hibernate generates, so spring.jpa.hibernate.ddl-auto=validate accepts them.
+-- Text columns use a case-insensitive collation, case-insensitive lookups (city, email) rely on it.
+
+CREATE TABLE users (
+    id         BIGINT NOT NULL AUTO_INCREMENT,
+    password   VARCHAR(255),
+    phone      VARCHAR(255),
+    email      VARCHAR(255),
+    created_at DATETIME(6),
+    updated_at DATETIME(6),
+    deleted_at DATETIME(6),
+    PRIMARY KEY (id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci;
+
+CREATE TABLE role (
+    id   BIGINT NOT NULL AUTO_INCREMENT,
+    name VARCHAR(255),
+    PRIMARY KEY (id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci;
+
+CREATE TABLE user_roles (
+    user_id BIGINT NOT NULL,
+    role_id BIGINT NOT NULL,
+    CONSTRAINT fk_user_roles_user FOREIGN KEY (user_id) REFERENCES users (id),
+    CONSTRAINT fk_user_roles_role FOREIGN KEY (role_id) REFERENCES role (id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci;
+
+CREATE TABLE parking_spot (
+    id             BIGINT NOT NULL AUTO_INCREMENT,
+    title          VARCHAR(255),
+    description    VARCHAR(255),
+    address        VARCHAR(255),
+    city           VARCHAR(255),
+    postal_code    VARCHAR(255),
+    country        VARCHAR(255),
+    latitude       DECIMAL(38, 2),
+    longitude      DECIMAL(38, 2),
+    available_from DATETIME(6),
+    available_to   DATETIME(6),
+    price_per_hour FLOAT(53) NOT NULL,
+    price_per_day  FLOAT(53) NOT NULL,
+    is_active      BIT NOT NULL,
+    created_by     BIGINT NOT NULL,
+    created_at     DATETIME(6),
+    updated_at     DATETIME(6),
+    PRIMARY KEY (id),
+    CONSTRAINT fk_parking_spot_created_by FOREIGN KEY (created_by) REFERENCES users (id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci;
+
+CREATE TABLE spot_image (
+    id              BIGINT NOT NULL AUTO_INCREMENT,
+    file_name       VARCHAR(255),
+    file_type       VARCHAR(255),
+    image           LONGBLOB,
+    download_url    VARCHAR(255),
+    parking_spot_id BIGINT,
+    created_at      DATETIME(6),
+    updated_at      DATETIME(6),
+    PRIMARY KEY (id),
+    CONSTRAINT fk_spot_image_parking_spot FOREIGN KEY (parking_spot_id) REFERENCES parking_spot (id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci;
+
+CREATE TABLE vehicle (
+    id         BIGINT NOT NULL AUTO_INCREMENT,
+    model      VARCHAR(255),
+    color      VARCHAR(255),
+    plate      VARCHAR(255),
+    length_cm  INTEGER NOT NULL,
+    width_cm   INTEGER NOT NULL,
+    created_by BIGINT NOT NULL,
+    created_at DATETIME(6),
+    updated_at DATETIME(6),
+    PRIMARY KEY (id),
+    CONSTRAINT fk_vehicle_created_by FOREIGN KEY (created_by) REFERENCES users (id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci;
+
+CREATE TABLE booking (
+    id                       BIGINT NOT NULL AUTO_INCREMENT,
+    start_time               DATETIME(6),
+    end_time                 DATETIME(6),
+    total_amount             FLOAT(53) NOT NULL,
+    total_amount_minor       BIGINT,
+    status                   ENUM ('ACTIVE','CANCELLED','COMPLETED','CONFIRMED','PENDING'),
+    renter_id                BIGINT NOT NULL,
+    spot_id                  BIGINT NOT NULL,
+    created_at               DATETIME(6),
+    updated_at               DATETIME(6),
+    stripe_payment_intent_id VARCHAR(255),
+    refund_status            ENUM ('FAILED','INTENT_CANCELLED','PENDING','REFUNDED'),
+    PRIMARY KEY (id),
+    CONSTRAINT fk_booking_renter FOREIGN KEY (renter_id) REFERENCES users (id),
+    CONSTRAINT fk_booking_spot FOREIGN KEY (spot_id) REFERENCES parking_spot (id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci;
+
+CREATE TABLE scheduler_lease (
+    name          VARCHAR(255) NOT NULL,
+    owner         VARCHAR(255),
+    fencing_token BIGINT,
+    expires_at    DATETIME(6),
+    PRIMARY KEY (name)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci;
+
+CREATE TABLE token_revocation (
+    user_id    BIGINT NOT NULL,
+    revoked_at DATETIME(6),
+    PRIMARY KEY (user_id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci;
+
+CREATE TABLE payment_outbox (
+    id              BIGINT NOT NULL AUTO_INCREMENT,
+    booking_id      BIGINT NOT NULL,
+    currency        VARCHAR(255),
+    status          ENUM ('FAILED','PENDING','SENT'),
+    attempts        INTEGER NOT NULL,
+    next_attempt_at DATETIME(6),
+    claimed_until   DATETIME(6),
+    client_secret   VARCHAR(255),
+    last_error      VARCHAR(500),
+    created_at      DATETIME(6),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_payment_outbox_booking UNIQUE (booking_id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci;
+
+CREATE TABLE stripe_webhook_event (
+    id                BIGINT NOT NULL AUTO_INCREMENT,
+    event_id          VARCHAR(255) NOT NULL,
+    type              VARCHAR(255) NOT NULL,
+    booking_id        BIGINT,
+    payment_intent_id VARCHAR(255),
+    received_at       DATETIME(6) NOT NULL,
+    processed_at      DATETIME(6),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_stripe_webhook_event_event UNIQUE (event_id),
+    INDEX idx_stripe_webhook_event_pending (processed_at, id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci;
+
+CREATE TABLE owner_payout (
+    id                 BIGINT NOT NULL AUTO_INCREMENT,
+    owner_id           BIGINT NOT NULL,
+    currency           VARCHAR(3) NOT NULL,
+    amount_minor       BIGINT NOT NULL,
+    entry_count        INTEGER NOT NULL,
+    up_to_entry_id     BIGINT NOT NULL,
+    status             ENUM ('FAILED','PAID','PENDING') NOT NULL,
+    attempts           INTEGER NOT NULL,
+    provider_reference VARCHAR(255),
+    last_error         VARCHAR(500),
+    created_at         DATETIME(6) NOT NULL,
+    paid_at            DATETIME(6),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_owner_payout_run UNIQUE (owner_id, currency, up_to_entry_id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci;
+
+CREATE TABLE owner_ledger_entry (
+    id           BIGINT NOT NULL AUTO_INCREMENT,
+    booking_id   BIGINT NOT NULL,
+    owner_id     BIGINT NOT NULL,
+    amount_minor BIGINT NOT NULL,
+    currency     VARCHAR(3) NOT NULL,
+    created_at   DATETIME(6) NOT NULL,
+    payout_id    BIGINT,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_owner_ledger_entry_booking UNIQUE (booking_id),
+    INDEX idx_owner_ledger_entry_unsettled (payout_id, id),
+    INDEX idx_owner_ledger_entry_owner (owner_id, id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci;
+
+CREATE TABLE payment_refund (
+    id                 BIGINT NOT NULL AUTO_INCREMENT,
+    booking_id         BIGINT NOT NULL,
+    payment_intent_id  VARCHAR(255) NOT NULL,
+    action             ENUM ('CANCEL_INTENT','REFUND') NOT NULL,
+    status             ENUM ('FAILED','INTENT_CANCELLED','PENDING','REFUNDED') NOT NULL,
+    attempts           INTEGER NOT NULL,
+    next_attempt_at    DATETIME(6) NOT NULL,
+    provider_reference VARCHAR(255),
+    last_error         VARCHAR(500),
+    created_at         DATETIME(6) NOT NULL,
+    completed_at       DATETIME(6),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_payment_refund_booking UNIQUE (booking_id),
+    INDEX idx_payment_refund_due (status, next_attempt_at)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci;
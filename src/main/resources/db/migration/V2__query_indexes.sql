@@ -0,0 +1,40 @@
+-- Secondary indexes for the repository queries. InnoDB appends the primary key to every
+-- secondary index, so (x, y) also serves ORDER BY y, id for a fixed x.
+
+-- booking ---------------------------------------------------------------------------------
+
+-- overlap checks of one spot (existsBySpotAndStatusIn...StartTime...EndTime, the NOT EXISTS of
+-- findAvailableSpotsInCity), upcoming bookings of a spot, and the spot keyset pages.
+-- Also serves the spot_id foreign key.
+CREATE INDEX idx_booking_spot_start_end ON booking (spot_id, start_time, end_time);
+
+-- renter keyset pages, ORDER BY start_time, id. Also serves the renter_id foreign key.
+CREATE INDEX idx_booking_renter_start ON booking (renter_id, start_time);
+
+-- scheduler safety-net pass and rebuilds of the in-memory schedules (status IN ...)
+CREATE INDEX idx_booking_status_start ON booking (status, start_time);
+CREATE INDEX idx_booking_status_end ON booking (status, end_time);
+CREATE INDEX idx_booking_status_created ON booking (status, created_at);
+
+-- parking_spot ----------------------------------------------------------------------------
+
+-- spots of a city (findActiveRowsInCity, findAvailableSpotsInCity), the collation is case-insensitive
+CREATE INDEX idx_parking_spot_city_active ON parking_spot (city, is_active, available_from);
+
+-- No index on is_active alone: the active keyset pages are primary key ranges, and the
+-- in-memory index rebuilds read every active spot anyway.
+
+-- users -----------------------------------------------------------------------------------
+
+-- login, findByEmail and existsByEmail. Not unique, so the migration cannot fail on duplicate
+-- rows already in existing databases, UserService checks existsByEmail before registering.
+CREATE INDEX idx_users_email ON users (email);
+
+-- payment_outbox --------------------------------------------------------------------------
+
+-- due rows of the intent outbox poll (status = PENDING AND next_attempt_at <= now)
+CREATE INDEX idx_payment_outbox_due ON payment_outbox (status, next_attempt_at);
+
+-- role ------------------------------------------------------------------------------------
+
+CREATE INDEX idx_role_name ON role (name);
@@ -0,0 +1,12 @@
+-- Pooled id allocation for parking_spot (@TableGenerator "parking_spot_id", allocationSize 100).
+-- The pooled optimizer hands out the block (next_val - 100, next_val], so the seed keeps the first
+-- block above the ids AUTO_INCREMENT gave out so far.
+
+CREATE TABLE id_generator (
+    name     VARCHAR(255) NOT NULL,
+    next_val BIGINT,
+    PRIMARY KEY (name)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci;
+
+INSERT INTO id_generator (name, next_val)
+SELECT 'parking_spot', COALESCE(MAX(id), 0) + 101 FROM parking_spot;
@@ -0,0 +1,10 @@
+-- Heartbeat row for measuring replication lag (ReplicaLagMonitor).
+-- The leader stamps it on the primary, the replicas receive the stamp through replication.
+
+CREATE TABLE replica_heartbeat (
+    id      INTEGER NOT NULL,
+    beat_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci;
+
+INSERT INTO replica_heartbeat (id, beat_at) VALUES (1, CURRENT_TIMESTAMP(6));
@@ -0,0 +1,22 @@
+-- Archive of completed and cancelled bookings (BookingArchiveJob), the live booking table keeps
+-- only the working set. Same ids and columns as booking, renter and spot without foreign keys
+-- so archived rows never block deleting a user or a spot.
+
+CREATE TABLE booking_history (
+    id                       BIGINT NOT NULL,
+    start_time               DATETIME(6),
+    end_time                 DATETIME(6),
+    total_amount             FLOAT(53) NOT NULL,
+    total_amount_minor       BIGINT,
+    status                   ENUM ('ACTIVE','CANCELLED','COMPLETED','CONFIRMED','PENDING'),
+    renter_id                BIGINT NOT NULL,
+    spot_id                  BIGINT NOT NULL,
+    created_at               DATETIME(6),
+    updated_at               DATETIME(6),
+    stripe_payment_intent_id VARCHAR(255),
+    refund_status            ENUM ('FAILED','INTENT_CANCELLED','PENDING','REFUNDED'),
+    archived_at              DATETIME(6) NOT NULL,
+    PRIMARY KEY (id),
+    INDEX idx_booking_history_renter_start (renter_id, start_time),
+    INDEX idx_booking_history_spot_start (spot_id, start_time)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci;
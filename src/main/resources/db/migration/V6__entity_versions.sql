@@ -0,0 +1,6 @@
+-- Version columns for optimistic locking (@Version on Booking and ParkingSpot).
+-- Existing rows start at 0. MySQL 8 adds a trailing column in place (INSTANT) without rebuilding the table.
+
+ALTER TABLE booking ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+
+ALTER TABLE parking_spot ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,5 @@
+-- Rows changed since a point in time, read every few seconds by every node to catch up its
+-- in-memory indexes with the other nodes' writes (IndexSync).
+
+CREATE INDEX idx_booking_updated ON booking (updated_at);
+CREATE INDEX idx_parking_spot_updated ON parking_spot (updated_at);
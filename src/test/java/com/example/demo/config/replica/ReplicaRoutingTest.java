@@ -0,0 +1,222 @@
+package com.example.demo.config.replica;
+
+import com.example.demo.service.cluster.LeaderLease;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Replica routing over two in-memory H2 databases, one as the primary and one as the replica.
+ * Replication is played by the test, which writes the heartbeat stamps into both databases.
+ * Two routing DataSources over the same databases stand for two app nodes.
+ */
+class ReplicaRoutingTest {
+
+    private static final long STICKY_MS = 5_000;
+    // stamps far from this machine's clock, the lag check must not depend on it
+    private static final LocalDateTime LEADER_CLOCK = LocalDateTime.of(2001, 1, 1, 12, 0);
+
+    private HikariDataSource primary;
+    private ReplicaSet replicaSet;
+    private ReplicaLagMonitor lagMonitor;
+    private Node node;
+    private Node otherNode;
+
+    // One app node: its routing DataSource and the read-your-writes state behind it
+    private record Node(ReadYourWrites readYourWrites, JdbcTemplate jdbc, TransactionTemplate reads, TransactionTemplate writes) {
+    }
+
+    @BeforeEach
+    void startDatabases() {
+        primary = database("primary");
+        HikariDataSource replica = database("replica");
+        replicaSet = new ReplicaSet(primary, List.of(new ReplicaSet.Replica("replica-0", replica)), 1_000);
+
+        LeaderLease leaderLease = mock(LeaderLease.class);
+        when(leaderLease.isLeader()).thenReturn(true);
+        lagMonitor = new ReplicaLagMonitor(replicaSet, leaderLease, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(lagMonitor, "heartbeatMillis", 1_000L);
+
+        node = node();
+        otherNode = node();
+    }
+
+    @AfterEach
+    void stopDatabases() {
+        replicaSet.close();
+        primary.close();
+    }
+
+    @Test
+    void readsGoToTheReplicaOnceTheBeatAdvances() {
+        stamp(replicaSet.getPrimary(), LEADER_CLOCK);
+        stamp(replica(), LEADER_CLOCK);
+        lagMonitor.check();
+        // nobody has been seen stamping yet
+        assertEquals("primary", read(node));
+
+        replicate(LEADER_CLOCK.plusSeconds(1));
+        lagMonitor.check();
+        assertEquals("replica", read(node));
+        assertEquals(0, replicaSet.getReplicas().get(0).getLagMillis());
+    }
+
+    @Test
+    void laggingReplicaIsSkipped() {
+        startReplication();
+        assertEquals("replica", read(node));
+
+        // the primary is stamped, the replica does not receive it
+        stamp(replicaSet.getPrimary(), LEADER_CLOCK.plusSeconds(6));
+        lagMonitor.check();
+        assertEquals(5_000, replicaSet.getReplicas().get(0).getLagMillis());
+        assertEquals("primary", read(node));
+    }
+
+    @Test
+    void stoppedBeatSendsReadsToThePrimary() throws InterruptedException {
+        ReflectionTestUtils.setField(lagMonitor, "heartbeatMillis", 10L);
+        startReplication();
+        assertEquals("replica", read(node));
+
+        // no leader stamps for more than 10 heartbeats
+        Thread.sleep(150);
+        lagMonitor.check();
+        assertEquals("primary", read(node));
+    }
+
+    @Test
+    void clientReadsItsWritesOnEveryNode() {
+        startReplication();
+
+        MockHttpServletResponse writeResponse = inRequest(node, new MockHttpServletRequest(), () -> {
+            node.writes().executeWithoutResult(status -> node.jdbc().update("INSERT INTO note (text) VALUES ('booked')"));
+            assertEquals("primary", read(node));
+        });
+        Cookie cookie = writeResponse.getCookie(ReadYourWrites.COOKIE);
+        assertNotNull(cookie);
+        assertEquals(cookie.getValue(), writeResponse.getHeader(ReadYourWrites.HEADER));
+
+        // the next request of the same client lands on another node
+        MockHttpServletRequest withCookie = new MockHttpServletRequest();
+        withCookie.setCookies(cookie);
+        inRequest(otherNode, withCookie, () -> assertEquals("primary", read(otherNode)));
+
+        MockHttpServletRequest withHeader = new MockHttpServletRequest();
+        withHeader.addHeader(ReadYourWrites.HEADER, cookie.getValue());
+        inRequest(otherNode, withHeader, () -> assertEquals("primary", read(otherNode)));
+
+        // other clients, and read-only requests, keep using the replica
+        MockHttpServletResponse readResponse = inRequest(otherNode, new MockHttpServletRequest(),
+                () -> assertEquals("replica", read(otherNode)));
+        assertNull(readResponse.getCookie(ReadYourWrites.COOKIE));
+    }
+
+    @Test
+    void clientCannotStayOnThePrimaryForLongerThanOneWindow() {
+        startReplication();
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(ReadYourWrites.HEADER, Long.toString(System.currentTimeMillis() + 10 * STICKY_MS));
+        inRequest(node, request, () -> assertEquals("primary", read(node)));
+
+        MockHttpServletRequest expired = new MockHttpServletRequest();
+        expired.addHeader(ReadYourWrites.HEADER, Long.toString(System.currentTimeMillis() - 1));
+        inRequest(node, expired, () -> assertEquals("replica", read(node)));
+    }
+
+    @Test
+    void connectionsWithOtherCredentialsAreNotSupported() {
+        ReplicaRoutingDataSource dataSource = new ReplicaRoutingDataSource(replicaSet, new ReadYourWrites(STICKY_MS), new SimpleMeterRegistry());
+        assertThrows(SQLFeatureNotSupportedException.class, () -> dataSource.getConnection("sa", ""));
+    }
+
+    // Private Helper Methods
+
+    private Node node() {
+        ReadYourWrites readYourWrites = new ReadYourWrites(STICKY_MS);
+        DataSource dataSource = new ReadReplicaConfig().dataSource(replicaSet, readYourWrites, new SimpleMeterRegistry());
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        TransactionTemplate reads = new TransactionTemplate(transactionManager);
+        reads.setReadOnly(true);
+        return new Node(readYourWrites, new JdbcTemplate(dataSource), reads, new TransactionTemplate(transactionManager));
+    }
+
+    private static MockHttpServletResponse inRequest(Node node, MockHttpServletRequest request, Runnable work) {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        node.readYourWrites().begin(request, response);
+        try {
+            work.run();
+        } finally {
+            node.readYourWrites().end();
+        }
+        return response;
+    }
+
+    // the database a read-only transaction of the node was routed to
+    private static String read(Node node) {
+        return node.reads().execute(status -> node.jdbc().queryForObject("SELECT name FROM node_name", String.class));
+    }
+
+    private DataSource replica() {
+        return replicaSet.getReplicas().get(0).getDataSource();
+    }
+
+    // two stamps the monitor sees arrive on both databases, the replica is then in use
+    private void startReplication() {
+        replicate(LEADER_CLOCK);
+        lagMonitor.check();
+        replicate(LEADER_CLOCK.plusSeconds(1));
+        lagMonitor.check();
+    }
+
+    // the leader stamps the primary and the stamp is replicated
+    private void replicate(LocalDateTime beat) {
+        stamp(replicaSet.getPrimary(), beat);
+        stamp(replica(), beat);
+    }
+
+    private static void stamp(DataSource dataSource, LocalDateTime beat) {
+        new JdbcTemplate(dataSource).update("UPDATE replica_heartbeat SET beat_at = ? WHERE id = 1", Timestamp.valueOf(beat));
+    }
+
+    private static HikariDataSource database(String name) {
+        String url = "jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        JdbcTemplate setup = new JdbcTemplate(new DriverManagerDataSource(url));
+        setup.execute("CREATE TABLE replica_heartbeat (id INTEGER PRIMARY KEY, beat_at TIMESTAMP(6) NOT NULL)");
+        setup.execute("INSERT INTO replica_heartbeat (id, beat_at) VALUES (1, CURRENT_TIMESTAMP(6))");
+        setup.execute("CREATE TABLE node_name (name VARCHAR(20))");
+        setup.update("INSERT INTO node_name (name) VALUES (?)", name);
+        setup.execute("CREATE TABLE note (text VARCHAR(20))");
+
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName(name);
+        dataSource.setJdbcUrl(url);
+        dataSource.setMaximumPoolSize(2);
+        return dataSource;
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.demo.repository;
+
+import com.example.demo.enums.BookingStatus;
+import com.example.demo.enums.PaymentOutboxStatus;
+import com.example.demo.service.booking.BookingAvailabilityIndex;
+import com.example.demo.support.StatementCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * EXPLAIN of the SQL Hibernate generates for the hot booking, spot, user and outbox queries:
+ * each one is answered from its V2 index instead of a table scan.
+ * The plans are H2's, on the booking and spot tables MySQL picks the same indexes.
+ *
+ * Runs in its own context on its own in-memory database, it drops foreign keys the other tests rely on.
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:queryindexdb;MODE=MySQL;DATABASE_TO_LOWER=TRUE;"
+        + "NON_KEYWORDS=VALUE,USER;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000")
+class QueryIndexTest {
+
+    @Autowired
+    private BookingRepository bookingRepository;
+    @Autowired
+    private ParkingSpotRepository parkingSpotRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private PaymentOutboxRepository paymentOutboxRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // MySQL drops the index it created for a foreign key once V2 adds an index starting with the same
+    // column, H2 keeps it and prefers it. Without the booking foreign keys H2 sees MySQL's indexes.
+    @BeforeEach
+    void dropForeignKeyIndexes() {
+        jdbcTemplate.execute("ALTER TABLE booking DROP CONSTRAINT IF EXISTS fk_booking_renter");
+        jdbcTemplate.execute("ALTER TABLE booking DROP CONSTRAINT IF EXISTS fk_booking_spot");
+    }
+
+    @Test
+    void overlapCheckUsesTheSpotIndex() {
+        LocalDateTime now = LocalDateTime.now();
+        assertUses("IDX_BOOKING_SPOT_START_END", () -> bookingRepository.existsOverlapping(
+                1L, BookingAvailabilityIndex.LIVE_STATUSES, now, now.plusHours(1), null));
+    }
+
+    @Test
+    void renterPagesUseTheRenterIndex() {
+        assertUses("IDX_BOOKING_RENTER_START", () -> bookingRepository.findRenterRowPage(1L, Limit.of(21)));
+        assertUses("IDX_BOOKING_RENTER_START", () -> bookingRepository.findRenterRowPageAfter(
+                1L, LocalDateTime.now(), 1L, Limit.of(21)));
+    }
+
+    @Test
+    void spotPagesUseTheSpotIndex() {
+        assertUses("IDX_BOOKING_SPOT_START_END", () -> bookingRepository.findSpotRowPage(1L, Limit.of(21)));
+        assertUses("IDX_BOOKING_SPOT_START_END", () -> bookingRepository.findSpotRowPageAfter(
+                1L, LocalDateTime.now(), 1L, Limit.of(21)));
+    }
+
+    @Test
+    void schedulerPassesUseTheStatusIndexes() {
+        LocalDateTime now = LocalDateTime.now();
+        assertUses("IDX_BOOKING_STATUS_START", () -> bookingRepository.findIdsOfStarted(BookingStatus.CONFIRMED, now, 0L, Limit.of(500)));
+        assertUses("IDX_BOOKING_STATUS_END", () -> bookingRepository.findIdsOfEnded(BookingStatus.ACTIVE, now, 0L, Limit.of(500)));
+        assertUses("IDX_BOOKING_STATUS_CREATED", () -> bookingRepository.findIdsOfCreatedBefore(BookingStatus.PENDING, now, 0L, Limit.of(500)));
+    }
+
+    @Test
+    void citySearchUsesTheCityIndex() {
+        LocalDateTime now = LocalDateTime.now();
+        assertUses("IDX_PARKING_SPOT_CITY_ACTIVE", () -> parkingSpotRepository.findActiveRowsInCity("Helsinki"));
+        String plan = planOf(() -> parkingSpotRepository.findAvailableSpotsInCity("Helsinki", now, now.plusHours(2),
+                now.minusMinutes(15), now.plusHours(2).plusMinutes(15), BookingAvailabilityIndex.LIVE_STATUSES));
+        assertTrue(plan.contains("IDX_PARKING_SPOT_CITY_ACTIVE"), plan);
+        // the NOT EXISTS probes the bookings of each candidate spot
+        assertTrue(plan.contains("IDX_BOOKING_SPOT_START_END"), plan);
+    }
+
+    @Test
+    void loginUsesTheEmailIndex() {
+        assertUses("IDX_USERS_EMAIL", () -> userRepository.findByEmail("nobody@example.com"));
+    }
+
+    @Test
+    void outboxPollUsesTheDueIndex() {
+        assertUses("IDX_PAYMENT_OUTBOX_DUE", () -> paymentOutboxRepository.findDueIds(
+                PaymentOutboxStatus.PENDING, LocalDateTime.now(), Limit.of(100)));
+    }
+
+    // Private Helper Methods
+
+    private void assertUses(String index, Runnable query) {
+        String plan = planOf(query);
+        assertTrue(plan.contains(index), plan);
+    }
+
+    // EXPLAIN of the one statement the query ran, its parameters bound to NULL (H2 plans before binding)
+    private String planOf(Runnable query) {
+        StatementCounter.start();
+        List<String> statements;
+        try {
+            query.run();
+        } finally {
+            statements = StatementCounter.stop();
+        }
+        assertEquals(1, statements.size(), statements::toString);
+        String plan = jdbcTemplate.execute("EXPLAIN " + statements.get(0), (PreparedStatement statement) -> {
+            int parameters = statement.getParameterMetaData().getParameterCount();
+            for (int i = 1; i <= parameters; i++) {
+                statement.setNull(i, Types.NULL);
+            }
+            try (ResultSet result = statement.executeQuery()) {
+                result.next();
+                return result.getString(1);
+            }
+        });
+        return plan.toUpperCase(Locale.ROOT);
+    }
+}
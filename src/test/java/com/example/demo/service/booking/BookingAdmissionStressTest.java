@@ -0,0 +1,181 @@
+package com.example.demo.service.booking;
+
+import com.example.demo.exeptions.ActionNotAllowedException;
+import com.example.demo.model.Booking;
+import com.example.demo.model.ParkingSpot;
+import com.example.demo.model.User;
+import com.example.demo.repository.BookingRepository;
+import com.example.demo.repository.ParkingSpotRepository;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.requests.booking.CreateBookingRequest;
+import com.example.demo.security.user.AppUserDetails;
+import com.example.demo.support.TestData;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Many threads booking at once: one spot that everybody wants, and many spots with one thread each.
+ * Checks in the database that no slot was given out twice.
+ */
+@SpringBootTest
+class BookingAdmissionStressTest {
+
+    private static final int THREADS = 16;
+    // bookable regions of the hot spot, every thread tries all of them
+    private static final int HOT_SLOTS = 40;
+    private static final int SPREAD_BOOKINGS_PER_THREAD = 40;
+
+    @Autowired
+    private BookingService bookingService;
+    @Autowired
+    private BookingRepository bookingRepository;
+    @Autowired
+    private ParkingSpotRepository parkingSpotRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void hotSpotAdmitsExactlyOneBookingPerSlot() throws Exception {
+        ParkingSpot spot = TestData.spot(parkingSpotRepository, TestData.user(userRepository), "Helsinki");
+        LocalDateTime base = firstSlot();
+        AtomicInteger admitted = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        runThreads(thread -> {
+            AppUserDetails renter = TestData.principal(TestData.user(userRepository));
+            List<Integer> regions = new ArrayList<>();
+            for (int i = 0; i < HOT_SLOTS; i++) {
+                regions.add(i);
+            }
+            Random random = new Random(thread);
+            Collections.shuffle(regions, random);
+            return () -> {
+                for (int region : regions) {
+                    // the threads ask for different, but overlapping, slots of the same region
+                    LocalDateTime start = base.plusHours(4L * region).plusMinutes(30L * (random.nextInt(3) - 1));
+                    try {
+                        bookingService.createBooking(renter, request(spot.getId(), start, start.plusHours(2)));
+                        admitted.incrementAndGet();
+                    } catch (ActionNotAllowedException e) {
+                        rejected.incrementAndGet();
+                    }
+                }
+                return null;
+            };
+        });
+
+        List<Booking> live = liveBookingsOf(spot);
+        assertEquals(HOT_SLOTS, admitted.get(), "one booking per region");
+        assertEquals(THREADS * HOT_SLOTS - HOT_SLOTS, rejected.get());
+        assertEquals(HOT_SLOTS, live.size());
+        assertNoOverlaps(live);
+    }
+
+    @Test
+    void bookingsOfDifferentSpotsAreAllAdmitted() throws Exception {
+        User owner = TestData.user(userRepository);
+        List<ParkingSpot> spots = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            spots.add(TestData.spot(parkingSpotRepository, owner, "Espoo"));
+        }
+        LocalDateTime base = firstSlot();
+        AtomicInteger admitted = new AtomicInteger();
+
+        runThreads(thread -> {
+            AppUserDetails renter = TestData.principal(TestData.user(userRepository));
+            ParkingSpot spot = spots.get(thread);
+            return () -> {
+                for (int i = 0; i < SPREAD_BOOKINGS_PER_THREAD; i++) {
+                    LocalDateTime start = base.plusHours(4L * i);
+                    bookingService.createBooking(renter, request(spot.getId(), start, start.plusHours(2)));
+                    admitted.incrementAndGet();
+                }
+                return null;
+            };
+        });
+
+        assertEquals(THREADS * SPREAD_BOOKINGS_PER_THREAD, admitted.get());
+        for (ParkingSpot spot : spots) {
+            List<Booking> live = liveBookingsOf(spot);
+            assertEquals(SPREAD_BOOKINGS_PER_THREAD, live.size());
+            assertNoOverlaps(live);
+        }
+    }
+
+    // Private Helper Methods
+
+    private interface Worker {
+        Callable<Void> create(int thread);
+    }
+
+    // Prepares one task per thread, starts them together and waits until all finished
+    private void runThreads(Worker worker) throws Exception {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            tasks.add(worker.create(thread));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Void>> futures = new ArrayList<>();
+            for (Callable<Void> task : tasks) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<Booking> liveBookingsOf(ParkingSpot spot) {
+        return bookingRepository.findBySpot(spot).stream()
+                .filter(booking -> BookingAvailabilityIndex.LIVE_STATUSES.contains(booking.getStatus()))
+                .sorted(Comparator.comparing(Booking::getStartTime))
+                .toList();
+    }
+
+    private static void assertNoOverlaps(List<Booking> sortedByStart) {
+        for (int i = 1; i < sortedByStart.size(); i++) {
+            Booking previous = sortedByStart.get(i - 1);
+            Booking next = sortedByStart.get(i);
+            assertTrue(previous.getEndTime().plusMinutes(BookingAvailabilityIndex.BUFFER_MINUTES).isBefore(next.getStartTime()),
+                    "bookings " + previous.getId() + " and " + next.getId() + " overlap");
+        }
+    }
+
+    private static LocalDateTime firstSlot() {
+        return LocalDateTime.now().plusDays(7).truncatedTo(ChronoUnit.DAYS);
+    }
+
+    private static CreateBookingRequest request(Long spotId, LocalDateTime start, LocalDateTime end) {
+        CreateBookingRequest request = new CreateBookingRequest();
+        request.setSpotId(spotId);
+        request.setStartTime(start);
+        request.setEndTime(end);
+        return request;
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.demo.service.booking;
+
+import com.example.demo.enums.BookingStatus;
+import com.example.demo.model.Booking;
+import com.example.demo.model.ParkingSpot;
+import com.example.demo.model.User;
+import com.example.demo.repository.BookingRepository;
+import com.example.demo.repository.ParkingSpotRepository;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.security.user.AppUserDetails;
+import com.example.demo.service.parkingspot.ParkingSpotService;
+import com.example.demo.support.StatementCounter;
+import com.example.demo.support.TestData;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The set-based transitions and the list endpoints run the same number of statements
+ * whether they handle a few rows or many.
+ */
+@SpringBootTest
+class StatementCountTest {
+
+    private static final int FEW = 5;
+    private static final int MANY = 50;
+
+    @Autowired
+    private BookingTransitionService transitionService;
+    @Autowired
+    private BookingService bookingService;
+    @Autowired
+    private ParkingSpotService parkingSpotService;
+    @Autowired
+    private BookingRepository bookingRepository;
+    @Autowired
+    private ParkingSpotRepository parkingSpotRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void activateChunk() {
+        LocalDateTime now = LocalDateTime.now();
+        assertConstant("activate", size -> {
+            List<Long> ids = bookings(size, BookingStatus.CONFIRMED, now.minusHours(1), now.plusHours(1));
+            return count(() -> assertEquals(size, transitionService.activate(ids, now)));
+        });
+    }
+
+    @Test
+    void completeChunk() {
+        LocalDateTime now = LocalDateTime.now();
+        assertConstant("complete", size -> {
+            List<Long> ids = bookings(size, BookingStatus.ACTIVE, now.minusHours(3), now.minusHours(1));
+            return count(() -> assertEquals(size, transitionService.complete(ids, now)));
+        });
+    }
+
+    @Test
+    void cancelUnpaidChunk() {
+        // the bookings were created just now, so "now" is moved past their payment timeout
+        LocalDateTime now = LocalDateTime.now().plusMinutes(transitionService.getPaymentTimeoutMinutes() + 1);
+        assertConstant("cancelUnpaid", size -> {
+            List<Long> ids = bookings(size, BookingStatus.PENDING, now.plusDays(1), now.plusDays(1).plusHours(2));
+            return count(() -> assertEquals(size, transitionService.cancelUnpaid(ids, now)));
+        });
+    }
+
+    @Test
+    void bookingsOfSpotPage() {
+        assertConstant("getBookingsBySpot", size -> {
+            LocalDateTime start = LocalDateTime.now().plusDays(2);
+            Long spotId = spotOf(bookings(size, BookingStatus.CONFIRMED, start, start.plusHours(1)));
+            return count(() -> assertEquals(size, bookingService.getBookingsBySpot(spotId, null, size, true).getItems().size()));
+        });
+    }
+
+    @Test
+    void bookingsOfRenterPage() {
+        assertConstant("getBookingsByRenter", size -> {
+            LocalDateTime start = LocalDateTime.now().plusDays(2);
+            Long renterId = renterOf(bookings(size, BookingStatus.CONFIRMED, start, start.plusHours(1)));
+            return count(() -> assertEquals(size, bookingService.getBookingsByRenter(renterId, null, size, true).getItems().size()));
+        });
+    }
+
+    @Test
+    void spotsOfOwnerList() {
+        assertConstant("fetchParkingSpotsByUserId", size -> {
+            User owner = TestData.user(userRepository);
+            for (int i = 0; i < size; i++) {
+                TestData.spot(parkingSpotRepository, owner, "Turku");
+            }
+            AppUserDetails principal = TestData.principal(owner);
+            return count(() -> assertEquals(size, parkingSpotService.fetchParkingSpotsByUserId(principal).size()));
+        });
+    }
+
+    // Private Helper Methods
+
+    // Runs the scenario with few and many rows and checks both ran the same statements
+    private static void assertConstant(String name, Function<Integer, List<String>> scenario) {
+        List<String> few = scenario.apply(FEW);
+        List<String> many = scenario.apply(MANY);
+        assertEquals(few.size(), many.size(), () -> name + " ran " + many.size() + " statements for " + MANY + " rows but "
+                + few.size() + " for " + FEW + ": " + many + " / " + few);
+    }
+
+    private static List<String> count(Runnable action) {
+        List<String> statements;
+        StatementCounter.start();
+        try {
+            action.run();
+        } finally {
+            statements = StatementCounter.stop();
+        }
+        return statements;
+    }
+
+    // Bookings of one new spot and one new renter, all with the same times so all are due together.
+    // Saved straight through the repository, the overlap checks of BookingService do not apply
+    private List<Long> bookings(int count, BookingStatus status, LocalDateTime start, LocalDateTime end) {
+        User renter = TestData.user(userRepository);
+        ParkingSpot spot = TestData.spot(parkingSpotRepository, TestData.user(userRepository), "Vantaa");
+        List<Booking> bookings = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Booking booking = new Booking();
+            booking.setSpot(spot);
+            booking.setRenter(renter);
+            booking.setStartTime(start);
+            booking.setEndTime(end);
+            booking.setStatus(status);
+            booking.setTotalAmount(10);
+            bookings.add(booking);
+        }
+        return bookingRepository.saveAll(bookings).stream().map(Booking::getId).toList();
+    }
+
+    private Long spotOf(List<Long> bookingIds) {
+        return bookingRepository.findById(bookingIds.get(0)).orElseThrow().getSpot().getId();
+    }
+
+    private Long renterOf(List<Long> bookingIds) {
+        return bookingRepository.findById(bookingIds.get(0)).orElseThrow().getRenter().getId();
+    }
+}
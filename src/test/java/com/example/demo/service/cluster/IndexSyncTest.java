@@ -0,0 +1,90 @@
+package com.example.demo.service.cluster;
+
+import com.example.demo.enums.BookingStatus;
+import com.example.demo.model.Booking;
+import com.example.demo.model.ParkingSpot;
+import com.example.demo.model.User;
+import com.example.demo.repository.BookingRepository;
+import com.example.demo.repository.ParkingSpotRepository;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.service.booking.BookingAvailabilityIndex;
+import com.example.demo.service.parkingspot.SpotGeoIndex;
+import com.example.demo.service.parkingspot.SpotSearchIndex;
+import com.example.demo.support.TestData;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Rows written straight through the repositories stand in for writes made on another node,
+ * the in-memory indexes only learn about them from IndexSync.
+ */
+@SpringBootTest
+class IndexSyncTest {
+
+    @Autowired
+    private IndexSync indexSync;
+    @Autowired
+    private BookingAvailabilityIndex availabilityIndex;
+    @Autowired
+    private SpotGeoIndex geoIndex;
+    @Autowired
+    private SpotSearchIndex searchIndex;
+    @Autowired
+    private BookingRepository bookingRepository;
+    @Autowired
+    private ParkingSpotRepository parkingSpotRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void pollPicksUpBookingsOfOtherNodes() {
+        User user = TestData.user(userRepository);
+        ParkingSpot spot = TestData.spot(parkingSpotRepository, user, "Tampere");
+        LocalDateTime start = LocalDateTime.now().plusDays(3).truncatedTo(ChronoUnit.HOURS);
+
+        Booking booking = new Booking();
+        booking.setSpot(spot);
+        booking.setRenter(user);
+        booking.setStartTime(start);
+        booking.setEndTime(start.plusHours(2));
+        booking.setStatus(BookingStatus.CONFIRMED);
+        booking = bookingRepository.save(booking);
+        assertTrue(availabilityIndex.isAvailable(spot.getId(), start, start.plusHours(1), null));
+
+        indexSync.poll();
+        assertFalse(availabilityIndex.isAvailable(spot.getId(), start, start.plusHours(1), null));
+
+        booking.setStatus(BookingStatus.CANCELLED);
+        bookingRepository.save(booking);
+        indexSync.poll();
+        assertTrue(availabilityIndex.isAvailable(spot.getId(), start, start.plusHours(1), null));
+    }
+
+    @Test
+    void pollPicksUpSpotsOfOtherNodes() {
+        User owner = TestData.user(userRepository);
+        ParkingSpot spot = TestData.spot(parkingSpotRepository, owner, "Oulu");
+        long spotId = spot.getId();
+        String word = "syncword" + spotId;
+        spot.setTitle(word);
+        spot = parkingSpotRepository.save(spot);
+        assertTrue(searchIndex.search(word, 10).hits().isEmpty());
+
+        indexSync.poll();
+        assertTrue(searchIndex.search(word, 10).hits().stream().anyMatch(hit -> hit.spotId() == spotId));
+        assertTrue(geoIndex.nearest(60.17, 24.94, 1, 1000).stream().anyMatch(hit -> hit.spotId() == spotId));
+
+        spot.setActive(false);
+        parkingSpotRepository.save(spot);
+        indexSync.poll();
+        assertTrue(searchIndex.search(word, 10).hits().isEmpty());
+        assertFalse(geoIndex.nearest(60.17, 24.94, 1, 1000).stream().anyMatch(hit -> hit.spotId() == spotId));
+    }
+}
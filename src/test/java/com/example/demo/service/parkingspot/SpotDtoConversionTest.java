@@ -0,0 +1,50 @@
+package com.example.demo.service.parkingspot;
+
+import com.example.demo.model.ParkingSpot;
+import com.example.demo.responseDtos.ParkingSpotResponseDto;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The hand-written ParkingSpotService.convertToDto gives the same DTO as the ModelMapper mapping it replaced.
+ */
+class SpotDtoConversionTest {
+
+    private static final int SPOTS = 1_000;
+
+    @Test
+    void handWrittenConversionMatchesModelMapper() {
+        ParkingSpotService service = new ParkingSpotService(null, null, null, null, null, null, null, null);
+        ModelMapper modelMapper = new ModelMapper();
+
+        for (int i = 0; i < SPOTS; i++) {
+            ParkingSpot spot = spot(i);
+            assertEquals(modelMapper.map(spot, ParkingSpotResponseDto.class), service.convertToDto(spot));
+        }
+    }
+
+    @Test
+    void emptyOptionalFieldsMatchModelMapper() {
+        ParkingSpotService service = new ParkingSpotService(null, null, null, null, null, null, null, null);
+        ParkingSpot spot = new ParkingSpot("Spot", null, "Main street 1", "Helsinki", null, null,
+                null, null, null, null, 2.5, 0);
+        spot.setId(1L);
+
+        assertEquals(new ModelMapper().map(spot, ParkingSpotResponseDto.class), service.convertToDto(spot));
+    }
+
+    // Private Helper Methods
+
+    private static ParkingSpot spot(int i) {
+        ParkingSpot spot = new ParkingSpot("Spot " + i, "Covered spot " + i, "Main street " + i, "Helsinki", "00100", "FI",
+                BigDecimal.valueOf(60.17 + i * 1e-4), BigDecimal.valueOf(24.94 + i * 1e-4),
+                LocalDateTime.of(2026, 1, 1, 8, 0), LocalDateTime.of(2026, 12, 31, 20, 0), 2.5 + i % 3, 20 + i % 5);
+        spot.setId(i + 1L);
+        return spot;
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.demo.service.parkingspot;
+
+import com.example.demo.repository.ParkingSpotRepository;
+import com.example.demo.repository.projection.SpotLocationView;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * k-nearest lookups of the geo index against a brute-force haversine scan, with spots spread over
+ * a country and packed into a city.
+ */
+class SpotGeoIndexTest {
+
+    private static final int SPOTS = 10_000;
+    private static final int QUERIES = 200;
+    private static final int K = 20;
+
+    private record Location(Long getId, BigDecimal getLatitude, BigDecimal getLongitude) implements SpotLocationView {
+    }
+
+    @Test
+    void countryWideSpots() {
+        // about 550 x 280 km, few spots per cell
+        assertMatchesBruteForce(60.0, 20.0, 5.0, 5.0, 25.0);
+    }
+
+    @Test
+    void citySpots() {
+        // about 22 x 11 km, many spots per cell
+        assertMatchesBruteForce(60.1, 24.8, 0.2, 0.2, 2.0);
+    }
+
+    @Test
+    void nonFiniteQueriesAreRejected() {
+        SpotGeoIndex index = index(List.of(new Location(1L, BigDecimal.valueOf(60.17), BigDecimal.valueOf(24.94))));
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            assertThrows(IllegalArgumentException.class, () -> index.nearest(Double.NaN, 24.94, 2.0, K));
+            assertThrows(IllegalArgumentException.class, () -> index.nearest(60.17, 24.94, Double.NaN, K));
+            assertThrows(IllegalArgumentException.class, () -> index.nearest(60.17, 24.94, Double.POSITIVE_INFINITY, K));
+        });
+    }
+
+    // Private Helper Methods
+
+    private static void assertMatchesBruteForce(double minLat, double minLon, double latSpan, double lonSpan, double radiusKm) {
+        Random random = new Random(42);
+        double[] lats = new double[SPOTS];
+        double[] lons = new double[SPOTS];
+        List<SpotLocationView> locations = new ArrayList<>(SPOTS);
+        for (int i = 0; i < SPOTS; i++) {
+            lats[i] = minLat + random.nextDouble() * latSpan;
+            lons[i] = minLon + random.nextDouble() * lonSpan;
+            locations.add(new Location((long) i, BigDecimal.valueOf(lats[i]), BigDecimal.valueOf(lons[i])));
+        }
+        SpotGeoIndex index = index(locations);
+
+        for (int i = 0; i < QUERIES; i++) {
+            double lat = minLat + random.nextDouble() * latSpan;
+            double lon = minLon + random.nextDouble() * lonSpan;
+            List<SpotGeoIndex.Hit> expected = IntStream.range(0, SPOTS)
+                    .mapToObj(n -> new SpotGeoIndex.Hit(n, SpotGeoIndex.haversineKm(lat, lon, lats[n], lons[n])))
+                    .filter(hit -> hit.distanceKm() <= radiusKm)
+                    .sorted(Comparator.comparingDouble(SpotGeoIndex.Hit::distanceKm))
+                    .limit(K)
+                    .toList();
+            List<SpotGeoIndex.Hit> actual = index.nearest(lat, lon, radiusKm, K);
+
+            assertEquals(expected.size(), actual.size(), "hits around " + lat + ", " + lon);
+            for (int n = 0; n < expected.size(); n++) {
+                // equally distant spots may come in either order, the distances must match
+                assertEquals(expected.get(n).distanceKm(), actual.get(n).distanceKm(), 1e-9,
+                        "hit " + n + " around " + lat + ", " + lon);
+            }
+        }
+    }
+
+    private static SpotGeoIndex index(List<SpotLocationView> locations) {
+        ParkingSpotRepository repository = mock(ParkingSpotRepository.class);
+        when(repository.findActiveSpotLocations()).thenReturn(locations);
+        SpotGeoIndex index = new SpotGeoIndex(repository);
+        ReflectionTestUtils.setField(index, "cellDegrees", 0.01);
+        index.rebuild();
+        return index;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.demo.service.parkingspot;
+
+import com.example.demo.repository.ParkingSpotRepository;
+import com.example.demo.repository.projection.SpotTextView;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SpotSearchIndexTest {
+
+    private static final String[] WORDS = {"covered", "garage", "street", "central", "station", "harbour", "charging"};
+
+    private record Text(Long getId, String getTitle, String getDescription, String getAddress, String getCity)
+            implements SpotTextView {
+    }
+
+    @Test
+    void boundedSearchReturnsTheTopOfTheFullRanking() {
+        Random random = new Random(7);
+        List<SpotTextView> texts = new ArrayList<>();
+        for (long id = 1; id <= 2000; id++) {
+            texts.add(new Text(id, word(random) + " " + word(random), word(random) + " " + word(random) + " " + word(random),
+                    word(random) + " 1", random.nextBoolean() ? "Helsinki" : "Espoo"));
+        }
+        ParkingSpotRepository repository = mock(ParkingSpotRepository.class);
+        when(repository.findActiveSpotTexts()).thenReturn(texts);
+        SpotSearchIndex index = new SpotSearchIndex(repository);
+        index.rebuild();
+
+        SpotSearchIndex.Result all = index.search("garage sta", Integer.MAX_VALUE);
+        for (int maxHits : new int[]{1, 10, 55, all.total(), all.total() + 10}) {
+            SpotSearchIndex.Result top = index.search("garage sta", maxHits);
+            assertEquals(all.total(), top.total());
+            assertEquals(all.hits().subList(0, Math.min(maxHits, all.total())), top.hits());
+        }
+    }
+
+    private static String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+}
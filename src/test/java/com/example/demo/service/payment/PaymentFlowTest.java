@@ -0,0 +1,218 @@
+package com.example.demo.service.payment;
+
+import com.example.demo.controller.StripeWebhookController;
+import com.example.demo.enums.BookingStatus;
+import com.example.demo.enums.PaymentOutboxStatus;
+import com.example.demo.enums.RefundStatus;
+import com.example.demo.exeptions.ActionNotAllowedException;
+import com.example.demo.model.Booking;
+import com.example.demo.model.ParkingSpot;
+import com.example.demo.repository.BookingRepository;
+import com.example.demo.repository.ParkingSpotRepository;
+import com.example.demo.repository.StripeWebhookEventRepository;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.requests.booking.CreateBookingRequest;
+import com.example.demo.responseDtos.BookingResponseDto;
+import com.example.demo.responseDtos.PaymentIntentStatusDto;
+import com.example.demo.security.user.AppUserDetails;
+import com.example.demo.service.booking.BookingService;
+import com.example.demo.service.cluster.LeaderLease;
+import com.example.demo.service.pricing.PricingEngine;
+import com.example.demo.support.TestData;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stripe.Stripe;
+import com.stripe.model.PaymentIntent;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The payment path against FakeStripeServer: the outbox creates the PaymentIntent after the booking
+ * commits, the client secret is served by the long-poll status, and a signed webhook confirms the booking.
+ */
+@SpringBootTest
+class PaymentFlowTest {
+
+    private static final long WAIT_MS = 10_000;
+
+    @Autowired
+    private BookingService bookingService;
+    @Autowired
+    private PaymentIntentWaiters paymentIntentWaiters;
+    @Autowired
+    private StripeWebhookController webhookController;
+    @Autowired
+    private StripeWebhookProcessor webhookProcessor;
+    @Autowired
+    private LeaderLease leaderLease;
+    @Autowired
+    private PaymentService paymentService;
+    @Autowired
+    private PricingEngine pricingEngine;
+    @Autowired
+    private StripeWebhookEventRepository webhookEventRepository;
+    @Autowired
+    private BookingRepository bookingRepository;
+    @Autowired
+    private ParkingSpotRepository parkingSpotRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${stripe.webhook.secret}")
+    private String webhookSecret;
+
+    @Test
+    void paidBookingIsConfirmedByTheWebhook() throws Exception {
+        Long bookingId = book(LocalDateTime.now().plusDays(30).truncatedTo(ChronoUnit.DAYS));
+
+        PaymentIntentStatusDto status = awaitIntent(bookingId);
+        assertEquals(PaymentOutboxStatus.SENT.name(), status.getStatus());
+        assertNotNull(status.getClientSecret());
+        String paymentIntentId = bookingRepository.findById(bookingId).orElseThrow().getStripePaymentIntentId();
+        assertTrue(status.getClientSecret().startsWith(paymentIntentId + "_secret_"));
+
+        PaymentIntent intent = PaymentIntent.retrieve(paymentIntentId);
+        assertEquals(String.valueOf(bookingId), intent.getMetadata().get("bookingId"));
+
+        String event = event(StripeWebhookProcessor.PAYMENT_SUCCEEDED, paymentIntentId, String.valueOf(bookingId));
+        assertEquals(200, deliver(event).getStatusCode().value());
+        // Stripe delivers some events twice
+        assertEquals(200, deliver(event).getStatusCode().value());
+        applyWebhooks();
+
+        assertEquals(BookingStatus.CONFIRMED, bookingRepository.findById(bookingId).orElseThrow().getStatus());
+    }
+
+    @Test
+    void failedPaymentLeavesTheBookingPending() throws Exception {
+        Long bookingId = book(LocalDateTime.now().plusDays(31).truncatedTo(ChronoUnit.DAYS));
+        awaitIntent(bookingId);
+        String paymentIntentId = bookingRepository.findById(bookingId).orElseThrow().getStripePaymentIntentId();
+
+        String event = event(StripeWebhookProcessor.PAYMENT_FAILED, paymentIntentId, String.valueOf(bookingId));
+        assertEquals(200, deliver(event).getStatusCode().value());
+        applyWebhooks();
+
+        assertEquals(BookingStatus.PENDING, bookingRepository.findById(bookingId).orElseThrow().getStatus());
+    }
+
+    @Test
+    void bookingWithAnIntentCanBeCancelled() throws Exception {
+        AppUserDetails renter = TestData.principal(TestData.user(userRepository));
+        Long bookingId = book(renter, LocalDateTime.now().plusDays(33).truncatedTo(ChronoUnit.DAYS));
+        assertEquals(PaymentOutboxStatus.SENT.name(), awaitIntent(bookingId).getStatus());
+
+        BookingResponseDto cancelled = bookingService.cancelBooking(renter, bookingId);
+
+        assertEquals(BookingStatus.CANCELLED.name(), cancelled.getStatus());
+        Booking booking = bookingRepository.findById(bookingId).orElseThrow();
+        assertEquals(BookingStatus.CANCELLED, booking.getStatus());
+        // the intent is cancelled at Stripe after commit
+        assertEquals(RefundStatus.PENDING, booking.getRefundStatus());
+    }
+
+    @Test
+    void webhookWithUnmappableBookingIdIsAcknowledged() throws Exception {
+        long recordedBefore = webhookEventRepository.count();
+        String event = event(StripeWebhookProcessor.PAYMENT_SUCCEEDED, "pi_foreign", "not-a-booking");
+
+        assertEquals(200, deliver(event).getStatusCode().value());
+        assertEquals(recordedBefore, webhookEventRepository.count());
+    }
+
+    @Test
+    void createIntentReusesTheIntentOnlyForTheBookingCurrency() throws Exception {
+        Long bookingId = book(LocalDateTime.now().plusDays(32).truncatedTo(ChronoUnit.DAYS));
+        PaymentIntentStatusDto status = awaitIntent(bookingId);
+
+        String currency = pricingEngine.getCurrency().toUpperCase(Locale.ROOT);
+        assertEquals(status.getClientSecret(), paymentService.createPaymentIntentForBooking(bookingId, currency));
+        String other = "usd".equalsIgnoreCase(currency) ? "sek" : "usd";
+        assertThrows(ActionNotAllowedException.class, () -> paymentService.createPaymentIntentForBooking(bookingId, other));
+    }
+
+    @Test
+    void unsignedWebhookIsRejected() throws Exception {
+        String event = event(StripeWebhookProcessor.PAYMENT_SUCCEEDED, "pi_unknown", "1");
+        assertEquals(400, webhookController.handleStripeWebhook(event, null).get().getStatusCode().value());
+    }
+
+    // Private Helper Methods
+
+    private Long book(LocalDateTime start) {
+        return book(TestData.principal(TestData.user(userRepository)), start);
+    }
+
+    private Long book(AppUserDetails renter, LocalDateTime start) {
+        ParkingSpot spot = TestData.spot(parkingSpotRepository, TestData.user(userRepository), "Espoo");
+        CreateBookingRequest request = new CreateBookingRequest();
+        request.setSpotId(spot.getId());
+        request.setStartTime(start);
+        request.setEndTime(start.plusHours(2));
+        BookingResponseDto booking = bookingService.createBooking(renter, request);
+        return booking.getId();
+    }
+
+    // the lease is not renewed by the scheduler in tests and may have run out
+    private void applyWebhooks() {
+        leaderLease.heartbeat();
+        assertTrue(leaderLease.isLeader());
+        webhookProcessor.applyRecordedEvents();
+    }
+
+    private PaymentIntentStatusDto awaitIntent(Long bookingId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        PaymentIntentStatusDto status = paymentIntentWaiters.status(bookingId);
+        while (PaymentOutboxStatus.PENDING.name().equals(status.getStatus()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            status = paymentIntentWaiters.status(bookingId);
+        }
+        return status;
+    }
+
+    private String event(String type, String paymentIntentId, String bookingId) throws Exception {
+        Map<String, Object> intent = Map.of(
+                "id", paymentIntentId,
+                "object", "payment_intent",
+                "metadata", Map.of("bookingId", bookingId));
+        return objectMapper.writeValueAsString(Map.of(
+                "id", "evt_test_" + UUID.randomUUID().toString().replace("-", ""),
+                "object", "event",
+                "api_version", Stripe.API_VERSION,
+                "created", System.currentTimeMillis() / 1000,
+                "type", type,
+                "data", Map.of("object", intent)));
+    }
+
+    private ResponseEntity<String> deliver(String payload) throws Exception {
+        return webhookController.handleStripeWebhook(payload, sign(payload)).get();
+    }
+
+    // Stripe-Signature header: t=<unix seconds>,v1=<hex HMAC-SHA256 of "t.payload">
+    private String sign(String payload) throws Exception {
+        long timestamp = System.currentTimeMillis() / 1000;
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(webhookSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        byte[] signature = mac.doFinal((timestamp + "." + payload).getBytes(StandardCharsets.UTF_8));
+        return "t=" + timestamp + ",v1=" + HexFormat.of().formatHex(signature);
+    }
+}
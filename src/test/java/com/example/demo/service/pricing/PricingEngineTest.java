@@ -0,0 +1,96 @@
+package com.example.demo.service.pricing;
+
+import com.example.demo.service.pricing.PricingEngine.Rounding;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tariff rules of the pricing engine, in cents. 2026-10-16 is a Friday.
+ */
+class PricingEngineTest {
+
+    private static final long HOURLY = 200;
+    private static final long DAILY = 3_000;
+    private static final LocalDateTime MONDAY = LocalDateTime.of(2026, 10, 12, 8, 0);
+    private static final LocalDateTime FRIDAY = LocalDateTime.of(2026, 10, 16, 0, 0);
+
+    @Test
+    void fullDaysCostTheDayPriceAndTheRestIsHourly() {
+        PricingEngine engine = engine(Rounding.DOWN, false, 100);
+
+        assertEquals(2 * HOURLY, engine.quote(HOURLY, DAILY, MONDAY, MONDAY.plusHours(2)));
+        assertEquals(DAILY, engine.quote(HOURLY, DAILY, MONDAY, MONDAY.plusHours(24)));
+        // 1 day + 20 hours, as priced before the engine
+        assertEquals(DAILY + 20 * HOURLY, engine.quote(HOURLY, DAILY, MONDAY, MONDAY.plusHours(44)));
+        // a day price above 24 hours is still what a full day costs
+        assertEquals(2 * 3_000, engine.quote(100, 3_000, MONDAY, MONDAY.plusHours(48)));
+    }
+
+    @Test
+    void dayCapLimitsThePartialDay() {
+        PricingEngine engine = engine(Rounding.DOWN, true, 100);
+
+        assertEquals(DAILY + DAILY, engine.quote(HOURLY, DAILY, MONDAY, MONDAY.plusHours(44)));
+        assertEquals(10 * HOURLY, engine.quote(HOURLY, DAILY, MONDAY, MONDAY.plusHours(10)));
+        // no day price, no cap
+        assertEquals(20 * HOURLY, engine.quote(HOURLY, 0, MONDAY, MONDAY.plusHours(20)));
+    }
+
+    @Test
+    void partialIncrementsAreRounded() {
+        LocalDateTime end = MONDAY.plusMinutes(90);
+
+        assertEquals(HOURLY, engine(Rounding.DOWN, false, 100).quote(HOURLY, DAILY, MONDAY, end));
+        assertEquals(2 * HOURLY, engine(Rounding.UP, false, 100).quote(HOURLY, DAILY, MONDAY, end));
+        assertEquals(2 * HOURLY, engine(Rounding.NEAREST, false, 100).quote(HOURLY, DAILY, MONDAY, end));
+        assertEquals(HOURLY, engine(Rounding.NEAREST, false, 100).quote(HOURLY, DAILY, MONDAY, end.minusMinutes(1)));
+        // sub-cent results round half up: 20 minutes of 1.00/h is 33.33 cents
+        PricingEngine byMinute = new PricingEngine(1, Rounding.DOWN, 0, false, 100, "eur");
+        assertEquals(33, byMinute.quote(100, 0, MONDAY, MONDAY.plusMinutes(20)));
+        assertEquals(1, byMinute.quote(3, 0, MONDAY, MONDAY.plusMinutes(10)));
+    }
+
+    @Test
+    void shortStaysAreBilledTheMinimum() {
+        PricingEngine engine = engine(Rounding.DOWN, false, 100);
+
+        assertEquals(HOURLY, engine.quote(HOURLY, DAILY, MONDAY, MONDAY.plusMinutes(20)));
+        assertEquals(HOURLY, engine.quote(HOURLY, DAILY, MONDAY, MONDAY));
+    }
+
+    @Test
+    void weekendMinutesUseTheWeekendRate() {
+        PricingEngine engine = engine(Rounding.DOWN, false, 50);
+        LocalDateTime fridayNight = FRIDAY.plusHours(22);
+
+        // 2 weekday hours and 2 Saturday hours at half price
+        assertEquals(2 * HOURLY + 2 * HOURLY / 2, engine.quote(HOURLY, DAILY, fridayNight, fridayNight.plusHours(4)));
+        assertEquals(DAILY / 2, engine.quote(HOURLY, DAILY, FRIDAY.plusDays(1), FRIDAY.plusDays(2)));
+        // Friday noon to Saturday noon, half of the day at the weekend rate
+        assertEquals(DAILY * 3 / 4, engine.quote(HOURLY, DAILY, FRIDAY.plusHours(12), FRIDAY.plusHours(36)));
+        // Monday is a weekday again
+        assertEquals(HOURLY, engine.quote(HOURLY, DAILY, FRIDAY.plusDays(3), FRIDAY.plusDays(3).plusHours(1)));
+        // half of 1.01 is rounded half up
+        assertEquals(51, engine.quote(101, DAILY, FRIDAY.plusDays(1), FRIDAY.plusDays(1).plusHours(1)));
+    }
+
+    @Test
+    void decimalPricesConvertToMinorUnits() {
+        assertEquals(250, PricingEngine.toMinor(2.5));
+        // 0.29 * 100 is 28.999999999999996 in binary floating point
+        assertEquals(29, PricingEngine.toMinor(0.29));
+        assertEquals(1_999, PricingEngine.toMinor(19.99));
+        assertEquals(0, PricingEngine.toMinor(0));
+        assertEquals(2.5, PricingEngine.toMajor(250));
+    }
+
+    // Private Helper Methods
+
+    // hour increments, billed for at least an hour
+    private static PricingEngine engine(Rounding rounding, boolean dayCap, long weekendRatePercent) {
+        return new PricingEngine(60, rounding, 60, dayCap, weekendRatePercent, "eur");
+    }
+}
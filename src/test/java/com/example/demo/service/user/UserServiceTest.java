@@ -0,0 +1,77 @@
+package com.example.demo.service.user;
+
+import com.example.demo.model.User;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.security.jwt.JwtUtils;
+import com.example.demo.security.jwt.TokenRevocations;
+import com.example.demo.security.user.AppUserDetails;
+import com.example.demo.support.TestData;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class UserServiceTest {
+
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserIdentityCache userIdentityCache;
+    @Autowired
+    private TokenRevocations tokenRevocations;
+    @Autowired
+    private JwtUtils jwtUtils;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Test
+    void changingThePasswordRevokesIssuedTokens() {
+        User user = TestData.user(userRepository);
+        Date issuedBefore = new Date(System.currentTimeMillis() - 2000);
+        assertFalse(tokenRevocations.isRevoked(user.getId(), issuedBefore));
+
+        userService.changePassword(user.getId(), "new-secret");
+
+        assertTrue(tokenRevocations.isRevoked(user.getId(), issuedBefore));
+        assertTrue(passwordEncoder.matches("new-secret", userRepository.findById(user.getId()).orElseThrow().getPassword()));
+    }
+
+    @Test
+    void tokenIssuedRightAfterTheChangeIsAccepted() {
+        User user = TestData.user(userRepository);
+        userService.changePassword(user.getId(), "new-secret");
+        long changedAt = System.currentTimeMillis();
+        while (System.currentTimeMillis() <= changedAt) {
+            Thread.onSpinWait();
+        }
+
+        // the same second as the change in all likelihood, iat alone cannot tell it apart
+        AppUserDetails principal = TestData.principal(user);
+        String token = jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+
+        assertFalse(tokenRevocations.isRevoked(user.getId(), jwtUtils.getIssuedAt(jwtUtils.parseClaims(token))));
+    }
+
+    @Test
+    void changingTheRolesRevokesIssuedTokensAndCachedIdentity() {
+        User user = TestData.user(userRepository);
+        assertEquals(List.of(), userIdentityCache.requireByEmail(user.getEmail()).roles());
+        Date issuedBefore = new Date(System.currentTimeMillis() - 2000);
+
+        userService.changeRoles(user.getId(), List.of("ROLE_ADMIN"));
+
+        assertTrue(tokenRevocations.isRevoked(user.getId(), issuedBefore));
+        assertEquals(List.of("ROLE_ADMIN"), userIdentityCache.requireByEmail(user.getEmail()).roles());
+    }
+}
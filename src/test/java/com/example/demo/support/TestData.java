@@ -0,0 +1,39 @@
+package com.example.demo.support;
+
+import com.example.demo.model.ParkingSpot;
+import com.example.demo.model.User;
+import com.example.demo.repository.ParkingSpotRepository;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.security.user.AppUserDetails;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Users and spots for tests against the shared embedded database.
+ * Every call creates new rows with unique emails, so tests do not depend on each other's data.
+ */
+public final class TestData {
+
+    private TestData() {
+    }
+
+    public static User user(UserRepository userRepository) {
+        User user = new User();
+        user.setEmail("user-" + UUID.randomUUID() + "@example.com");
+        user.setPassword("not-used");
+        return userRepository.save(user);
+    }
+
+    public static AppUserDetails principal(User user) {
+        return AppUserDetails.buildUserDetails(user.getId(), user.getEmail(), List.of("ROLE_USER"));
+    }
+
+    public static ParkingSpot spot(ParkingSpotRepository parkingSpotRepository, User owner, String city) {
+        ParkingSpot spot = new ParkingSpot("Spot " + UUID.randomUUID(), "Covered", "Main street 1", city, "00100", "FI",
+                BigDecimal.valueOf(60.17), BigDecimal.valueOf(24.94), null, null, 2.5, 20);
+        spot.setCreatedBy(owner);
+        return parkingSpotRepository.save(spot);
+    }
+}